@@ -5,12 +5,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.util.unit.DataSize;
 
 import javax.servlet.MultipartConfigElement;
 
 @SpringBootApplication
 @MapperScan("com.example.xiaoniangao.mapper")
+@EnableScheduling
 public class XiaoNiangaoAlbumApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,69 @@
+package com.example.xiaoniangao.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池配置
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 批量上传时并行写文件的线程池。
+     * 队列有界，满了由提交请求的线程自己执行，保证磁盘写入并发不会超过 线程数 + 请求数
+     */
+    @Bean(name = "uploadIoExecutor", destroyMethod = "shutdown")
+    public ExecutorService uploadIoExecutor(@Value("${file.upload.batch.io-threads:4}") int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                r -> {
+                    Thread thread = new Thread(r, "upload-io-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 冷热存储之间迁移文件的线程池，排队已满时放弃（下次访问会重新提交）
+     */
+    @Bean(name = "storageTierExecutor", destroyMethod = "shutdown")
+    public ExecutorService storageTierExecutor(@Value("${file.storage.tier.promote-threads:2}") int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                r -> {
+                    Thread thread = new Thread(r, "storage-tier-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 按需生成图片尺寸的CPU线程池，与请求线程隔离；排队已满时直接拒绝，由接口返回503
+     */
+    @Bean(name = "imageRenderExecutor", destroyMethod = "shutdown")
+    public ExecutorService imageRenderExecutor(@Value("${media.transform.threads:0}") int threads,
+                                               @Value("${media.transform.queue-size:64}") int queueSize) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "image-render-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
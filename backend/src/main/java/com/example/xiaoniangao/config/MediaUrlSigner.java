@@ -0,0 +1,140 @@
+package com.example.xiaoniangao.config;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 媒体文件签名URL：{context-path}/media/s/{存储键}?e={过期时间}&s={签名}
+ * e为过期时间的Unix秒数，s为 HMAC-SHA256(密钥, 存储键 + "\n" + e) 的Base64URL编码（不补=），
+ * 签名针对URL解码后的存储键。校验只需一次MAC计算，不查库也不解析JWT，
+ * 配置了 media.url.secret 时，前置代理用同样的密钥和算法即可在转发前校验（或直接从磁盘返回文件）。
+ * 过期时间按 bucket-seconds 向上取整，同一时段内同一文件的URL相同，浏览器缓存可以命中
+ */
+@Component
+public class MediaUrlSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    public static final String PATH = "/media/s/";
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    // 签名密钥，未配置时从JWT密钥派生一个独立的子密钥（只在本服务内使用，不能交给代理）
+    @Value("${media.url.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    // 签名URL的最短有效期（秒）
+    @Value("${media.url.expire-seconds:21600}")
+    private long expireSeconds;
+
+    @Value("${media.url.bucket-seconds:3600}")
+    private long bucketSeconds;
+
+    private SecretKeySpec secretKey;
+
+    // Mac实例不是线程安全的，每个线程复用一个
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    public void init() {
+        byte[] key = secret != null && !secret.trim().isEmpty()
+                ? secret.trim().getBytes(StandardCharsets.UTF_8)
+                : deriveKey(jwtSecret);
+        secretKey = new SecretKeySpec(key, ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化媒体URL签名失败", e);
+            }
+        });
+    }
+
+    /**
+     * HMAC(jwt.secret, "media-url")：签名URL的密钥即使泄露也不能用来签发登录令牌
+     */
+    private static byte[] deriveKey(String jwtSecret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac.doFinal("media-url".getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化媒体URL签名失败", e);
+        }
+    }
+
+    /**
+     * 生成存储键的签名URL，存储键为空时返回null
+     */
+    public String sign(String storageKey) {
+        if (storageKey == null || storageKey.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        long bucket = Math.max(1, bucketSeconds);
+        long expires = ((now + expireSeconds) / bucket + 1) * bucket;
+        return contextPath + PATH + UriUtils.encodePathSegment(storageKey, StandardCharsets.UTF_8)
+                + "?e=" + expires + "&s=" + signature(storageKey, expires);
+    }
+
+    /**
+     * 校验签名和有效期
+     */
+    public boolean verify(String storageKey, long expires, String signature) {
+        if (storageKey == null || signature == null || expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        byte[] expected = signature(storageKey, expires).getBytes(StandardCharsets.US_ASCII);
+        // 固定时间比较，避免按响应时间逐字节猜出签名
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 为列表和详情中的媒体填充原文件和封面的签名URL
+     */
+    public void signUrls(List<MediaFile> mediaList) {
+        if (mediaList == null) {
+            return;
+        }
+        for (MediaFile mediaFile : mediaList) {
+            signUrls(mediaFile);
+        }
+    }
+
+    public void signUrls(MediaFile mediaFile) {
+        if (mediaFile == null) {
+            return;
+        }
+        mediaFile.setSignedUrl(sign(storageKey(mediaFile.getFilePath())));
+        mediaFile.setSignedCoverUrl(sign(storageKey(mediaFile.getCoverPath())));
+    }
+
+    // 历史数据中的路径可能带目录，存储键只取文件名
+    private String storageKey(String path) {
+        return path == null ? null : FilenameUtils.getName(path);
+    }
+
+    private String signature(String storageKey, long expires) {
+        Mac mac = macs.get();
+        byte[] digest = mac.doFinal((storageKey + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.xiaoniangao.config;
+
+import com.example.xiaoniangao.storage.ByteCache;
+import com.example.xiaoniangao.storage.LocalStorageBackend;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.storage.TieredStorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Paths;
+
+/**
+ * 媒体文件存储配置：
+ * 只配置 file.upload.path 时使用单目录本地存储；
+ * 同时配置 file.storage.cold-path 时启用冷热分层，上传目录为热存储，cold-path为冷存储（通常是另一块盘）
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public StorageBackend storageBackend(@Value("${file.upload.path}") String uploadPath,
+                                         @Value("${file.storage.cold-path:}") String coldPath) {
+        // 未配置时使用固定路径作为备选，确保文件能保存成功
+        LocalStorageBackend hot = new LocalStorageBackend(Paths.get(
+                uploadPath != null && !uploadPath.isEmpty() ? uploadPath : "c:\\dev\\media-files\\"));
+        if (coldPath == null || coldPath.trim().isEmpty()) {
+            return hot;
+        }
+        return new TieredStorageBackend(hot, new LocalStorageBackend(Paths.get(coldPath.trim())));
+    }
+
+    /**
+     * 缩略图等小文件的堆外内存缓存，max-size为0时不缓存
+     */
+    @Bean
+    public ByteCache byteCache(@Value("${media.memory-cache.max-size:128MB}") DataSize maxSize,
+                               @Value("${media.memory-cache.max-object-size:256KB}") DataSize maxObjectSize) {
+        return new ByteCache(maxSize.toBytes(), (int) Math.min(Integer.MAX_VALUE, maxObjectSize.toBytes()));
+    }
+}
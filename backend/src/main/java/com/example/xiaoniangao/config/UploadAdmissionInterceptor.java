@@ -0,0 +1,63 @@
+package com.example.xiaoniangao.config;
+
+import com.example.xiaoniangao.service.UploadAdmissionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 上传接口的准入拦截器：在读取请求体之前占用上传名额，超限时立即返回429/503和Retry-After，
+ * 请求不会在Tomcat线程上排队等待
+ */
+@Component
+public class UploadAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_KEY = UploadAdmissionInterceptor.class.getName() + ".userKey";
+
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 未登录的请求按客户端地址限流，之后由接口自身返回未登录
+        Object userId = request.getAttribute("userId");
+        String userKey = userId != null ? "user:" + userId : "ip:" + request.getRemoteAddr();
+
+        UploadAdmissionService.Rejection rejection = uploadAdmissionService.tryAcquire(userKey);
+        if (rejection != null) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("code", 0);
+            body.put("message", rejection.getMessage());
+            body.put("data", new HashMap<>());
+            response.setStatus(rejection.getStatus());
+            response.setHeader("Retry-After", String.valueOf(rejection.getRetryAfterSeconds()));
+            // 请求体不会被读取，让容器关闭连接而不是继续接收
+            response.setHeader("Connection", "close");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), body);
+            return false;
+        }
+        request.setAttribute(ADMITTED_KEY, userKey);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object userKey = request.getAttribute(ADMITTED_KEY);
+        if (userKey != null) {
+            request.removeAttribute(ADMITTED_KEY);
+            uploadAdmissionService.release((String) userKey);
+        }
+    }
+}
@@ -15,6 +15,9 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private UploadAdmissionInterceptor uploadAdmissionInterceptor;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         // 允许指定源的跨域请求
@@ -22,6 +25,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:5173", "http://localhost:5174")  // 同时支持5173和5174端口
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("Accept-Ranges", "Content-Range", "Content-Length", "Content-Disposition", "ETag", "Last-Modified")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -31,7 +35,12 @@ public class WebConfig implements WebMvcConfigurer {
         // 注册JWT认证过滤器，排除不需要认证的路径
         registry.addInterceptor(new JwtAuthenticationInterceptor(jwtAuthenticationFilter))
                 .addPathPatterns("/**")
-                .excludePathPatterns("/api/login", "/api/register"); // 登录和注册接口不需要认证
+                .excludePathPatterns("/api/login", "/api/register", MediaUrlSigner.PATH + "**"); // 登录、注册和签名URL不需要认证
+
+        // 上传准入控制，放在JWT之后以便按用户计数
+        registry.addInterceptor(uploadAdmissionInterceptor)
+                .addPathPatterns("/media/upload", "/media/upload-stream", "/media/batch-upload", "/media/chunk-upload/*/*")
+                .excludePathPatterns("/media/chunk-upload/*/complete");
     }
 
     /**
@@ -3,15 +3,23 @@ package com.example.xiaoniangao.controller;
 import com.example.xiaoniangao.entity.MediaFile;
 import com.example.xiaoniangao.entity.Tag;
 import com.example.xiaoniangao.entity.User;
+import com.example.xiaoniangao.service.ImageTransformService;
+import com.example.xiaoniangao.service.MediaCounterService;
+import com.example.xiaoniangao.service.MediaExportService;
 import com.example.xiaoniangao.service.MediaFileService;
+import com.example.xiaoniangao.service.MediaJobService;
+import com.example.xiaoniangao.service.MediaSearchService;
+import com.example.xiaoniangao.service.MediaStreamService;
+import com.example.xiaoniangao.service.StorageTierService;
 import com.example.xiaoniangao.service.TagService;
+import com.example.xiaoniangao.service.UploadAdmissionService;
 import com.example.xiaoniangao.service.UserService;
+import com.example.xiaoniangao.storage.ByteCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.io.File;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +36,33 @@ public class AdminController {
     @Autowired
     private MediaFileService mediaFileService;
 
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    @Autowired
+    private ImageTransformService imageTransformService;
+
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Autowired
+    private MediaStreamService mediaStreamService;
+
+    @Autowired
+    private MediaExportService mediaExportService;
+
+    @Autowired
+    private ByteCache byteCache;
+
+    @Autowired
+    private MediaSearchService mediaSearchService;
+
+    @Autowired
+    private MediaCounterService mediaCounterService;
+
     // 用户管理
     @GetMapping("users")
     public Map<String, Object> getUsers(
@@ -88,9 +123,11 @@ public class AdminController {
 
     // 标签管理
     @GetMapping("tags")
-    public Map<String, Object> getTags() {
+    public Map<String, Object> getTags(@RequestParam(value = "keyword", required = false) String keyword) {
         Map<String, Object> result = new HashMap<>();
-        List<Tag> tags = tagService.list();
+        // 带关键词时按标签名或拼音筛选
+        List<Tag> tags = keyword == null || keyword.trim().isEmpty()
+                ? tagService.list() : tagService.searchTags(keyword, Integer.MAX_VALUE);
         result.put("code", 1);
         result.put("message", "success");
         result.put("data", tags);
@@ -146,12 +183,11 @@ public class AdminController {
                 return result;
             }
             
-            // 更新媒体信息
-            mediaFile.setTitle(fileTitle);
-            mediaFile.setDescription(fileDescription);
-            boolean success = mediaFileService.updateById(mediaFile);
+            // 只更新标题和描述：文件路径、内容哈希等可能正被后台任务（如视频前置moov）修改，不能用读到的旧值覆盖
+            boolean success = mediaFileService.updateTitleAndDescription(id, fileTitle, fileDescription);
             
             if (success) {
+                mediaSearchService.reindex(id);
                 result.put("code", 1);
                 result.put("message", "success");
             } else {
@@ -181,14 +217,10 @@ public class AdminController {
                 return result;
             }
             
-            boolean success = mediaFileService.removeById(mediaId);
+            // 删除记录，文件在没有其他媒体引用时一并删除
+            boolean success = mediaFileService.adminDeleteMedia(mediaId);
             
             if (success) {
-                // 删除文件
-                File file = new File(mediaFile.getFilePath());
-                if (file.exists()) {
-                    file.delete();
-                }
                 result.put("code", 1);
                 result.put("message", "success");
             } else {
@@ -203,4 +235,106 @@ public class AdminController {
         }
         return result;
     }
-}
\ No newline at end of file
+
+    // 后台处理任务队列统计（按任务类型和状态）
+    @GetMapping("job-stats")
+    public Map<String, Object> getJobStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaJobService.getJobStats());
+        return result;
+    }
+
+    // 上传准入控制统计（在途上传数、拒绝次数、磁盘剩余空间）
+    @GetMapping("upload-stats")
+    public Map<String, Object> getUploadStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", uploadAdmissionService.getStats());
+        return result;
+    }
+
+    // 冷热存储迁移统计
+    @GetMapping("storage-stats")
+    public Map<String, Object> getStorageStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", storageTierService.getStats());
+        return result;
+    }
+
+    // 图片尺寸缓存统计
+    @GetMapping("image-cache-stats")
+    public Map<String, Object> getImageCacheStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", imageTransformService.getStats());
+        return result;
+    }
+
+    // 媒体播放统计（元数据缓存、异步输出数）
+    @GetMapping("stream-stats")
+    public Map<String, Object> getStreamStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaStreamService.getStats());
+        return result;
+    }
+
+    // 小文件内存缓存统计（命中率、淘汰次数、占用字节数）
+    @GetMapping("memory-cache-stats")
+    public Map<String, Object> getMemoryCacheStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", byteCache.getStats());
+        return result;
+    }
+
+    // 搜索索引统计（是否就绪、文档数、词项数、倒排表大小、平均查询耗时）
+    @GetMapping("search-stats")
+    public Map<String, Object> getSearchStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaSearchService.getStats());
+        return result;
+    }
+
+    // 媒体计数统计（总数、各状态数、上次校准时间和累计修正项数）
+    @GetMapping("counter-stats")
+    public Map<String, Object> getCounterStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaCounterService.getStats());
+        return result;
+    }
+
+    // 立即用实际数据校准媒体计数，返回修正的计数项数
+    @PostMapping("reconcile-counters")
+    public Map<String, Object> reconcileCounters() {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Object> data = new HashMap<>();
+        data.put("corrected", mediaCounterService.reconcile());
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", data);
+        return result;
+    }
+
+    // 打包下载统计（在途导出数、中断次数、导出字节数）
+    @GetMapping("export-stats")
+    public Map<String, Object> getExportStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaExportService.getStats());
+        return result;
+    }
+}
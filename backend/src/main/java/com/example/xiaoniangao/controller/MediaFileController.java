@@ -1,10 +1,24 @@
 package com.example.xiaoniangao.controller;
 
 import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.service.ChunkUploadService;
+import com.example.xiaoniangao.service.ImageTransformService;
+import com.example.xiaoniangao.service.MediaExportService;
 import com.example.xiaoniangao.service.MediaFileService;
+import com.example.xiaoniangao.service.MediaRenditionService;
+import com.example.xiaoniangao.service.MediaStreamService;
+import com.example.xiaoniangao.service.MediaTagService;
+import com.example.xiaoniangao.service.StorageTierService;
+import com.example.xiaoniangao.service.TagService;
 import com.example.xiaoniangao.config.JwtTokenUtil;
+import com.example.xiaoniangao.config.MediaUrlSigner;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -12,11 +26,18 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -30,9 +51,39 @@ public class MediaFileController {
     @Autowired
     private MediaFileService mediaFileService;
 
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private MediaRenditionService mediaRenditionService;
+
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Autowired
+    private ImageTransformService imageTransformService;
+
+    @Autowired
+    private MediaStreamService mediaStreamService;
+
+    @Autowired
+    private MediaUrlSigner mediaUrlSigner;
+
+    @Autowired
+    private MediaExportService mediaExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private MediaTagService mediaTagService;
+
     @Value("${file.upload.path}")
     private String uploadPath;
 
@@ -102,21 +153,217 @@ public class MediaFileController {
         }
     }
 
+    // 流式上传：请求体就是文件原始字节，元数据放在查询参数中，不经过multipart临时文件
+    @PostMapping("upload-stream")
+    public ResponseEntity<Map<String, Object>> uploadStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("title") String title,
+            @RequestParam("description") String description,
+            @RequestParam(value = "tags", required = false, defaultValue = "") String tags,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            Map<String, Object> data = mediaFileService.uploadStream(request.getInputStream(), fileName, request.getContentType(),
+                    request.getContentLengthLong(), title, description, tags, userId);
+            return buildResponse(HttpStatus.OK, 1, "上传成功", data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 批量上传：多个文件一次提交，返回每个文件的上传结果，部分失败不影响其他文件
+    @PostMapping("batch-upload")
+    public ResponseEntity<Map<String, Object>> batchUpload(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "description", required = false, defaultValue = "") String description,
+            @RequestParam(value = "tags", required = false, defaultValue = "") String tags,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            List<Map<String, Object>> results = mediaFileService.batchUpload(files, title, description, tags, userId);
+            int successCount = 0;
+            for (Map<String, Object> result : results) {
+                if (Boolean.TRUE.equals(result.get("success"))) {
+                    successCount++;
+                }
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("results", results);
+            data.put("successCount", successCount);
+            data.put("failCount", results.size() - successCount);
+            String message = successCount == results.size() ? "上传成功" : "部分文件上传失败";
+            return buildResponse(HttpStatus.OK, successCount > 0 ? 1 : 0, message, data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 秒传预检：客户端先提交文件的SHA-256，服务器已有相同内容时直接完成上传，无需传输文件
+    @PostMapping("upload-precheck")
+    public ResponseEntity<Map<String, Object>> uploadPrecheck(
+            @RequestParam("hash") String hash,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam("title") String title,
+            @RequestParam("description") String description,
+            @RequestParam("tags") String tags,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            Map<String, Object> data = mediaFileService.instantUpload(hash.toLowerCase(), fileSize, fileName, contentType, title, description, tags, userId);
+            if (data == null) {
+                data = new HashMap<>();
+                data.put("instant", false);
+                return buildResponse(HttpStatus.OK, 1, "需要上传文件", data);
+            }
+            data.put("instant", true);
+            return buildResponse(HttpStatus.OK, 1, "上传成功", data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 分片上传：初始化
+    @PostMapping("chunk-upload/init")
+    public ResponseEntity<Map<String, Object>> initChunkUpload(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "chunkSize", required = false) Long chunkSize,
+            @RequestParam("title") String title,
+            @RequestParam("description") String description,
+            @RequestParam("tags") String tags,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            Map<String, Object> data = chunkUploadService.initUpload(fileName, fileSize, contentType, chunkSize, title, description, tags, userId);
+            return buildResponse(HttpStatus.OK, 1, "success", data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "初始化上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 分片上传：写入一个分片，请求体为分片的原始字节（application/octet-stream）
+    @PutMapping("chunk-upload/{uploadId}/{index}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable("uploadId") String uploadId,
+            @PathVariable("index") int index,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            Map<String, Object> data = chunkUploadService.writeChunk(uploadId, index, request.getInputStream(), userId);
+            return buildResponse(HttpStatus.OK, 1, "success", data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "分片上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 分片上传：查询已接收的分片，用于断点续传
+    @GetMapping("chunk-upload/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getChunkUploadStatus(
+            @PathVariable("uploadId") String uploadId,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录", new HashMap<>());
+        }
+        try {
+            return buildResponse(HttpStatus.OK, 1, "success", chunkUploadService.getStatus(uploadId, userId));
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.NOT_FOUND, 0, e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 分片上传：全部分片到齐后完成上传
+    @PostMapping("chunk-upload/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeChunkUpload(
+            @PathVariable("uploadId") String uploadId,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录，无法上传文件", new HashMap<>());
+        }
+        try {
+            Map<String, Object> data = chunkUploadService.completeUpload(uploadId, userId);
+            return buildResponse(HttpStatus.OK, 1, "上传成功", data);
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.BAD_REQUEST, 0, e.getMessage(), new HashMap<>());
+        } catch (Exception e) {
+            return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, 0, "上传失败: " + e.getMessage(), new HashMap<>());
+        }
+    }
+
+    // 分片上传：取消
+    @DeleteMapping("chunk-upload/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abortChunkUpload(
+            @PathVariable("uploadId") String uploadId,
+            HttpServletRequest request) {
+        Long userId = getCurrentUserId(request);
+        if (userId == null) {
+            return buildResponse(HttpStatus.UNAUTHORIZED, 0, "用户未登录", new HashMap<>());
+        }
+        try {
+            chunkUploadService.abortUpload(uploadId, userId);
+            return buildResponse(HttpStatus.OK, 1, "success", new HashMap<>());
+        } catch (IllegalArgumentException e) {
+            return buildResponse(HttpStatus.NOT_FOUND, 0, e.getMessage(), new HashMap<>());
+        }
+    }
+
     @GetMapping("my-media")
     public Map<String, Object> getMyMedia(
             @RequestParam("userId") Long userId,
             @RequestParam(value = "keyword", required = false, defaultValue = "") String keyword,
             @RequestParam(value = "page", required = false, defaultValue = "1") int page,
-            @RequestParam(value = "size", required = false, defaultValue = "12") int size) {
+            @RequestParam(value = "size", required = false, defaultValue = "12") int size,
+            @RequestParam(value = "thumbWidth", required = false) Integer thumbWidth,
+            @RequestParam(value = "cursor", required = false) String cursor) {
 
+        if (cursor != null) {
+            return cursorResult(() -> mediaFileService.getMyMediaPage(userId, keyword, cursor, size), "size", size, thumbWidth);
+        }
         Map<String, Object> result = new HashMap<>();
         List<MediaFile> mediaList = mediaFileService.getMyMedia(userId, keyword, page, size);
-        int total = mediaFileService.getMyMediaCount(userId, keyword);
+        if (thumbWidth != null) {
+            // 按客户端网格宽度选择最小的合适缩略图
+            mediaRenditionService.fillCovers(mediaList, thumbWidth);
+        }
+        mediaUrlSigner.signUrls(mediaList);
+        // 整页的标签一次查出
+        mediaTagService.fillTagLists(mediaList);
+        MediaFileService.MediaCount count = mediaFileService.getMyMediaCount(userId, keyword);
         
         result.put("code", 1);
         result.put("message", "success");
         result.put("data", mediaList);
-        result.put("total", total);
+        putTotal(result, count, mediaList, page, size);
         result.put("page", page);
         result.put("size", size);
         
@@ -127,29 +374,53 @@ public class MediaFileController {
     public Map<String, Object> getPublicMedia(
             @RequestParam(value = "keyword", required = false, defaultValue = "") String keyword,
             @RequestParam(value = "page", required = false, defaultValue = "1") int page,
-            @RequestParam(value = "size", required = false, defaultValue = "20") int size) {
+            @RequestParam(value = "size", required = false, defaultValue = "20") int size,
+            @RequestParam(value = "thumbWidth", required = false) Integer thumbWidth,
+            @RequestParam(value = "cursor", required = false) String cursor) {
 
+        if (cursor != null) {
+            return cursorResult(() -> mediaFileService.getPublicMediaPage(keyword, cursor, size), "size", size, thumbWidth);
+        }
         Map<String, Object> result = new HashMap<>();
         // 调用支持关键词搜索的getPublicMedia和getPublicMediaCount方法
         List<MediaFile> mediaList = mediaFileService.getPublicMedia(keyword, page, size);
-        int total = mediaFileService.getPublicMediaCount(keyword);
+        if (thumbWidth != null) {
+            mediaRenditionService.fillCovers(mediaList, thumbWidth);
+        }
+        mediaUrlSigner.signUrls(mediaList);
+        // 整页的标签一次查出
+        mediaTagService.fillTagLists(mediaList);
+        MediaFileService.MediaCount count = mediaFileService.getPublicMediaCount(keyword);
         
         result.put("code", 1);
         result.put("message", "success");
         result.put("data", mediaList);
-        result.put("total", total);
+        putTotal(result, count, mediaList, page, size);
         result.put("page", page);
         result.put("size", size);
         
         return result;
     }
 
+    // 标签联想：支持标签名、全拼和首字母（如 fj 匹配“风景”）
+    @GetMapping("tags")
+    public Map<String, Object> searchTags(@RequestParam("keyword") String keyword,
+                                          @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", tagService.searchTags(keyword, Math.min(Math.max(limit, 1), 50)));
+        return result;
+    }
+
     @GetMapping("media-detail")
     public Map<String, Object> getMediaDetail(@RequestParam("fileId") Long fileId) {
         Map<String, Object> result = new HashMap<>();
         MediaFile mediaFile = mediaFileService.getMediaDetail(fileId);
         
         if (mediaFile != null) {
+            storageTierService.recordAccess(mediaFile);
+            mediaUrlSigner.signUrls(mediaFile);
             result.put("code", 1);
             result.put("message", "success");
             result.put("data", mediaFile);
@@ -194,42 +465,279 @@ public class MediaFileController {
     }
 
     @GetMapping("download-media")
-    public void downloadMedia(@RequestParam("fileId") Long fileId, HttpServletResponse response) {
+    public void downloadMedia(@RequestParam("fileId") Long fileId, HttpServletRequest request, HttpServletResponse response) {
         MediaFile mediaFile = mediaFileService.getById(fileId);
-        if (mediaFile != null) {
-            File file = new File(mediaFile.getFilePath());
-            if (file.exists()) {
-                response.setContentType("application/octet-stream");
-                response.setHeader("Content-Disposition", "attachment; filename=" + URLEncoder.encode(mediaFile.getFilePath()));
-                
-                try (InputStream in = new FileInputStream(file); OutputStream out = response.getOutputStream()) {
-                    byte[] buffer = new byte[1024];
-                    int len;
-                    while ((len = in.read(buffer)) > 0) {
-                        out.write(buffer, 0, len);
-                    }
-                } catch (IOException e) {
-                    // 异常已捕获，移除调试输出
-                }
+        if (mediaFile == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // 续传/拖动进度条时同一次查看会产生多个Range请求，只有从头开始的请求计一次访问
+        if (isInitialRequest(request)) {
+            storageTierService.recordAccess(mediaFile);
+        }
+        try {
+            mediaStreamService.serve(mediaFile.getFilePath(), mediaFile.getContentHash(), "application/octet-stream",
+                    "attachment; filename=" + URLEncoder.encode(downloadFileName(mediaFile.getTitle(), mediaFile.getFilePath())), false, request, response);
+        } catch (IOException e) {
+            // 客户端中断下载（如取消、拖动进度条）时写出失败，无需处理
+        }
+    }
+
+    private boolean isInitialRequest(HttpServletRequest request) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        return range == null || range.startsWith("bytes=0-");
+    }
+
+    // 打包下载：ids为选中的媒体，不传时导出该用户的全部媒体（可按关键词过滤）。边读边写ZIP，不生成临时文件
+    @RequestMapping(value = "export-zip", method = {RequestMethod.GET, RequestMethod.POST})
+    public void exportZip(
+            @RequestParam(value = "ids", required = false) List<Long> ids,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "keyword", required = false, defaultValue = "") String keyword,
+            HttpServletResponse response) throws IOException {
+        if (!mediaExportService.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            writeJsonError(response, HttpStatus.SERVICE_UNAVAILABLE, "同时进行的打包下载过多，请稍后再试");
+            return;
+        }
+        try {
+            String fileName = "media-" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".zip";
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            // 总大小事先未知，按分块传输编码输出
+            mediaExportService.exportZip(ids, userId, keyword, response.getOutputStream());
+        } catch (IllegalArgumentException e) {
+            // 参数校验在写出任何数据之前进行，可以改为返回错误信息
+            response.reset();
+            writeJsonError(response, HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            // 客户端取消下载，导出已停止
+        } finally {
+            mediaExportService.release();
+        }
+    }
+
+    private void writeJsonError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("code", 0);
+        body.put("message", message);
+        body.put("data", new HashMap<>());
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    // 按存储键在线播放/显示：存储键含内容哈希，内容不会变化，可长期缓存
+    @GetMapping("file/{key:.+}")
+    public void streamByKey(@PathVariable("key") String key, HttpServletRequest request, HttpServletResponse response) {
+        MediaStreamService.StreamTarget target;
+        try {
+            target = mediaStreamService.findByKey(key);
+        } catch (IllegalArgumentException e) {
+            // 不合法的存储键
+            target = null;
+        }
+        if (target != null && isInitialRequest(request)) {
+            storageTierService.recordKeyAccess(target.getStorageKey());
+        }
+        streamInline(target, true, request, response);
+    }
+
+    // 签名URL访问（列表和详情接口返回）：只校验签名和有效期，不查库、不解析JWT
+    @GetMapping("s/{key:.+}")
+    public void streamSigned(@PathVariable("key") String key,
+                             @RequestParam("e") long expires,
+                             @RequestParam("s") String signature,
+                             HttpServletRequest request, HttpServletResponse response) {
+        if (!mediaUrlSigner.verify(key, expires, signature)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        // 签名时的存储键来自媒体记录，校验通过即为合法的键
+        MediaStreamService.StreamTarget target = mediaStreamService.describeKey(key);
+        if (isInitialRequest(request)) {
+            storageTierService.recordKeyAccess(key);
+        }
+        streamInline(target, true, request, response);
+    }
+
+    // 按媒体ID在线播放/显示：文件可能被后台任务替换（如视频前置moov），每次用ETag验证
+    @GetMapping("{id}/stream")
+    public void streamById(@PathVariable("id") Long id, HttpServletRequest request, HttpServletResponse response) {
+        MediaStreamService.StreamTarget target = mediaStreamService.findById(id);
+        if (target != null && isInitialRequest(request)) {
+            MediaFile accessed = new MediaFile();
+            accessed.setId(target.getMediaId());
+            accessed.setFilePath(target.getStorageKey());
+            storageTierService.recordAccess(accessed);
+        }
+        streamInline(target, false, request, response);
+    }
+
+    private void streamInline(MediaStreamService.StreamTarget target, boolean immutable,
+                              HttpServletRequest request, HttpServletResponse response) {
+        if (target == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentType = target.getContentType();
+        String fileName = URLEncoder.encode(downloadFileName(target.getTitle(), target.getStorageKey()));
+        // 只有图片、音视频在页面内显示，其他类型（HTML、SVG等可能含脚本）一律作为附件下载
+        boolean inline = contentType != null && !contentType.contains("svg")
+                && (contentType.startsWith("image/") || contentType.startsWith("video/") || contentType.startsWith("audio/"));
+        String disposition = (inline ? "inline" : "attachment") + "; filename=" + fileName;
+        try {
+            mediaStreamService.serve(target.getStorageKey(), target.getContentHash(),
+                    inline ? contentType : "application/octet-stream", disposition, immutable, request, response);
+        } catch (IOException e) {
+            // 客户端中断（如拖动进度条后浏览器取消之前的请求），无需处理
+        }
+    }
+
+    /**
+     * 下载文件名：标题加原扩展名，没有标题时使用存储键
+     */
+    private String downloadFileName(String title, String storageKey) {
+        if (title == null || title.trim().isEmpty()) {
+            return storageKey;
+        }
+        String extension = FilenameUtils.getExtension(storageKey);
+        return extension.isEmpty() ? title : title + "." + extension;
+    }
+    
+    // 按需生成图片尺寸：w/h必须在允许的尺寸列表中，fit=contain等比缩小，fit=cover铺满后居中裁剪
+    @GetMapping("{id}/img")
+    public CompletableFuture<ResponseEntity<Object>> getImageVariant(
+            @PathVariable("id") Long id,
+            @RequestParam("w") int width,
+            @RequestParam(value = "h", required = false, defaultValue = "0") int height,
+            @RequestParam(value = "fit", required = false, defaultValue = ImageTransformService.FIT_CONTAIN) String fit) {
+        MediaFile mediaFile = mediaFileService.getById(id);
+        if (mediaFile == null) {
+            return CompletableFuture.completedFuture(imageError(HttpStatus.NOT_FOUND, "文件不存在"));
+        }
+        CompletableFuture<Path> variant;
+        try {
+            variant = imageTransformService.getVariant(mediaFile, width, height, fit);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(imageError(HttpStatus.BAD_REQUEST, e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(imageError(HttpStatus.SERVICE_UNAVAILABLE, "图片处理繁忙，请稍后再试"));
+        }
+        // 生成在独立线程池中进行，请求线程不等待
+        return variant.handle((file, error) -> {
+            if (error != null) {
+                return imageError(HttpStatus.INTERNAL_SERVER_ERROR, "图片处理失败");
             }
+            // 同一原图同一尺寸的结果不变，带ETag后缓存过期时只需304验证
+            String source = mediaFile.getContentHash() != null ? mediaFile.getContentHash() : mediaFile.getFilePath();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic())
+                    .eTag(source + "-" + width + "x" + height + "-" + fit)
+                    .body(imageTransformService.toResource(file));
+        });
+    }
+
+    private ResponseEntity<Object> imageError(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 0);
+        response.put("message", message);
+        response.put("data", new HashMap<>());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            builder.header(HttpHeaders.RETRY_AFTER, "1");
         }
+        return builder.body(response);
     }
     
     // 新增API：获取最新媒体数据（支持分页）
     @GetMapping(value = "recent", produces = {"application/json;charset=utf-8"})
     public Map<String, Object> getRecentMedia(
             @RequestParam(value = "page", required = false, defaultValue = "1") int page,
-            @RequestParam(value = "limit", required = false, defaultValue = "8") int limit) {
+            @RequestParam(value = "limit", required = false, defaultValue = "8") int limit,
+            @RequestParam(value = "thumbWidth", required = false) Integer thumbWidth,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            return cursorResult(() -> mediaFileService.getRecentMediaPage(cursor, limit), "limit", limit, thumbWidth);
+        }
         Map<String, Object> result = new HashMap<>();
         List<MediaFile> mediaList = mediaFileService.getRecentMedia(page, limit);
+        if (thumbWidth != null) {
+            mediaRenditionService.fillCovers(mediaList, thumbWidth);
+        }
+        mediaUrlSigner.signUrls(mediaList);
+        // 整页的标签一次查出
+        mediaTagService.fillTagLists(mediaList);
         int total = mediaFileService.getRecentMediaCount();
         
         result.put("code", 1);
         result.put("message", "success");
         result.put("data", mediaList);
-        result.put("total", total);
+        putTotal(result, new MediaFileService.MediaCount(total, true), mediaList, page, limit);
         result.put("page", page);
         result.put("limit", limit);
         return result;
     }
+
+    /**
+     * 总数和是否还有下一页。带关键词且搜索索引不可用时总数只数到上限，totalExact为false，
+     * 此时以本页是否取满判断hasMore
+     */
+    private void putTotal(Map<String, Object> result, MediaFileService.MediaCount count, List<MediaFile> mediaList,
+                          int page, int size) {
+        boolean full = mediaList.size() >= size;
+        result.put("total", count.getTotal());
+        result.put("totalExact", count.isExact());
+        result.put("hasMore", full && (!count.isExact() || (long) page * size < count.getTotal()));
+    }
+
+    /**
+     * 游标分页的响应（传了cursor参数时使用，第一页传空字符串）：
+     * 不返回总数（COUNT要扫描全部匹配行），nextCursor为下一页的游标，没有更多数据时为null
+     */
+    private Map<String, Object> cursorResult(Supplier<MediaFileService.CursorPage> query, String sizeName, int size,
+                                             Integer thumbWidth) {
+        Map<String, Object> result = new HashMap<>();
+        MediaFileService.CursorPage page;
+        try {
+            page = query.get();
+        } catch (IllegalArgumentException e) {
+            result.put("code", 0);
+            result.put("message", e.getMessage());
+            result.put("data", new ArrayList<>());
+            return result;
+        }
+        List<MediaFile> mediaList = page.getItems();
+        if (thumbWidth != null) {
+            mediaRenditionService.fillCovers(mediaList, thumbWidth);
+        }
+        mediaUrlSigner.signUrls(mediaList);
+        // 整页的标签一次查出
+        mediaTagService.fillTagLists(mediaList);
+        result.put("code", 1);
+        result.put("message", "success");
+        result.put("data", mediaList);
+        result.put("nextCursor", page.getNextCursor());
+        result.put("hasMore", page.getNextCursor() != null);
+        result.put(sizeName, size);
+        return result;
+    }
+
+    /**
+     * 当前登录用户ID，由JWT拦截器解析后放在request属性中
+     */
+    private Long getCurrentUserId(HttpServletRequest request) {
+        Object userId = request.getAttribute("userId");
+        return userId instanceof Long ? (Long) userId : null;
+    }
+
+    private ResponseEntity<Map<String, Object>> buildResponse(HttpStatus status, int code, String message, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", code);
+        response.put("message", message);
+        response.put("data", data);
+        return ResponseEntity.status(status).body(response);
+    }
 }
\ No newline at end of file
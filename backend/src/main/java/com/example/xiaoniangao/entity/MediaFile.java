@@ -9,12 +9,20 @@ import lombok.Data;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 @Data
 @TableName("media")
 public class MediaFile implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    public static final int PROCESS_PENDING = 0; // 后台处理中（封面、元数据等）
+    public static final int PROCESS_DONE = 2; // 后台处理完成
+    public static final int PROCESS_FAILED = 3; // 部分后台处理失败
+
+    public static final int TIER_HOT = 0; // 文件在热存储（本地SSD）
+    public static final int TIER_COLD = 1; // 文件在冷存储（归档目录）
+
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
     
@@ -36,6 +44,41 @@ public class MediaFile implements Serializable {
     @TableField("file_size")
     private Long fileSize;
     
+    // 文件内容的SHA-256，相同内容的媒体共用同一个存储文件
+    @TableField("content_hash")
+    private String contentHash;
+    
+    // 上传时的文件内容SHA-256，存储文件被改写后content_hash会变化，它保持不变，用于秒传
+    @TableField("source_hash")
+    private String sourceHash;
+    
+    // 按文件头识别出的真实MIME类型，未识别时为空
+    @TableField("mime_type")
+    private String mimeType;
+    
+    // 显示尺寸（已按EXIF/视频旋转方向换算），未知时为空
+    @TableField("width")
+    private Integer width;
+    
+    @TableField("height")
+    private Integer height;
+    
+    // EXIF方向值1-8，视频按旋转角度折算
+    @TableField("orientation")
+    private Integer orientation;
+    
+    // 视频时长（毫秒）
+    @TableField("duration_ms")
+    private Long durationMs;
+    
+    // 拍摄时间（EXIF DateTimeOriginal 或视频创建时间）
+    @TableField("taken_at")
+    private Date takenAt;
+    
+    // 视频编码（如avc1、hvc1）
+    @TableField("video_codec")
+    private String videoCodec;
+    
     @TableField("cover_path")
     private String coverPath;
     
@@ -45,6 +88,18 @@ public class MediaFile implements Serializable {
     @TableField("status")
     private Integer status;
     
+    // 后台处理状态，见PROCESS_*常量
+    @TableField("process_status")
+    private Integer processStatus;
+    
+    // 文件所在的存储层，见TIER_*常量
+    @TableField("storage_tier")
+    private Integer storageTier;
+    
+    // 最近一次查看/下载的时间，用于冷热分层
+    @TableField("last_access_time")
+    private Date lastAccessTime;
+    
     @TableField(value = "create_time", fill = com.baomidou.mybatisplus.annotation.FieldFill.INSERT)
     private Date createTime;
     
@@ -58,8 +113,20 @@ public class MediaFile implements Serializable {
     // 文件标签，不存在于数据库中
     @TableField(exist = false)
     private String tags;
+
+    // 标签数组（id和tagName），列表接口按页批量填充，不存在于数据库中
+    @TableField(exist = false)
+    private List<Tag> tagList;
     
     // 原始文件名，不存在于数据库中
     @TableField(exist = false)
     private String originalFileName;
+    
+    // 原文件的签名URL，访问时不查库，不存在于数据库中
+    @TableField(exist = false)
+    private String signedUrl;
+    
+    // 封面的签名URL，不存在于数据库中
+    @TableField(exist = false)
+    private String signedCoverUrl;
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.example.xiaoniangao.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 媒体后台处理任务（持久化任务队列）
+ */
+@Data
+@TableName("media_job")
+public class MediaJob implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS_PENDING = 0; // 等待执行（含等待重试）
+    public static final int STATUS_RUNNING = 1; // 执行中
+    public static final int STATUS_SUCCESS = 2; // 执行成功
+    public static final int STATUS_FAILED = 3; // 重试次数用尽后失败
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("media_id")
+    private Long mediaId;
+
+    @TableField("job_type")
+    private String jobType;
+
+    @TableField("status")
+    private Integer status;
+
+    // 已执行次数
+    @TableField("attempts")
+    private Integer attempts;
+
+    @TableField("max_attempts")
+    private Integer maxAttempts;
+
+    // 最早可执行时间，重试时按退避时间后移
+    @TableField("next_run_time")
+    private Date nextRunTime;
+
+    @TableField("last_error")
+    private String lastError;
+
+    @TableField(value = "create_time", fill = FieldFill.INSERT)
+    private Date createTime;
+
+    @TableField(value = "update_time", fill = FieldFill.INSERT_UPDATE)
+    private Date updateTime;
+}
@@ -0,0 +1,41 @@
+package com.example.xiaoniangao.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 媒体缩略图（不同宽度的派生图）
+ */
+@Data
+@TableName("media_rendition")
+public class MediaRendition implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("media_id")
+    private Long mediaId;
+
+    @TableField("width")
+    private Integer width;
+
+    @TableField("height")
+    private Integer height;
+
+    @TableField("file_path")
+    private String filePath;
+
+    @TableField("file_size")
+    private Long fileSize;
+
+    @TableField(value = "create_time", fill = FieldFill.INSERT)
+    private Date createTime;
+}
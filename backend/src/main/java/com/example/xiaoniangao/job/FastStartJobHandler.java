@@ -0,0 +1,84 @@
+package com.example.xiaoniangao.job;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.service.MediaFileService;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.util.Mp4FastStart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * MP4/MOV 快速启动任务
+ * 手机录制的视频moov通常在文件末尾，浏览器要先请求文件尾部才能开始播放。
+ * 该任务把moov移到mdat之前（纯Java改写box，不依赖ffmpeg），改写后的文件按新内容哈希存储，
+ * 引用原文件的媒体记录一起切换到新文件。
+ */
+@Component
+public class FastStartJobHandler implements MediaJobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(FastStartJobHandler.class);
+
+    public static final String JOB_TYPE = "FASTSTART";
+
+    // 媒体服务依赖任务服务，任务服务又收集所有任务处理器，延迟注入避免循环依赖
+    @Autowired
+    @Lazy
+    private MediaFileService mediaFileService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Override
+    public String getJobType() {
+        return JOB_TYPE;
+    }
+
+    @Override
+    public boolean supports(MediaFile mediaFile) {
+        String fileType = mediaFile.getFileType();
+        return "video/mp4".equals(fileType) || "video/quicktime".equals(fileType);
+    }
+
+    @Override
+    public void process(MediaFile mediaFile) throws Exception {
+        String key = mediaFile.getFilePath();
+        if (!storageBackend.exists(key)) {
+            throw new IOException("原文件不存在: " + key);
+        }
+        Path original = storageBackend.localPath(key);
+        Path downloaded = null;
+        if (original == null) {
+            downloaded = storageBackend.createTempFile();
+            try (InputStream in = storageBackend.get(key)) {
+                Files.copy(in, downloaded);
+            }
+            original = downloaded;
+        }
+        Path rewritten = storageBackend.createTempFile();
+        try {
+            // 同内容的其他媒体可能已经处理过，只需检查box顺序
+            if (!Mp4FastStart.needsFastStart(original)) {
+                return;
+            }
+            if (!Mp4FastStart.rewrite(original, rewritten)) {
+                log.info("视频结构不支持moov前置，跳过: mediaId={}", mediaFile.getId());
+                return;
+            }
+            String newKey = mediaFileService.replaceContent(mediaFile, rewritten);
+            log.info("视频moov前置完成: mediaId={}, {} -> {}", mediaFile.getId(), key, newKey);
+        } finally {
+            Files.deleteIfExists(rewritten);
+            if (downloaded != null) {
+                Files.deleteIfExists(downloaded);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.xiaoniangao.job;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaJob;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.mapper.MediaJobMapper;
+import com.example.xiaoniangao.service.MediaJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台任务调度器
+ * 定时从media_job表拉取到期任务，放到有界线程池中执行；
+ * 每种任务类型另有并发上限（media.job.concurrency.&lt;类型&gt;），避免某类重任务占满所有工作线程；
+ * 到期任务按类型分别拉取，每类最多拉取其空闲并发数，某类任务大量积压时其他类型的新任务照常执行。
+ * 失败的任务按指数退避重试，超过最大次数后标记失败。
+ * 执行中的任务定期刷新心跳（update_time），心跳停止超过 stale-minutes 的才视为进程崩溃遗留，重新入队或标记失败。
+ */
+@Component
+public class MediaJobDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaJobDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private MediaJobMapper mediaJobMapper;
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private List<MediaJobHandler> handlers = Collections.emptyList();
+
+    @Value("${media.job.workers:4}")
+    private int workers;
+
+    @Value("${media.job.default-concurrency:2}")
+    private int defaultConcurrency;
+
+    @Value("${media.job.retry-base-seconds:10}")
+    private long retryBaseSeconds;
+
+    @Value("${media.job.retry-max-seconds:3600}")
+    private long retryMaxSeconds;
+
+    @Value("${media.job.stale-minutes:30}")
+    private long staleMinutes;
+
+    private final Map<String, MediaJobHandler> handlerMap = new HashMap<>();
+    private final Map<String, Semaphore> typeLimits = new HashMap<>();
+    private final List<String> jobTypes = new ArrayList<>();
+    // 本实例正在执行的任务ID，用于心跳
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    // 每轮从不同的类型开始拉取，工作线程不足时各类型轮流优先
+    private int nextTypeIndex;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        if (handlers != null) {
+            for (MediaJobHandler handler : handlers) {
+                handlerMap.put(handler.getJobType(), handler);
+                int limit = environment.getProperty("media.job.concurrency." + handler.getJobType(), Integer.class, defaultConcurrency);
+                typeLimits.put(handler.getJobType(), new Semaphore(Math.max(1, limit)));
+                jobTypes.add(handler.getJobType());
+            }
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workers),
+                r -> {
+                    Thread thread = new Thread(r, "media-job-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 轮询到期任务并分派执行
+     */
+    @Scheduled(fixedDelayString = "${media.job.poll-interval-ms:1000}", initialDelay = 5000)
+    public void dispatch() {
+        int capacity = workers + executor.getQueue().remainingCapacity() - executor.getActiveCount();
+        if (capacity <= 0 || jobTypes.isEmpty()) {
+            return;
+        }
+        int start = nextTypeIndex;
+        nextTypeIndex = (start + 1) % jobTypes.size();
+        for (int i = 0; i < jobTypes.size() && capacity > 0; i++) {
+            String jobType = jobTypes.get((start + i) % jobTypes.size());
+            Semaphore limit = typeLimits.get(jobType);
+            // 并发已满的类型不拉取，不占用其他类型的拉取名额
+            int free = Math.min(limit.availablePermits(), capacity);
+            if (free <= 0) {
+                continue;
+            }
+            List<MediaJob> jobs;
+            try {
+                jobs = mediaJobMapper.findDueJobsByType(jobType, new Date(), free);
+            } catch (Exception e) {
+                log.warn("拉取后台任务失败: {}", e.getMessage());
+                return;
+            }
+            for (MediaJob job : jobs) {
+                if (!limit.tryAcquire()) {
+                    break;
+                }
+                if (mediaJobMapper.claimJob(job.getId()) == 0) {
+                    // 已被其他实例抢占
+                    limit.release();
+                    continue;
+                }
+                job.setAttempts(job.getAttempts() + 1);
+                MediaJobHandler handler = handlerMap.get(jobType);
+                try {
+                    executor.execute(() -> runJob(job, handler, limit));
+                } catch (RejectedExecutionException e) {
+                    limit.release();
+                    mediaJobMapper.releaseJob(job.getId());
+                    return;
+                }
+                capacity--;
+            }
+        }
+    }
+
+    /**
+     * 定期把没有处理器的任务（如处理器已下线）标记失败，避免一直停留在待执行状态
+     */
+    @Scheduled(fixedDelay = 300000, initialDelay = 10000)
+    public void failUnknownJobs() {
+        try {
+            List<MediaJob> jobs = mediaJobMapper.findUnknownTypeJobs(jobTypes, 100);
+            for (MediaJob job : jobs) {
+                mediaJobMapper.finishJob(job.getId(), MediaJob.STATUS_FAILED, "未知的任务类型: " + job.getJobType());
+                mediaJobService.refreshProcessStatus(job.getMediaId());
+            }
+        } catch (Exception e) {
+            log.warn("处理未知类型任务失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 刷新本实例执行中任务的心跳，执行时间再长也不会被当作超时任务重复执行
+     */
+    @Scheduled(fixedDelayString = "${media.job.heartbeat-ms:60000}", initialDelayString = "${media.job.heartbeat-ms:60000}")
+    public void heartbeat() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        try {
+            mediaJobMapper.touchRunningJobs(new ArrayList<>(runningJobs));
+        } catch (Exception e) {
+            log.warn("刷新任务心跳失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定期处理心跳停止的执行中任务：未达最大执行次数的放回队列，否则标记失败
+     */
+    @Scheduled(fixedDelay = 300000, initialDelay = 10000)
+    public void resetStaleJobs() {
+        try {
+            Date before = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(staleMinutes));
+            int requeued = 0;
+            int failed = 0;
+            for (MediaJob job : mediaJobMapper.findStaleJobs(before)) {
+                if (job.getAttempts() >= job.getMaxAttempts()) {
+                    if (mediaJobMapper.failStaleJob(job.getId(), before, "执行超时") > 0) {
+                        failed++;
+                        mediaJobService.refreshProcessStatus(job.getMediaId());
+                    }
+                } else if (mediaJobMapper.requeueStaleJob(job.getId(), before) > 0) {
+                    requeued++;
+                }
+            }
+            if (requeued > 0 || failed > 0) {
+                log.warn("执行超时的后台任务: 重新入队 {} 个, 标记失败 {} 个", requeued, failed);
+            }
+        } catch (Exception e) {
+            log.warn("重置超时任务失败: {}", e.getMessage());
+        }
+    }
+
+    private void runJob(MediaJob job, MediaJobHandler handler, Semaphore limit) {
+        runningJobs.add(job.getId());
+        try {
+            MediaFile mediaFile = mediaFileMapper.selectById(job.getMediaId());
+            if (mediaFile == null) {
+                // 媒体已被删除，无需处理
+                mediaJobMapper.finishJob(job.getId(), MediaJob.STATUS_SUCCESS, null);
+                return;
+            }
+            handler.process(mediaFile);
+            mediaJobMapper.finishJob(job.getId(), MediaJob.STATUS_SUCCESS, null);
+        } catch (Exception e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (error.length() > MAX_ERROR_LENGTH) {
+                error = error.substring(0, MAX_ERROR_LENGTH);
+            }
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                log.error("后台任务最终失败: id={}, type={}, mediaId={}", job.getId(), job.getJobType(), job.getMediaId(), e);
+                mediaJobMapper.finishJob(job.getId(), MediaJob.STATUS_FAILED, error);
+            } else {
+                long delaySeconds = Math.min(retryMaxSeconds, retryBaseSeconds << Math.min(job.getAttempts() - 1, 20));
+                log.warn("后台任务执行失败，{} 秒后重试: id={}, type={}, error={}", delaySeconds, job.getId(), job.getJobType(), error);
+                mediaJobMapper.retryJob(job.getId(), new Date(System.currentTimeMillis() + delaySeconds * 1000), error);
+            }
+        } finally {
+            runningJobs.remove(job.getId());
+            limit.release();
+            try {
+                mediaJobService.refreshProcessStatus(job.getMediaId());
+            } catch (Exception e) {
+                log.warn("刷新媒体处理状态失败: {}", e.getMessage());
+            }
+        }
+    }
+}
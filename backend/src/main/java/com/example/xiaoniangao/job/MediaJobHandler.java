@@ -0,0 +1,25 @@
+package com.example.xiaoniangao.job;
+
+import com.example.xiaoniangao.entity.MediaFile;
+
+/**
+ * 媒体后台处理任务处理器
+ * 实现类注册为Spring Bean后，上传完成时会为其支持的媒体自动创建对应类型的任务
+ */
+public interface MediaJobHandler {
+
+    /**
+     * 任务类型，对应media_job.job_type，需全局唯一
+     */
+    String getJobType();
+
+    /**
+     * 是否需要为该媒体创建任务
+     */
+    boolean supports(MediaFile mediaFile);
+
+    /**
+     * 执行任务，抛出异常时按退避策略重试，处理逻辑需保证可重复执行
+     */
+    void process(MediaFile mediaFile) throws Exception;
+}
@@ -0,0 +1,93 @@
+package com.example.xiaoniangao.job;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.util.MediaProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 文件头探测任务
+ * 上传时通常已经同步探测过；存储不在本机磁盘或历史数据没有探测结果时，由该任务补齐
+ * MIME类型、显示尺寸、方向、时长和拍摄时间。
+ */
+@Component
+public class ProbeJobHandler implements MediaJobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProbeJobHandler.class);
+
+    public static final String JOB_TYPE = "PROBE";
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Override
+    public String getJobType() {
+        return JOB_TYPE;
+    }
+
+    @Override
+    public boolean supports(MediaFile mediaFile) {
+        // 上传时没有拿到探测结果的图片/视频
+        String fileType = mediaFile.getFileType();
+        return mediaFile.getMimeType() == null && fileType != null
+                && (fileType.startsWith("image/") || fileType.startsWith("video/"));
+    }
+
+    @Override
+    public void process(MediaFile mediaFile) throws Exception {
+        String key = mediaFile.getFilePath();
+        if (!storageBackend.exists(key)) {
+            throw new IOException("原文件不存在: " + key);
+        }
+        Path file = storageBackend.localPath(key);
+        Path downloaded = null;
+        if (file == null) {
+            // 探测只读文件头，但需要随机访问，存储不在本机磁盘时先取到临时文件
+            downloaded = storageBackend.createTempFile();
+            try (InputStream in = storageBackend.get(key)) {
+                Files.copy(in, downloaded);
+            }
+            file = downloaded;
+        }
+        try {
+            MediaProbe.Result info = MediaProbe.probe(file);
+            if (info == null) {
+                log.info("无法识别的文件格式，跳过探测: mediaId={}, fileType={}", mediaFile.getId(), mediaFile.getFileType());
+                return;
+            }
+            apply(mediaFile, info);
+            mediaFileMapper.updateMediaInfo(mediaFile);
+            log.info("文件头探测完成: mediaId={}, {} {}x{}", mediaFile.getId(), info.getMimeType(), info.getWidth(), info.getHeight());
+        } finally {
+            if (downloaded != null) {
+                Files.deleteIfExists(downloaded);
+            }
+        }
+    }
+
+    /**
+     * 把探测结果写到媒体记录上，文件类型以文件头识别的为准
+     */
+    public static void apply(MediaFile mediaFile, MediaProbe.Result info) {
+        mediaFile.setMimeType(info.getMimeType());
+        mediaFile.setFileType(info.getMimeType());
+        mediaFile.setWidth(info.getWidth());
+        mediaFile.setHeight(info.getHeight());
+        mediaFile.setOrientation(info.getOrientation());
+        mediaFile.setDurationMs(info.getDurationMs());
+        mediaFile.setTakenAt(info.getTakenAt());
+        mediaFile.setVideoCodec(info.getVideoCodec());
+    }
+}
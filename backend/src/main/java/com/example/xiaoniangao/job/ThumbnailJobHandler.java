@@ -0,0 +1,139 @@
+package com.example.xiaoniangao.job;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaRendition;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.service.MediaRenditionService;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.util.ExifUtils;
+import com.example.xiaoniangao.util.ImageUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片封面/缩略图生成任务
+ * 按 media.cover.sizes 生成多种宽度的JPEG缩略图（先按EXIF方向摆正），
+ * 记录到media_rendition表，并把不小于 media.cover.default-width 的最小一张写入media.cover_path。
+ */
+@Component
+public class ThumbnailJobHandler implements MediaJobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailJobHandler.class);
+
+    public static final String JOB_TYPE = "COVER";
+
+    @Autowired
+    private MediaRenditionService mediaRenditionService;
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Value("${media.cover.default-width:400}")
+    private int defaultWidth;
+
+    @Value("${media.cover.quality:0.82}")
+    private float quality;
+
+    @Override
+    public String getJobType() {
+        return JOB_TYPE;
+    }
+
+    @Override
+    public boolean supports(MediaFile mediaFile) {
+        return ImageUtils.isDecodable(mediaFile.getFileType());
+    }
+
+    @Override
+    public void process(MediaFile mediaFile) throws Exception {
+        String originalKey = mediaFile.getFilePath();
+        if (!storageBackend.exists(originalKey)) {
+            throw new IOException("原文件不存在: " + originalKey);
+        }
+        // 解码需要随机访问文件，存储不在本机磁盘时先取到临时文件
+        Path original = storageBackend.localPath(originalKey);
+        Path downloaded = null;
+        if (original == null) {
+            downloaded = storageBackend.createTempFile();
+            try (InputStream in = storageBackend.get(originalKey)) {
+                Files.copy(in, downloaded);
+            }
+            original = downloaded;
+        }
+        try {
+            generateRenditions(mediaFile, original);
+        } finally {
+            if (downloaded != null) {
+                Files.deleteIfExists(downloaded);
+            }
+        }
+    }
+
+    private void generateRenditions(MediaFile mediaFile, Path original) throws IOException {
+        List<Integer> sizes = mediaRenditionService.getSizes();
+        int orientation = ExifUtils.readOrientation(original);
+        BufferedImage image = ImageUtils.readOriented(original, orientation, sizes.get(sizes.size() - 1));
+        if (image == null) {
+            throw new IOException("无法解码的图片格式: " + mediaFile.getFileType());
+        }
+
+        // 从大到小生成，每一级都以上一级结果为源，缩放代价更低
+        List<MediaRendition> renditions = new ArrayList<>();
+        BufferedImage source = image;
+        for (int i = sizes.size() - 1; i >= 0; i--) {
+            int width = sizes.get(i);
+            if (width >= image.getWidth()) {
+                // 不放大，原图已经足够小
+                continue;
+            }
+            BufferedImage scaled = ImageUtils.scaleToWidth(source, width);
+            String targetKey = mediaRenditionService.renditionKey(mediaFile.getFilePath(), width);
+            // 相同内容的媒体共用原文件，缩略图可能已由其他媒体生成
+            if (!storageBackend.exists(targetKey)) {
+                Path tmp = storageBackend.createTempFile();
+                try {
+                    ImageUtils.writeJpeg(scaled, tmp, quality);
+                    storageBackend.put(targetKey, tmp);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+
+            MediaRendition rendition = new MediaRendition();
+            rendition.setMediaId(mediaFile.getId());
+            rendition.setWidth(scaled.getWidth());
+            rendition.setHeight(scaled.getHeight());
+            rendition.setFilePath(targetKey);
+            rendition.setFileSize(storageBackend.size(targetKey));
+            renditions.add(0, rendition);
+            source = scaled;
+        }
+
+        mediaRenditionService.replaceRenditions(mediaFile.getId(), renditions);
+        if (!renditions.isEmpty()) {
+            MediaRendition cover = renditions.get(renditions.size() - 1);
+            for (MediaRendition rendition : renditions) {
+                if (rendition.getWidth() >= defaultWidth) {
+                    cover = rendition;
+                    break;
+                }
+            }
+            mediaFileMapper.updateCoverPath(mediaFile.getId(), cover.getFilePath());
+        }
+        log.info("缩略图生成完成: mediaId={}, 数量={}", mediaFile.getId(), renditions.size());
+    }
+}
@@ -5,6 +5,7 @@ import com.example.xiaoniangao.entity.MediaFile;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -14,13 +15,70 @@ public interface MediaFileMapper extends BaseMapper<MediaFile> {
 
     List<MediaFile> findPublicMedia(@Param("keyword") String keyword, @Param("start") int start, @Param("size") int size);
 
+    // 游标分页：cursorTime/cursorId为上一页最后一条的创建时间和ID，第一页传null；按 (create_time, id) 倒序
+    List<MediaFile> findByUserIdAfter(@Param("userId") Long userId,
+                                      @Param("cursorTime") Date cursorTime, @Param("cursorId") Long cursorId, @Param("size") int size);
+
+    List<MediaFile> findPublicMediaAfter(@Param("cursorTime") Date cursorTime, @Param("cursorId") Long cursorId, @Param("size") int size);
+
     int countByUserId(@Param("userId") Long userId, @Param("keyword") String keyword);
 
     int countPublicMedia(@Param("keyword") String keyword);
+
+    // 带关键词的计数最多数到limit条，LIKE查询不能用索引，避免每次扫描全部匹配行
+    int countByUserIdCapped(@Param("userId") Long userId, @Param("keyword") String keyword, @Param("limit") int limit);
+
+    int countPublicMediaCapped(@Param("keyword") String keyword, @Param("limit") int limit);
     
     // 新增方法：获取最新媒体并关联用户表获取用户名（支持分页）
     List<MediaFile> findRecentMediaWithUser(@Param("offset") int offset, @Param("limit") int limit);
     
+    // 最新媒体的游标分页，按 (create_time, id) 倒序
+    List<MediaFile> findRecentMediaWithUserAfter(@Param("cursorTime") Date cursorTime, @Param("cursorId") Long cursorId, @Param("limit") int limit);
+    
     // 获取最新媒体总数
     int countRecentMedia();
+    
+    // 根据内容哈希查找任意一条引用该文件的媒体记录
+    MediaFile findOneByContentHash(@Param("contentHash") String contentHash);
+    
+    // 根据上传时的内容哈希查找一条媒体记录（存储文件可能已被改写）
+    MediaFile findOneBySourceHash(@Param("sourceHash") String sourceHash);
+    
+    // 统计引用同一内容哈希的媒体记录数（文件引用计数）
+    int countByContentHash(@Param("contentHash") String contentHash);
+    
+    // 更新后台处理状态
+    int updateProcessStatus(@Param("id") Long id, @Param("processStatus") int processStatus);
+    
+    // 更新封面路径
+    int updateCoverPath(@Param("id") Long id, @Param("coverPath") String coverPath);
+    
+    // 查找可以移到冷存储的文件：引用该文件的所有媒体最近都没有被访问，且浏览次数都低于阈值
+    List<String> findColdCandidates(@Param("before") Date before, @Param("maxViewCount") int maxViewCount, @Param("limit") int limit);
+    
+    // 更新引用该文件的所有媒体的存储层
+    int updateStorageTier(@Param("filePath") String filePath, @Param("storageTier") int storageTier);
+    
+    // 更新标题和描述
+    int updateTitleAndDescription(@Param("id") Long id, @Param("title") String title, @Param("description") String description);
+    
+    // 累加浏览次数并更新最近访问时间
+    int addAccess(@Param("id") Long id, @Param("views") int views, @Param("accessTime") Date accessTime);
+
+    // 更新引用某个存储文件的媒体的最近访问时间
+    int touchAccessByFilePath(@Param("filePath") String filePath, @Param("accessTime") Date accessTime);
+    
+    // 保存文件头探测结果（MIME类型、尺寸、方向、时长、拍摄时间）
+    int updateMediaInfo(MediaFile mediaFile);
+    
+    // 存储文件内容被改写后，把引用旧文件的媒体改为引用新文件
+    int replaceContent(@Param("oldPath") String oldPath, @Param("newPath") String newPath, @Param("newHash") String newHash);
+    
+    // 按ID顺序分页读取用户的媒体（只取打包导出需要的字段），afterId为上一页最后一条的ID
+    List<MediaFile> findExportPage(@Param("userId") Long userId, @Param("keyword") String keyword,
+                                   @Param("afterId") long afterId, @Param("limit") int limit);
+    
+    // 批量插入媒体记录（一条多值INSERT），自增ID回填到实体
+    int batchInsert(List<MediaFile> list);
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.example.xiaoniangao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.xiaoniangao.entity.MediaJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface MediaJobMapper extends BaseMapper<MediaJob> {
+
+    // 查询某一类型已到执行时间的待执行任务
+    List<MediaJob> findDueJobsByType(@Param("jobType") String jobType, @Param("now") Date now, @Param("limit") int limit);
+
+    // 查询任务类型不在给定列表中（没有处理器）的待执行任务
+    List<MediaJob> findUnknownTypeJobs(@Param("jobTypes") Collection<String> jobTypes, @Param("limit") int limit);
+
+    // 抢占任务：只有仍处于待执行状态时才能改为执行中，返回影响行数
+    int claimJob(@Param("id") Long id);
+
+    // 把执行中的任务放回队列（线程池已满等情况），不计入执行次数
+    int releaseJob(@Param("id") Long id);
+
+    // 任务完成（成功或最终失败）
+    int finishJob(@Param("id") Long id, @Param("status") int status, @Param("lastError") String lastError);
+
+    // 任务失败后安排重试
+    int retryJob(@Param("id") Long id, @Param("nextRunTime") Date nextRunTime, @Param("lastError") String lastError);
+
+    // 更新执行中任务的心跳时间
+    int touchRunningJobs(@Param("ids") Collection<Long> ids);
+
+    // 查询心跳早于before的执行中任务（进程崩溃遗留）
+    List<MediaJob> findStaleJobs(@Param("before") Date before);
+
+    // 把超时任务重新放回队列，返回影响行数
+    int requeueStaleJob(@Param("id") Long id, @Param("before") Date before);
+
+    // 把超时且已达最大执行次数的任务标记失败，返回影响行数
+    int failStaleJob(@Param("id") Long id, @Param("before") Date before, @Param("lastError") String lastError);
+
+    // 统计某个媒体未完成的任务数
+    int countUnfinishedByMediaId(@Param("mediaId") Long mediaId);
+
+    // 统计某个媒体最终失败的任务数
+    int countFailedByMediaId(@Param("mediaId") Long mediaId);
+
+    // 按任务类型和状态统计任务数
+    List<Map<String, Object>> countGroupByTypeAndStatus();
+}
@@ -0,0 +1,19 @@
+package com.example.xiaoniangao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.xiaoniangao.entity.MediaRendition;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface MediaRenditionMapper extends BaseMapper<MediaRendition> {
+
+    // 批量查询一页媒体的缩略图
+    List<MediaRendition> findByMediaIds(@Param("mediaIds") Collection<Long> mediaIds);
+
+    // 删除媒体的所有缩略图记录
+    int deleteByMediaId(@Param("mediaId") Long mediaId);
+}
@@ -5,6 +5,7 @@ import com.example.xiaoniangao.entity.MediaTag;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -22,4 +23,10 @@ public interface MediaTagMapper extends BaseMapper<MediaTag> {
     
     // 获取媒体文件的标签信息（包含标签名称）
     List<Map<String, Object>> findTagsByMediaId(@Param("mediaId") Long mediaId);
+    
+    // 批量获取多个媒体的标签（media_id, tag_id, tag_name），mediaIds不能为空
+    List<Map<String, Object>> findTagsByMediaIds(@Param("mediaIds") Collection<Long> mediaIds);
+    
+    // 批量插入媒体标签关联（一条多值INSERT）
+    int batchInsert(List<MediaTag> list);
 }
\ No newline at end of file
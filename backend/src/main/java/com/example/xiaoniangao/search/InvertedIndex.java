@@ -0,0 +1,459 @@
+package com.example.xiaoniangao.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 媒体倒排索引：词典把词项映射为编号，每个词项在标题和正文（描述、标签）中各有一个倒排表；
+ * 另保存每个媒体转写好拼音的标题和标签，并按读音前缀和首字母对建拼音倒排表，用于拼音搜索。
+ * 每次写入给文档分配一个递增的序号，倒排表中存序号，写入只在倒排表末尾追加；
+ * 更新和删除只把旧序号标记为已删除（查询时跳过），不改写倒排表，已删除的序号由 compact() 定期统一清理。
+ * 非线程安全，由调用方加锁
+ */
+public class InvertedIndex {
+
+    // 前缀匹配最多展开的词项数，避免一个字母展开出整个词典
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    private static final int TITLE = 1;
+    private static final int BODY = 2;
+
+    // 词典有序，前缀匹配用subMap取出同一前缀的所有词项
+    private final TreeMap<String, Integer> dictionary = new TreeMap<>();
+    private final List<PostingList> titlePostings = new ArrayList<>();
+    private final List<PostingList> bodyPostings = new ArrayList<>();
+    // 标题和标签的拼音倒排表，只用于找候选，是否命中由 PinyinText.matches 确认
+    private final PinyinIndex pinyinPostings = new PinyinIndex();
+    // 媒体ID到当前文档
+    private final Map<Long, Doc> docs = new HashMap<>();
+    // 序号到文档，已删除的为null
+    private List<Doc> byOrdinal = new ArrayList<>();
+    private int deletedCount;
+
+    private static class Doc {
+        final long id;
+        int ordinal;
+        final long userId;
+        final long createTime;
+        final PinyinText titlePinyin;
+        final PinyinText tagPinyin;
+
+        Doc(long id, int ordinal, long userId, long createTime, PinyinText titlePinyin, PinyinText tagPinyin) {
+            this.id = id;
+            this.ordinal = ordinal;
+            this.userId = userId;
+            this.createTime = createTime;
+            this.titlePinyin = titlePinyin;
+            this.tagPinyin = tagPinyin;
+        }
+    }
+
+    /**
+     * 查询结果：当前页的媒体ID（按相关度排序）和命中总数
+     */
+    public static class Result {
+        private final List<Long> ids;
+        private final int total;
+
+        Result(List<Long> ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * 新增或替换一个媒体的索引
+     */
+    public void put(long id, long userId, long createTime, Collection<String> titleTerms, Collection<String> bodyTerms,
+                    PinyinText titlePinyin, PinyinText tagPinyin) {
+        remove(id);
+        int ordinal = byOrdinal.size();
+        int[] title = termIds(titleTerms);
+        int[] body = termIds(bodyTerms);
+        for (int termId : title) {
+            titlePostings.get(termId).add(ordinal);
+        }
+        for (int termId : body) {
+            bodyPostings.get(termId).add(ordinal);
+        }
+        pinyinPostings.add(ordinal, titlePinyin, tagPinyin);
+        Doc doc = new Doc(id, ordinal, userId, createTime, titlePinyin, tagPinyin);
+        byOrdinal.add(doc);
+        docs.put(id, doc);
+    }
+
+    public boolean remove(long id) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+            return false;
+        }
+        byOrdinal.set(doc.ordinal, null);
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * 从倒排表中去掉已删除的序号，剩余文档按原顺序重新编号。耗时与倒排表总大小成正比
+     */
+    public void compact() {
+        if (deletedCount == 0) {
+            return;
+        }
+        int[] newOrdinals = new int[byOrdinal.size()];
+        List<Doc> live = new ArrayList<>(docs.size());
+        for (int i = 0; i < newOrdinals.length; i++) {
+            Doc doc = byOrdinal.get(i);
+            if (doc == null) {
+                newOrdinals[i] = -1;
+            } else {
+                newOrdinals[i] = live.size();
+                doc.ordinal = live.size();
+                live.add(doc);
+            }
+        }
+        for (PostingList list : titlePostings) {
+            list.remap(newOrdinals);
+        }
+        for (PostingList list : bodyPostings) {
+            list.remap(newOrdinals);
+        }
+        pinyinPostings.remap(newOrdinals);
+        byOrdinal = live;
+        deletedCount = 0;
+    }
+
+    public int docCount() {
+        return docs.size();
+    }
+
+    // 已删除、尚未清理的文档数
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public int termCount() {
+        return dictionary.size();
+    }
+
+    // 倒排表占用的字节数
+    public long postingBytes() {
+        long bytes = 0;
+        for (PostingList list : titlePostings) {
+            bytes += list.capacity();
+        }
+        for (PostingList list : bodyPostings) {
+            bytes += list.capacity();
+        }
+        return bytes + pinyinPostings.bytes();
+    }
+
+    /**
+     * 所有词项都要命中（AND），lastIsPrefix为true时最后一个词项按前缀匹配。
+     * 相关度为各词项的 idf × 权重之和，标题中出现权重为2，描述或标签中出现再加1；
+     * pinyinQuery不为null时，标题或标签能用拼音（全拼、首字母或混合）匹配上的媒体也算命中，按一个词项计分。
+     * 相关度相同时按创建时间、ID倒序。userId不为null时只返回该用户的媒体
+     */
+    public Result search(List<String> terms, boolean lastIsPrefix, char[] pinyinQuery, Long userId, int offset, int limit) {
+        if (docs.isEmpty()) {
+            return new Result(new ArrayList<>(), 0);
+        }
+        Candidates candidates = matchTerms(terms, lastIsPrefix);
+        if (pinyinQuery != null) {
+            candidates = candidates.union(matchPinyin(pinyinQuery, userId));
+        }
+        double[] scores = candidates.scores;
+        // 按用户过滤，序号换成媒体ID，同时取出排序用的创建时间
+        int total = 0;
+        long[] ids = new long[candidates.size];
+        long[] createTimes = new long[candidates.size];
+        for (int i = 0; i < candidates.size; i++) {
+            Doc doc = byOrdinal.get(candidates.ordinals[i]);
+            if (doc == null || (userId != null && doc.userId != userId)) {
+                continue;
+            }
+            ids[total] = doc.id;
+            scores[total] = scores[i];
+            createTimes[total] = doc.createTime;
+            total++;
+        }
+        return new Result(topK(ids, scores, createTimes, total, offset, limit), total);
+    }
+
+    private Candidates matchTerms(List<String> terms, boolean lastIsPrefix) {
+        if (terms.isEmpty()) {
+            return Candidates.EMPTY;
+        }
+        // 每个查询词项命中的媒体ID及出现位置（标题/正文）
+        List<Matches> perTerm = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            Matches matches = collect(terms.get(i), lastIsPrefix && i == terms.size() - 1);
+            if (matches.size == 0) {
+                return Candidates.EMPTY;
+            }
+            perTerm.add(matches);
+        }
+        // 从最短的倒排表开始求交集，候选集合只会越来越小
+        perTerm.sort(Comparator.comparingInt(m -> m.size));
+        int n = docs.size();
+        Matches first = perTerm.get(0);
+        int[] ordinals = Arrays.copyOf(first.ordinals, first.size);
+        double[] scores = new double[first.size];
+        double idf = idf(n, first.size);
+        for (int i = 0; i < first.size; i++) {
+            scores[i] = idf * weight(first.flags[i]);
+        }
+        int size = first.size;
+        for (int t = 1; t < perTerm.size() && size > 0; t++) {
+            Matches other = perTerm.get(t);
+            idf = idf(n, other.size);
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < other.size; ) {
+                if (ordinals[i] < other.ordinals[j]) {
+                    i++;
+                } else if (ordinals[i] > other.ordinals[j]) {
+                    j++;
+                } else {
+                    ordinals[kept] = ordinals[i];
+                    scores[kept] = scores[i] + idf * weight(other.flags[j]);
+                    kept++;
+                    i++;
+                    j++;
+                }
+            }
+            size = kept;
+        }
+        return new Candidates(ordinals, scores, size);
+    }
+
+    // 从拼音倒排表取候选，先按用户过滤，再逐个确认标题和标签的拼音，标题命中记TITLE，标签命中记BODY
+    private Candidates matchPinyin(char[] query, Long userId) {
+        int[] candidates = pinyinPostings.candidates(query);
+        // 候选为升序，结果也是升序
+        int[] ordinals = new int[16];
+        int[] flagsOf = new int[16];
+        int size = 0;
+        for (int ordinal : candidates) {
+            Doc doc = byOrdinal.get(ordinal);
+            if (doc == null || (userId != null && doc.userId != userId)) {
+                continue;
+            }
+            int flags = (doc.titlePinyin.matches(query) ? TITLE : 0) | (doc.tagPinyin.matches(query) ? BODY : 0);
+            if (flags != 0) {
+                if (size == ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, size * 2);
+                    flagsOf = Arrays.copyOf(flagsOf, size * 2);
+                }
+                ordinals[size] = doc.ordinal;
+                flagsOf[size++] = flags;
+            }
+        }
+        double[] scores = new double[size];
+        double idf = size == 0 ? 0 : idf(docs.size(), size);
+        for (int i = 0; i < size; i++) {
+            scores[i] = idf * weight(flagsOf[i]);
+        }
+        return new Candidates(ordinals, scores, size);
+    }
+
+    // 只保留前 offset + limit 名，用小顶堆避免对全部命中结果排序
+    private static List<Long> topK(long[] ids, double[] scores, long[] createTimes, int total, int offset, int limit) {
+        List<Long> page = new ArrayList<>();
+        int k = (int) Math.min(total, (long) offset + limit);
+        if (offset >= k) {
+            return page;
+        }
+        Comparator<Integer> better = (a, b) -> {
+            int c = Double.compare(scores[a], scores[b]);
+            if (c == 0) {
+                c = Long.compare(createTimes[a], createTimes[b]);
+            }
+            if (c == 0) {
+                c = Long.compare(ids[a], ids[b]);
+            }
+            return c;
+        };
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, better);
+        for (int i = 0; i < total; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (better.compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        Integer[] ranked = heap.toArray(new Integer[0]);
+        Arrays.sort(ranked, better.reversed());
+        for (int i = offset; i < ranked.length; i++) {
+            page.add(ids[ranked[i]]);
+        }
+        return page;
+    }
+
+    private static double idf(int docCount, int df) {
+        return Math.log(1 + (double) docCount / df);
+    }
+
+    private static int weight(int flags) {
+        return ((flags & TITLE) != 0 ? 2 : 0) + ((flags & BODY) != 0 ? 1 : 0);
+    }
+
+    // 合并一个查询词项（前缀匹配时为多个词项）在标题和正文中的倒排表
+    private Matches collect(String term, boolean prefix) {
+        List<Integer> termIds = new ArrayList<>();
+        if (prefix) {
+            SortedMap<String, Integer> range = dictionary.subMap(term, term + Character.MAX_VALUE);
+            for (Integer termId : range.values()) {
+                if (termIds.size() >= MAX_PREFIX_TERMS) {
+                    break;
+                }
+                termIds.add(termId);
+            }
+        } else {
+            Integer termId = dictionary.get(term);
+            if (termId != null) {
+                termIds.add(termId);
+            }
+        }
+        Matches result = Matches.EMPTY;
+        for (Integer termId : termIds) {
+            result = result.union(live(titlePostings.get(termId).toArray(), TITLE));
+            result = result.union(live(bodyPostings.get(termId).toArray(), BODY));
+        }
+        return result;
+    }
+
+    // 去掉已删除的序号
+    private Matches live(int[] ordinals, int flag) {
+        int size = 0;
+        for (int ordinal : ordinals) {
+            if (byOrdinal.get(ordinal) != null) {
+                ordinals[size++] = ordinal;
+            }
+        }
+        int[] flags = new int[size];
+        Arrays.fill(flags, flag);
+        return new Matches(ordinals, flags, size);
+    }
+
+    private int[] termIds(Collection<String> terms) {
+        int[] ids = new int[terms.size()];
+        int i = 0;
+        for (String term : terms) {
+            Integer termId = dictionary.get(term);
+            if (termId == null) {
+                termId = titlePostings.size();
+                dictionary.put(term, termId);
+                titlePostings.add(new PostingList());
+                bodyPostings.add(new PostingList());
+            }
+            ids[i++] = termId;
+        }
+        return ids;
+    }
+
+    /**
+     * 升序的候选文档序号及相关度
+     */
+    private static class Candidates {
+        static final Candidates EMPTY = new Candidates(new int[0], new double[0], 0);
+
+        final int[] ordinals;
+        final double[] scores;
+        final int size;
+
+        Candidates(int[] ordinals, double[] scores, int size) {
+            this.ordinals = ordinals;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        // 两组候选合并，同时命中的相关度相加
+        Candidates union(Candidates other) {
+            if (other.size == 0) {
+                return this;
+            }
+            if (size == 0) {
+                return other;
+            }
+            int[] merged = new int[size + other.size];
+            double[] mergedScores = new double[size + other.size];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size || j < other.size) {
+                if (j >= other.size || (i < size && ordinals[i] < other.ordinals[j])) {
+                    merged[k] = ordinals[i];
+                    mergedScores[k++] = scores[i++];
+                } else if (i >= size || ordinals[i] > other.ordinals[j]) {
+                    merged[k] = other.ordinals[j];
+                    mergedScores[k++] = other.scores[j++];
+                } else {
+                    merged[k] = ordinals[i];
+                    mergedScores[k++] = scores[i++] + other.scores[j++];
+                }
+            }
+            return new Candidates(merged, mergedScores, k);
+        }
+    }
+
+    /**
+     * 升序的文档序号及每个序号的出现位置标记
+     */
+    private static class Matches {
+        static final Matches EMPTY = new Matches(new int[0], new int[0], 0);
+
+        final int[] ordinals;
+        final int[] flags;
+        final int size;
+
+        Matches(int[] ordinals, int[] flags, int size) {
+            this.ordinals = ordinals;
+            this.flags = flags;
+            this.size = size;
+        }
+
+        Matches union(Matches other) {
+            if (other.size == 0) {
+                return this;
+            }
+            if (size == 0) {
+                return other;
+            }
+            int[] merged = new int[size + other.size];
+            int[] mergedFlags = new int[size + other.size];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size || j < other.size) {
+                if (j >= other.size || (i < size && ordinals[i] < other.ordinals[j])) {
+                    merged[k] = ordinals[i];
+                    mergedFlags[k++] = flags[i++];
+                } else if (i >= size || ordinals[i] > other.ordinals[j]) {
+                    merged[k] = other.ordinals[j];
+                    mergedFlags[k++] = other.flags[j++];
+                } else {
+                    merged[k] = ordinals[i];
+                    mergedFlags[k++] = flags[i++] | other.flags[j++];
+                }
+            }
+            return new Matches(merged, mergedFlags, k);
+        }
+    }
+}
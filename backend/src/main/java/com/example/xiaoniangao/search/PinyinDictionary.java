@@ -0,0 +1,95 @@
+package com.example.xiaoniangao.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 汉字到拼音的字典，从 classpath:pinyin.txt 加载（约两万字，首次使用时加载一次）。
+ * 每个汉字对应一个读音组编号，读音组是该字所有读音的数组，多数汉字只有一个读音；
+ * 同一组读音在各字之间共享，内存中只有一个short数组和几百个读音组
+ */
+final class PinyinDictionary {
+
+    private static final String RESOURCE = "/pinyin.txt";
+    private static final char FIRST = '一';
+    private static final char LAST = '龥';
+
+    private static final short[] READING_IDS;
+    private static final String[][] READINGS;
+
+    static {
+        List<List<String>> byChar = new ArrayList<>(LAST - FIRST + 1);
+        for (int i = FIRST; i <= LAST; i++) {
+            byChar.add(null);
+        }
+        try (InputStream in = PinyinDictionary.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("拼音字典不存在: " + RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String syllable = line.substring(0, space).intern();
+                for (int i = space + 1; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c < FIRST || c > LAST) {
+                        continue;
+                    }
+                    List<String> readings = byChar.get(c - FIRST);
+                    if (readings == null) {
+                        readings = new ArrayList<>(1);
+                        byChar.set(c - FIRST, readings);
+                    }
+                    readings.add(syllable);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载拼音字典失败", e);
+        }
+
+        READING_IDS = new short[byChar.size()];
+        Map<List<String>, Short> ids = new HashMap<>();
+        List<String[]> readings = new ArrayList<>();
+        for (int i = 0; i < byChar.size(); i++) {
+            List<String> list = byChar.get(i);
+            if (list == null) {
+                READING_IDS[i] = -1;
+                continue;
+            }
+            Short id = ids.get(list);
+            if (id == null) {
+                id = (short) readings.size();
+                ids.put(list, id);
+                readings.add(list.toArray(new String[0]));
+            }
+            READING_IDS[i] = id;
+        }
+        READINGS = readings.toArray(new String[0][]);
+    }
+
+    private PinyinDictionary() {
+    }
+
+    /**
+     * 汉字的读音组编号，不在字典中返回-1
+     */
+    static short readingId(char c) {
+        return c < FIRST || c > LAST ? -1 : READING_IDS[c - FIRST];
+    }
+
+    static String[] readings(short readingId) {
+        return READINGS[readingId];
+    }
+}
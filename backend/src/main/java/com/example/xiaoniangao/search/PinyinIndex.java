@@ -0,0 +1,142 @@
+package com.example.xiaoniangao.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 拼音和首字母搜索的倒排表，为 {@link PinyinText#matches} 找出候选，避免逐个文本做匹配。
+ * 键有两类：字的读音前缀（“风”记 风/f/fe/fen/feng）和相邻两字的首字母对（“风景”记 fj/风j/f景）。
+ * 查询命中时，第一个字消耗查询开头的l个字符（某个读音的前缀），若还有后续字，第二个字的读音以 query[l] 开头，
+ * 所以命中的文本必然同时含有前缀 query[0..l) 和首字母对 (query[0], query[l])。
+ * 对每个可能的l求这两个倒排表的交集，再把各l的结果合并，得到的候选由调用方用 matches 逐个确认。
+ * 序号必须递增写入；非线程安全，由调用方加锁或构建后只读
+ */
+public final class PinyinIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, PostingList> prefixes = new HashMap<>();
+    private final Map<Integer, PostingList> pairs = new HashMap<>();
+
+    /**
+     * 写入一个文档的拼音文本（如标题和标签），ordinal必须不小于已写入的序号
+     */
+    public void add(int ordinal, PinyinText... texts) {
+        Set<String> prefixKeys = new HashSet<>();
+        Set<Integer> pairKeys = new HashSet<>();
+        for (PinyinText text : texts) {
+            text.collectKeys(prefixKeys, pairKeys);
+        }
+        for (String key : prefixKeys) {
+            prefixes.computeIfAbsent(key, k -> new PostingList()).add(ordinal);
+        }
+        for (Integer key : pairKeys) {
+            pairs.computeIfAbsent(key, k -> new PostingList()).add(ordinal);
+        }
+    }
+
+    /**
+     * 可能匹配查询的升序序号，包含已删除的序号，结果需要再用 matches 确认
+     */
+    public int[] candidates(char[] query) {
+        int m = query.length;
+        if (m == 0) {
+            return EMPTY;
+        }
+        // 整个查询由一个字匹配
+        PostingList whole = prefixes.get(new String(query));
+        int[] result = whole == null ? EMPTY : whole.toArray();
+        for (int l = 1; l < m; l++) {
+            PostingList head = prefixes.get(new String(query, 0, l));
+            if (head == null) {
+                // 更长的前缀也不会存在
+                break;
+            }
+            int[] matched = head.toArray();
+            if (PinyinText.isLatin(query[0]) || PinyinText.isLatin(query[l])) {
+                PostingList pair = pairs.get(PinyinText.pairKey(query[0], query[l]));
+                if (pair == null) {
+                    continue;
+                }
+                matched = intersect(matched, pair.toArray());
+            }
+            result = union(result, matched);
+        }
+        return result;
+    }
+
+    /**
+     * 整理：按映射表换成新序号，映射为-1的去掉，不再有文档的键一并删除
+     */
+    public void remap(int[] newOrdinals) {
+        remap(prefixes, newOrdinals);
+        remap(pairs, newOrdinals);
+    }
+
+    // 倒排表占用的字节数
+    public long bytes() {
+        long bytes = 0;
+        for (PostingList list : prefixes.values()) {
+            bytes += list.capacity();
+        }
+        for (PostingList list : pairs.values()) {
+            bytes += list.capacity();
+        }
+        return bytes;
+    }
+
+    private static void remap(Map<?, PostingList> postings, int[] newOrdinals) {
+        for (Iterator<PostingList> it = postings.values().iterator(); it.hasNext(); ) {
+            PostingList list = it.next();
+            list.remap(newOrdinals);
+            if (list.size() == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int k = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                result[k++] = a[i++];
+            } else if (i >= a.length || a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+}
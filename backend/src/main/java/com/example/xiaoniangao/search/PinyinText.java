@@ -0,0 +1,223 @@
+package com.example.xiaoniangao.search;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 预先转写好拼音的文本（标题、标签名），用于拼音和首字母搜索。
+ * 文本转小写并去掉空白和标点，每个汉字记下读音组编号；匹配时汉字可以用汉字本身、全拼或拼音的任意前缀命中，
+ * 所以“风景”可以用 fengjing、fj、fengj、feng景 搜到。查询在文本任意位置开始匹配即可
+ */
+public final class PinyinText {
+
+    // 分隔多个标签，匹配不能跨越
+    private static final char BREAK = 0;
+
+    // 查询用long的各位记录匹配进度，超过63个字符不做拼音匹配
+    private static final int MAX_QUERY_LENGTH = 63;
+
+    private static final PinyinText EMPTY = new PinyinText(new char[0], null, 0);
+
+    private final char[] chars;
+    // 每个字的读音组编号，非汉字为-1；文本中没有汉字时为null
+    private final short[] readingIds;
+    // 文本和拼音中出现过的字母a-z，查询中的字母不全在其中时不可能匹配，跳过逐字比较
+    private final int letters;
+
+    private PinyinText(char[] chars, short[] readingIds, int letters) {
+        this.chars = chars;
+        this.readingIds = readingIds;
+        this.letters = letters;
+    }
+
+    public static PinyinText of(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        return build(normalize(text));
+    }
+
+    /**
+     * 逗号分隔的多个标签，各标签分别匹配
+     */
+    public static PinyinText ofTags(String tags) {
+        if (tags == null || tags.isEmpty()) {
+            return EMPTY;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String tag : tags.split(",")) {
+            String normalized = normalize(tag);
+            if (!normalized.isEmpty()) {
+                if (joined.length() > 0) {
+                    joined.append(BREAK);
+                }
+                joined.append(normalized);
+            }
+        }
+        return build(joined.toString());
+    }
+
+    /**
+     * 规范化查询（转小写，去掉空白和标点），为空或过长时返回null
+     */
+    public static char[] normalizeQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || normalized.length() > MAX_QUERY_LENGTH) {
+            return null;
+        }
+        return normalized.toCharArray();
+    }
+
+    /**
+     * 查询中是否有拉丁字母，没有时不可能是拼音输入
+     */
+    public static boolean hasLatin(char[] query) {
+        for (char c : query) {
+            if (isLatin(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(char[] query) {
+        int m = query.length;
+        if (m == 0 || m > MAX_QUERY_LENGTH || (letters(query) & ~letters) != 0) {
+            return false;
+        }
+        long done = 1L << m;
+        // 第j位为1表示查询的前j个字符已匹配到当前位置之前
+        long states = 0;
+        for (int k = 0; k < chars.length; k++) {
+            char c = chars[k];
+            if (c == BREAK) {
+                states = 0;
+                continue;
+            }
+            states |= 1;
+            String[] readings = readingIds == null || readingIds[k] < 0 ? null : PinyinDictionary.readings(readingIds[k]);
+            long next = 0;
+            for (long s = states; s != 0; s &= s - 1) {
+                int j = Long.numberOfTrailingZeros(s);
+                if (query[j] == c) {
+                    next |= 1L << (j + 1);
+                }
+                if (readings != null) {
+                    for (String pinyin : readings) {
+                        for (int l = 0; l < pinyin.length() && j + l < m && query[j + l] == pinyin.charAt(l); l++) {
+                            next |= 1L << (j + l + 1);
+                        }
+                    }
+                }
+            }
+            if ((next & done) != 0) {
+                return true;
+            }
+            states = next;
+        }
+        return false;
+    }
+
+    /**
+     * 拼音倒排表的键（见 {@link PinyinIndex}）：每个字各读音的所有前缀，字本身也算一个读音；
+     * 以及同一标签内相邻两字的首字母对，两个都不是拉丁字母的不记（拼音查询不会只用到这种对）
+     */
+    void collectKeys(Set<String> prefixes, Set<Integer> pairs) {
+        char[] previous = null;
+        for (int k = 0; k < chars.length; k++) {
+            char c = chars[k];
+            if (c == BREAK) {
+                previous = null;
+                continue;
+            }
+            prefixes.add(String.valueOf(c));
+            char[] initials = {c};
+            if (readingIds != null && readingIds[k] >= 0) {
+                for (String pinyin : PinyinDictionary.readings(readingIds[k])) {
+                    for (int l = 1; l <= pinyin.length(); l++) {
+                        prefixes.add(pinyin.substring(0, l));
+                    }
+                    if (indexOf(initials, pinyin.charAt(0)) < 0) {
+                        initials = Arrays.copyOf(initials, initials.length + 1);
+                        initials[initials.length - 1] = pinyin.charAt(0);
+                    }
+                }
+            }
+            if (previous != null) {
+                for (char a : previous) {
+                    for (char b : initials) {
+                        if (isLatin(a) || isLatin(b)) {
+                            pairs.add(pairKey(a, b));
+                        }
+                    }
+                }
+            }
+            previous = initials;
+        }
+    }
+
+    static int pairKey(char first, char second) {
+        return first << 16 | second;
+    }
+
+    static boolean isLatin(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static int indexOf(char[] chars, char c) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static PinyinText build(String normalized) {
+        char[] chars = normalized.toCharArray();
+        short[] readingIds = null;
+        int letters = letters(chars);
+        for (int k = 0; k < chars.length; k++) {
+            short id = PinyinDictionary.readingId(chars[k]);
+            if (id >= 0) {
+                if (readingIds == null) {
+                    readingIds = new short[chars.length];
+                    Arrays.fill(readingIds, (short) -1);
+                }
+                for (String pinyin : PinyinDictionary.readings(id)) {
+                    letters |= letters(pinyin.toCharArray());
+                }
+            }
+            if (readingIds != null) {
+                readingIds[k] = id;
+            }
+        }
+        return new PinyinText(chars, readingIds, letters);
+    }
+
+    private static int letters(char[] chars) {
+        int mask = 0;
+        for (char c : chars) {
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1 << (c - 'a');
+            }
+        }
+        return mask;
+    }
+
+    private static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
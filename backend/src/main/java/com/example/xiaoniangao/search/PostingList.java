@@ -0,0 +1,100 @@
+package com.example.xiaoniangao.search;
+
+import java.util.Arrays;
+
+/**
+ * 倒排表：按升序保存包含某个词项的文档序号，相邻序号之差用变长整数（varint）编码存放在byte数组中。
+ * 文档序号由索引按写入顺序分配，只增不减，所以写入只需在末尾追加几个字节；
+ * 删除和更新不修改倒排表，由索引标记旧序号已删除，查询时跳过，定期整理时统一去掉。
+ * 非线程安全，由索引的读写锁保护
+ */
+final class PostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int last;
+
+    int size() {
+        return count;
+    }
+
+    // 占用的字节数（含预留空间）
+    int capacity() {
+        return data.length;
+    }
+
+    /**
+     * 追加序号，必须不小于已有的所有序号（与最后一个相同时忽略）
+     */
+    void add(int ordinal) {
+        if (count > 0 && ordinal == last) {
+            return;
+        }
+        if (count > 0 && ordinal < last) {
+            throw new IllegalArgumentException("倒排表序号必须递增: " + ordinal + " <= " + last);
+        }
+        writeVarint(ordinal - last);
+        last = ordinal;
+        count++;
+    }
+
+    /**
+     * 解码为升序数组
+     */
+    int[] toArray() {
+        if (count == 0) {
+            return EMPTY;
+        }
+        int[] ordinals = new int[count];
+        int current = 0;
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += delta;
+            ordinals[i] = current;
+        }
+        return ordinals;
+    }
+
+    /**
+     * 整理：按映射表把旧序号换成新序号，映射为-1的（已删除）去掉。映射必须保持顺序
+     */
+    void remap(int[] newOrdinals) {
+        int[] ordinals = toArray();
+        data = new byte[8];
+        length = 0;
+        count = 0;
+        last = 0;
+        for (int ordinal : ordinals) {
+            int mapped = newOrdinals[ordinal];
+            if (mapped >= 0) {
+                add(mapped);
+            }
+        }
+        // 去掉多余的预留空间
+        if (data.length > length + 8) {
+            data = Arrays.copyOf(data, Math.max(8, length));
+        }
+    }
+
+    private void writeVarint(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+}
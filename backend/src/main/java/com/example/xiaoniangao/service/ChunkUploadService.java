@@ -0,0 +1,36 @@
+package com.example.xiaoniangao.service;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * 分片（可断点续传）上传服务
+ */
+public interface ChunkUploadService {
+
+    /**
+     * 初始化分片上传，返回uploadId、分片大小和分片总数
+     */
+    Map<String, Object> initUpload(String fileName, long fileSize, String contentType, Long chunkSize,
+                                   String title, String description, String tags, Long userId);
+
+    /**
+     * 写入第index个分片，分片直接写到最终文件的对应偏移处
+     */
+    Map<String, Object> writeChunk(String uploadId, int index, InputStream data, Long userId);
+
+    /**
+     * 查询上传进度（已接收的分片和字节区间），用于客户端续传
+     */
+    Map<String, Object> getStatus(String uploadId, Long userId);
+
+    /**
+     * 所有分片到齐后完成上传，保存媒体信息
+     */
+    Map<String, Object> completeUpload(String uploadId, Long userId);
+
+    /**
+     * 取消上传并清理已接收的数据
+     */
+    boolean abortUpload(String uploadId, Long userId);
+}
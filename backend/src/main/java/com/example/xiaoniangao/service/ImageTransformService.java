@@ -0,0 +1,40 @@
+package com.example.xiaoniangao.service;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按需生成图片的指定尺寸（缩放/裁剪），结果缓存在磁盘上
+ */
+public interface ImageTransformService {
+
+    String FIT_CONTAIN = "contain"; // 等比缩小到不超过指定宽高
+    String FIT_COVER = "cover"; // 等比缩放铺满指定宽高后居中裁剪
+
+    // 允许的宽高（升序），请求的尺寸必须在其中
+    List<Integer> getAllowedSizes();
+
+    // 是否是可以生成尺寸的图片类型
+    boolean supports(MediaFile mediaFile);
+
+    /**
+     * 获取指定尺寸的图片文件（JPEG）。已缓存时立即完成；
+     * 同一尺寸的并发请求共用一次生成；生成队列已满时抛出RejectedExecutionException
+     * @param height 0表示按宽度等比缩放
+     */
+    CompletableFuture<Path> getVariant(MediaFile mediaFile, int width, int height, String fit);
+
+    // 把生成好的尺寸文件作为响应内容，小文件从内存缓存读取
+    Resource toResource(Path variant);
+
+    // 原文件被删除时清理其所有缓存尺寸
+    void evict(String storageKey);
+
+    // 缓存命中、生成次数等统计信息
+    Map<String, Object> getStats();
+}
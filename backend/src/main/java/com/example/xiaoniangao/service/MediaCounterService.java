@@ -0,0 +1,28 @@
+package com.example.xiaoniangao.service;
+
+import com.example.xiaoniangao.entity.MediaFile;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MediaCounterService {
+
+    // 媒体记录插入后调用，须与插入处于同一事务，回滚时计数一起回滚
+    void recordInserted(List<MediaFile> mediaFiles);
+
+    // 媒体记录删除后调用，须与删除处于同一事务
+    void recordDeleted(List<MediaFile> mediaFiles);
+
+    // 媒体总数，计数表不可用或尚未校准时返回null，调用方回退到COUNT查询
+    Long countAll();
+
+    Long countByUser(Long userId);
+
+    Long countByStatus(int status);
+
+    // 用实际COUNT校准计数表，返回修正的计数项数
+    int reconcile();
+
+    // 计数统计（总数、各状态数、上次校准时间和修正次数）
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,28 @@
+package com.example.xiaoniangao.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 媒体打包导出：边读文件边写ZIP到响应流，不生成临时文件，内存占用与文件数量无关
+ */
+public interface MediaExportService {
+
+    // 占用一个导出名额，同时进行的导出数已满时返回false
+    boolean tryAcquire();
+
+    // 导出结束后归还名额
+    void release();
+
+    /**
+     * 把选中的媒体（mediaIds不为空时）或用户的全部媒体（可按关键词过滤）打包为ZIP写到输出流。
+     * 客户端断开时写出失败，抛出IOException并立即停止读取
+     * @return 打包的文件数
+     */
+    int exportZip(List<Long> mediaIds, Long userId, String keyword, OutputStream out) throws IOException;
+
+    // 在途导出数、导出文件数和字节数等统计信息
+    Map<String, Object> getStats();
+}
@@ -4,6 +4,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.example.xiaoniangao.entity.MediaFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -11,16 +15,38 @@ public interface MediaFileService extends IService<MediaFile> {
 
     Map<String, Object> uploadFile(MultipartFile file, String fileTitle, String fileDescription, String fileTag, Long uploaderId, String uploaderName);
 
+    // 流式上传：请求体即文件内容，直接写入上传目录，边写边计算哈希
+    Map<String, Object> uploadStream(InputStream in, String originalFilename, String contentType, long contentLength, String title, String description, String tags, Long userId);
+
+    // 保存已完整落盘的文件（如分片上传合并结果），复用上传的元数据和标签逻辑
+    Map<String, Object> saveUploadedFile(File stagedFile, String originalFilename, String contentType, String title, String description, String tags, Long userId);
+
+    // 秒传：服务器已有相同内容（SHA-256和大小一致）的文件时直接创建媒体记录，否则返回null
+    Map<String, Object> instantUpload(String contentHash, long fileSize, String originalFilename, String contentType, String title, String description, String tags, Long userId);
+
+    // 批量上传：文件并行写盘，元数据在一个事务中批量保存，返回每个文件的结果
+    List<Map<String, Object>> batchUpload(MultipartFile[] files, String title, String description, String tags, Long userId);
+
+    // 用改写后的文件（如前置moov的MP4）替换媒体的存储文件，引用同一文件的媒体一起更新，返回新的存储键
+    String replaceContent(MediaFile mediaFile, Path rewrittenFile) throws IOException;
+
     List<MediaFile> getMyMedia(Long userId, String keyword, int page, int size);
 
     List<MediaFile> getPublicMedia(String keyword, int page, int size);
 
-    int getMyMediaCount(Long userId, String keyword);
+    // 总数：无关键词时读计数表；有关键词时来自搜索索引，索引不可用时数据库最多数到上限（exact为false）
+    MediaCount getMyMediaCount(Long userId, String keyword);
 
-    int getPublicMediaCount(String keyword);
+    MediaCount getPublicMediaCount(String keyword);
 
     boolean deleteMedia(Long fileId, Long userId);
 
+    // 管理员删除媒体，不校验上传者
+    boolean adminDeleteMedia(Long fileId);
+
+    // 只更新标题和描述，不覆盖后台任务可能正在修改的文件路径、内容哈希等字段
+    boolean updateTitleAndDescription(Long id, String title, String description);
+
     MediaFile getMediaDetail(Long fileId);
 
     boolean batchDeleteMedia(List<Long> fileIds);
@@ -30,4 +56,54 @@ public interface MediaFileService extends IService<MediaFile> {
     
     // 获取最新媒体总数
     int getRecentMediaCount();
+
+    // 游标分页，cursor为上一页返回的nextCursor，第一页传空；游标无效时抛出IllegalArgumentException。
+    // 关键词搜索按相关度排序，只支持page分页，带关键词时同样抛出IllegalArgumentException
+    CursorPage getMyMediaPage(Long userId, String keyword, String cursor, int size);
+
+    CursorPage getPublicMediaPage(String keyword, String cursor, int size);
+
+    CursorPage getRecentMediaPage(String cursor, int limit);
+
+    /**
+     * 列表总数，exact为false时total是下限（实际条数更多）
+     */
+    class MediaCount {
+        private final int total;
+        private final boolean exact;
+
+        public MediaCount(int total, boolean exact) {
+            this.total = total;
+            this.exact = exact;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    /**
+     * 游标分页结果，nextCursor为null表示没有更多数据
+     */
+    class CursorPage {
+        private final List<MediaFile> items;
+        private final String nextCursor;
+
+        public CursorPage(List<MediaFile> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<MediaFile> getItems() {
+            return items;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.xiaoniangao.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaJob;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MediaJobService extends IService<MediaJob> {
+
+    // 获取需要为该媒体执行的任务类型
+    List<String> resolveJobTypes(MediaFile mediaFile);
+
+    // 为媒体创建后台任务，与调用方处于同一事务中，提交后由调度器异步执行
+    void enqueueJobs(Long mediaId, List<String> jobTypes);
+
+    // 批量创建后台任务，key为媒体ID
+    void enqueueJobs(Map<Long, List<String>> jobTypesByMedia);
+
+    // 任务结束后刷新媒体的处理状态
+    void refreshProcessStatus(Long mediaId);
+
+    // 队列统计信息（按任务类型和状态）
+    Map<String, Object> getJobStats();
+}
@@ -0,0 +1,28 @@
+package com.example.xiaoniangao.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaRendition;
+
+import java.util.List;
+
+public interface MediaRenditionService extends IService<MediaRendition> {
+
+    // 配置的缩略图宽度（升序）
+    List<Integer> getSizes();
+
+    // 缩略图存储键：原文件存储键去掉扩展名_宽度.jpg
+    String renditionKey(String originalKey, int width);
+
+    // 替换媒体的缩略图记录
+    void replaceRenditions(Long mediaId, List<MediaRendition> renditions);
+
+    // 删除媒体的缩略图记录
+    void deleteByMediaId(Long mediaId);
+
+    // 删除原文件对应的缩略图文件（原文件被删除时调用）
+    void deleteRenditionFiles(String originalKey);
+
+    // 为一页媒体批量选择不小于指定宽度的最小缩略图，写入coverPath
+    void fillCovers(List<MediaFile> mediaList, int thumbWidth);
+}
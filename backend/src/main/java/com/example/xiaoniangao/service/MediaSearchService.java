@@ -0,0 +1,44 @@
+package com.example.xiaoniangao.service;
+
+import com.example.xiaoniangao.entity.MediaFile;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MediaSearchService {
+
+    // 按关键词搜索标题、描述和标签，userId不为null时只搜该用户的媒体；索引未就绪时返回null，调用方回退到数据库查询
+    SearchResult search(String keyword, Long userId, int offset, int limit);
+
+    // 新增或更新媒体的索引，在事务中调用时提交后才生效
+    void index(MediaFile mediaFile, String tags);
+
+    // 从数据库重新读取媒体的标题、描述和标签并更新索引，媒体已不存在时移除
+    void reindex(Long mediaId);
+
+    void remove(Long mediaId);
+
+    // 索引统计信息（文档数、词项数、倒排表大小、查询耗时）
+    Map<String, Object> getStats();
+
+    /**
+     * 搜索结果：当前页的媒体ID（按相关度排序）和命中总数
+     */
+    class SearchResult {
+        private final List<Long> ids;
+        private final int total;
+
+        public SearchResult(List<Long> ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.xiaoniangao.service;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 媒体文件字节输出：支持Range请求（单区间/多区间）、条件请求（ETag/Last-Modified）和本地文件的零拷贝发送
+ */
+public interface MediaStreamService {
+
+    /**
+     * 把存储中的文件写到响应。
+     * 带ETag和Last-Modified，If-None-Match/If-Modified-Since命中时返回304；
+     * 没有Range头时返回200完整内容；单区间返回206；多区间返回206 multipart/byteranges；
+     * 区间都不可满足时返回416；If-Range不匹配时忽略Range；文件不存在时返回404
+     * @param contentHash 文件内容哈希，用作ETag，为null时用存储键和大小
+     * @param contentDisposition Content-Disposition响应头，为null时不设置
+     * @param immutable URL按内容寻址（内容变化则URL变化）时为true，允许缓存一年且不再验证；否则每次向服务器验证
+     */
+    void serve(String storageKey, String contentHash, String contentType, String contentDisposition, boolean immutable,
+               HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+    // 按媒体ID查找输出所需的元数据，短时间缓存，同一视频的多次Range请求不重复查库；不存在时返回null
+    StreamTarget findById(Long mediaId);
+
+    // 按存储键查找（原文件或缩略图），类型取自引用该文件的媒体记录，没有记录时按扩展名判断
+    StreamTarget findByKey(String storageKey);
+
+    // 只根据存储键推断元数据（内容哈希取自文件名，类型按扩展名判断），不查库
+    StreamTarget describeKey(String storageKey);
+
+    // 媒体删除或文件被替换后清除相关缓存，mediaId为null时只按存储键清除
+    void evict(Long mediaId, String storageKey);
+
+    // 元数据缓存的命中率等统计信息
+    Map<String, Object> getStats();
+
+    /**
+     * 输出文件所需的元数据
+     */
+    class StreamTarget {
+        private final Long mediaId;
+        private final String storageKey;
+        private final String contentHash;
+        private final String contentType;
+        private final String title;
+        private final long loadTime = System.currentTimeMillis();
+
+        public StreamTarget(Long mediaId, String storageKey, String contentHash, String contentType, String title) {
+            this.mediaId = mediaId;
+            this.storageKey = storageKey;
+            this.contentHash = contentHash;
+            this.contentType = contentType;
+            this.title = title;
+        }
+
+        // 引用该文件的媒体ID，缩略图等没有媒体记录时为null
+        public Long getMediaId() {
+            return mediaId;
+        }
+
+        public String getStorageKey() {
+            return storageKey;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public long getLoadTime() {
+            return loadTime;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.xiaoniangao.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.xiaoniangao.entity.MediaFile;
 import com.example.xiaoniangao.entity.MediaTag;
+import com.example.xiaoniangao.entity.Tag;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +14,9 @@ public interface MediaTagService extends IService<MediaTag> {
     // 保存媒体文件和标签的关联关系
     boolean saveMediaTags(Long mediaId, String tagsStr);
     
+    // 为一批新媒体保存相同的标签，每个标签只查询/更新一次
+    boolean saveMediaTagsBatch(List<Long> mediaIds, String tagsStr);
+    
     // 根据媒体ID获取标签列表（包含标签名称）
     List<Map<String, Object>> getTagsByMediaId(Long mediaId);
     
@@ -19,4 +25,10 @@ public interface MediaTagService extends IService<MediaTag> {
     
     // 获取媒体文件的标签名称列表
     List<String> getTagNamesByMediaId(Long mediaId);
+
+    // 一次查询多个媒体的标签，key为媒体ID，没有标签的媒体不在结果中
+    Map<Long, List<Tag>> getTagsByMediaIds(Collection<Long> mediaIds);
+
+    // 为列表中的媒体填充tagList（一条IN查询），没有标签时为空数组
+    void fillTagLists(List<MediaFile> mediaList);
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.xiaoniangao.service;
+
+import com.example.xiaoniangao.entity.MediaFile;
+
+import java.util.Map;
+
+/**
+ * 冷热分层：记录媒体访问，把长期不访问的文件移到冷存储，冷文件被访问时移回热存储
+ */
+public interface StorageTierService {
+
+    // 记录一次查看/下载（累计后定期写库），文件在冷存储时异步移回热存储
+    void recordAccess(MediaFile mediaFile);
+
+    // 记录一次按存储键的访问（签名URL等不查库的路径），不计浏览次数，只更新引用该文件的媒体的最近访问时间
+    void recordKeyAccess(String storageKey);
+
+    // 执行一轮冷存储迁移，返回迁移的文件数
+    int migrateColdFiles();
+
+    // 迁移统计信息
+    Map<String, Object> getStats();
+}
@@ -3,6 +3,8 @@ package com.example.xiaoniangao.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.example.xiaoniangao.entity.Tag;
 
+import java.util.List;
+
 public interface TagService extends IService<Tag> {
 
     boolean addTag(String tagName);
@@ -10,4 +12,7 @@ public interface TagService extends IService<Tag> {
     boolean deleteTag(Long tagId);
 
     Tag findByTagName(String tagName);
+
+    // 按标签名或拼音（全拼、首字母、混合输入）搜索标签，按使用次数倒序，在内存中匹配不查库
+    List<Tag> searchTags(String keyword, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.example.xiaoniangao.service;
+
+import java.util.Map;
+
+/**
+ * 上传准入控制：限制全局和单用户同时进行的上传数，并在上传目录磁盘空间不足时拒绝上传
+ */
+public interface UploadAdmissionService {
+
+    // 尝试占用一个上传名额，成功返回null，失败返回拒绝原因（调用方据此直接响应，不排队等待）
+    Rejection tryAcquire(String userKey);
+
+    // 上传结束后归还名额
+    void release(String userKey);
+
+    // 当前在途上传数、拒绝次数、磁盘剩余空间等统计信息
+    Map<String, Object> getStats();
+
+    /**
+     * 拒绝原因：HTTP状态码、建议的重试间隔和提示信息
+     */
+    class Rejection {
+        private final int status;
+        private final long retryAfterSeconds;
+        private final String message;
+
+        public Rejection(int status, long retryAfterSeconds, String message) {
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.message = message;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
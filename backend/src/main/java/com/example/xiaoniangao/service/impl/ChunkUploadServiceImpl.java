@@ -0,0 +1,427 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.service.ChunkUploadService;
+import com.example.xiaoniangao.service.MediaFileService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 分片上传实现
+ * 每个上传任务在上传目录的 .chunks 下对应一个预分配的 .part 数据文件和一个 .properties 进度文件，
+ * 分片按 index * chunkSize 直接写入 .part 的最终偏移，完成时整体改名交给 MediaFileService 保存。
+ * 进度文件在每个分片写完后落盘，服务重启后客户端仍可通过 getStatus 续传。
+ * 分片写入与完成、取消互斥：完成时先关闭任务并等待进行中的写入结束，再计算哈希和移动文件，
+ * 保证存储文件的内容与按它计算的哈希一致。
+ */
+@Service
+public class ChunkUploadServiceImpl implements ChunkUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkUploadServiceImpl.class);
+
+    private static final String CHUNK_DIR = ".chunks";
+    private static final long MIN_CHUNK_SIZE = 256 * 1024L;
+    private static final long MAX_CHUNK_SIZE = 32 * 1024 * 1024L;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+    @Autowired
+    private MediaFileService mediaFileService;
+
+    @Value("${file.upload.path}")
+    private String uploadPath;
+
+    @Value("${file.upload.chunk.default-size:5MB}")
+    private DataSize defaultChunkSize;
+
+    @Value("${file.upload.chunk.expire-hours:24}")
+    private int expireHours;
+
+    @Value("${spring.servlet.multipart.max-file-size:200MB}")
+    private DataSize maxFileSize;
+
+    // 活跃的上传任务，重启后按需从进度文件恢复
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, Object> initUpload(String fileName, long fileSize, String contentType, Long chunkSize,
+                                          String title, String description, String tags, Long userId) {
+        if (fileName == null || fileName.isEmpty()) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        if (fileSize <= 0) {
+            throw new IllegalArgumentException("文件为空");
+        }
+        if (fileSize > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("文件大小超过限制: " + maxFileSize.toMegabytes() + "MB");
+        }
+
+        long effectiveChunkSize = chunkSize != null ? chunkSize : defaultChunkSize.toBytes();
+        effectiveChunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, effectiveChunkSize));
+
+        UploadSession session = new UploadSession();
+        session.uploadId = UUID.randomUUID().toString().replace("-", "");
+        session.userId = userId;
+        session.fileName = fileName;
+        session.contentType = contentType;
+        session.fileSize = fileSize;
+        session.chunkSize = effectiveChunkSize;
+        session.totalChunks = (int) ((fileSize + effectiveChunkSize - 1) / effectiveChunkSize);
+        session.title = title;
+        session.description = description;
+        session.tags = tags;
+        session.received = new BitSet(session.totalChunks);
+        session.lastActiveTime = System.currentTimeMillis();
+
+        try {
+            Files.createDirectories(getChunkDir());
+            // 预分配目标文件（稀疏文件），分片可以乱序写入
+            try (RandomAccessFile raf = new RandomAccessFile(getPartFile(session.uploadId).toFile(), "rw")) {
+                raf.setLength(fileSize);
+            }
+            saveSession(session);
+        } catch (IOException e) {
+            log.error("初始化分片上传失败: " + e.getMessage(), e);
+            throw new RuntimeException("初始化分片上传失败: " + e.getMessage());
+        }
+        sessions.put(session.uploadId, session);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("uploadId", session.uploadId);
+        data.put("chunkSize", session.chunkSize);
+        data.put("totalChunks", session.totalChunks);
+        data.put("fileSize", session.fileSize);
+        return data;
+    }
+
+    @Override
+    public Map<String, Object> writeChunk(String uploadId, int index, InputStream data, Long userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        if (index < 0 || index >= session.totalChunks) {
+            throw new IllegalArgumentException("分片序号无效: " + index);
+        }
+
+        long offset = index * session.chunkSize;
+        long expected = Math.min(session.chunkSize, session.fileSize - offset);
+        long written = 0;
+
+        beginWrite(session);
+        try (FileChannel channel = FileChannel.open(getPartFile(uploadId), StandardOpenOption.WRITE)) {
+            ReadableByteChannel in = Channels.newChannel(data);
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                if (written + buffer.remaining() > expected) {
+                    throw new IllegalArgumentException("分片大小超出预期: " + expected);
+                }
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            log.error("写入分片失败: " + e.getMessage(), e);
+            throw new RuntimeException("写入分片失败: " + e.getMessage());
+        } finally {
+            endWrite(session);
+        }
+
+        if (written != expected) {
+            throw new IllegalArgumentException("分片大小不匹配，期望 " + expected + " 字节，实际 " + written + " 字节");
+        }
+
+        synchronized (session) {
+            // 写入期间任务被取消或过期清理，不能再记录进度（会重新生成进度文件）
+            if (session.closed) {
+                throw new IllegalArgumentException("上传任务已完成或已取消");
+            }
+            session.received.set(index);
+            session.lastActiveTime = System.currentTimeMillis();
+            try {
+                saveSession(session);
+            } catch (IOException e) {
+                log.error("保存分片进度失败: " + e.getMessage(), e);
+                throw new RuntimeException("保存分片进度失败: " + e.getMessage());
+            }
+            return buildStatus(session);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatus(String uploadId, Long userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        synchronized (session) {
+            return buildStatus(session);
+        }
+    }
+
+    @Override
+    public Map<String, Object> completeUpload(String uploadId, Long userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        synchronized (session) {
+            if (session.closed) {
+                throw new IllegalArgumentException("上传任务已完成或已取消");
+            }
+            if (session.received.cardinality() != session.totalChunks) {
+                throw new IllegalArgumentException("还有 " + (session.totalChunks - session.received.cardinality()) + " 个分片未上传");
+            }
+            // 不再接受新的分片写入，并等待进行中的写入（如重发已收到的分片）结束，之后计算哈希和移动的都是同一份内容
+            session.closed = true;
+            boolean completed = false;
+            try {
+                while (session.activeWrites > 0) {
+                    session.wait();
+                }
+                Map<String, Object> result = mediaFileService.saveUploadedFile(getPartFile(uploadId).toFile(),
+                        session.fileName, session.contentType, session.title, session.description, session.tags, session.userId);
+                removeSession(uploadId);
+                completed = true;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("完成上传被中断");
+            } finally {
+                if (!completed) {
+                    // 保存失败时任务保留，客户端可以重试完成
+                    session.closed = false;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean abortUpload(String uploadId, Long userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        synchronized (session) {
+            session.closed = true;
+            removeSession(uploadId);
+        }
+        return true;
+    }
+
+    // 登记一次分片写入，任务已关闭（正在完成、已完成或已取消）时拒绝
+    private void beginWrite(UploadSession session) {
+        synchronized (session) {
+            if (session.closed) {
+                throw new IllegalArgumentException("上传任务已完成或已取消");
+            }
+            session.activeWrites++;
+        }
+    }
+
+    private void endWrite(UploadSession session) {
+        synchronized (session) {
+            session.activeWrites--;
+            session.notifyAll();
+        }
+    }
+
+    /**
+     * 定期清理长时间没有新分片的上传任务
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 600000)
+    public void cleanExpiredUploads() {
+        File[] files = getChunkDir().toFile().listFiles((dir, name) -> name.endsWith(".properties"));
+        if (files == null) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(expireHours);
+        for (File file : files) {
+            String uploadId = file.getName().substring(0, file.getName().length() - ".properties".length());
+            UploadSession session = loadSession(uploadId);
+            if (session == null) {
+                log.info("清理过期的分片上传任务: {}", uploadId);
+                removeSession(uploadId);
+                continue;
+            }
+            synchronized (session) {
+                // 正在完成的任务由完成流程清理
+                if (session.lastActiveTime < expireBefore && !session.closed) {
+                    log.info("清理过期的分片上传任务: {}", uploadId);
+                    session.closed = true;
+                    removeSession(uploadId);
+                }
+            }
+        }
+    }
+
+    private UploadSession requireSession(String uploadId, Long userId) {
+        UploadSession session = loadSession(uploadId);
+        if (session == null) {
+            throw new IllegalArgumentException("上传任务不存在或已过期");
+        }
+        if (userId == null || !userId.equals(session.userId)) {
+            throw new IllegalArgumentException("无权操作该上传任务");
+        }
+        return session;
+    }
+
+    private UploadSession loadSession(String uploadId) {
+        if (uploadId == null || !UPLOAD_ID_PATTERN.matcher(uploadId).matches()) {
+            return null;
+        }
+        return sessions.computeIfAbsent(uploadId, this::readSession);
+    }
+
+    private void removeSession(String uploadId) {
+        sessions.remove(uploadId);
+        try {
+            Files.deleteIfExists(getPartFile(uploadId));
+            Files.deleteIfExists(getSessionFile(uploadId));
+        } catch (IOException e) {
+            log.warn("清理分片上传文件失败: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, Object> buildStatus(UploadSession session) {
+        List<Integer> receivedChunks = new ArrayList<>();
+        List<long[]> receivedRanges = new ArrayList<>();
+        BitSet received = session.received;
+        for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+            receivedChunks.add(i);
+        }
+        // 把连续的分片合并成字节区间 [start, end]
+        for (int start = received.nextSetBit(0); start >= 0; ) {
+            int end = received.nextClearBit(start);
+            receivedRanges.add(new long[]{start * session.chunkSize,
+                    Math.min(end * session.chunkSize, session.fileSize) - 1});
+            start = received.nextSetBit(end);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("uploadId", session.uploadId);
+        data.put("chunkSize", session.chunkSize);
+        data.put("totalChunks", session.totalChunks);
+        data.put("fileSize", session.fileSize);
+        data.put("receivedChunks", receivedChunks);
+        data.put("receivedRanges", receivedRanges);
+        data.put("completed", received.cardinality() == session.totalChunks);
+        return data;
+    }
+
+    private void saveSession(UploadSession session) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("userId", String.valueOf(session.userId));
+        props.setProperty("fileName", session.fileName);
+        props.setProperty("fileSize", String.valueOf(session.fileSize));
+        props.setProperty("chunkSize", String.valueOf(session.chunkSize));
+        props.setProperty("totalChunks", String.valueOf(session.totalChunks));
+        props.setProperty("received", Base64.getEncoder().encodeToString(session.received.toByteArray()));
+        props.setProperty("lastActiveTime", String.valueOf(session.lastActiveTime));
+        if (session.contentType != null) {
+            props.setProperty("contentType", session.contentType);
+        }
+        if (session.title != null) {
+            props.setProperty("title", session.title);
+        }
+        if (session.description != null) {
+            props.setProperty("description", session.description);
+        }
+        if (session.tags != null) {
+            props.setProperty("tags", session.tags);
+        }
+
+        // 先写临时文件再改名，避免进程中断留下半个进度文件
+        Path target = getSessionFile(session.uploadId);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, null);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private UploadSession readSession(String uploadId) {
+        Path file = getSessionFile(uploadId);
+        if (!Files.exists(file) || !Files.exists(getPartFile(uploadId))) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            props.load(reader);
+            UploadSession session = new UploadSession();
+            session.uploadId = uploadId;
+            session.userId = Long.valueOf(props.getProperty("userId"));
+            session.fileName = props.getProperty("fileName");
+            session.contentType = props.getProperty("contentType");
+            session.fileSize = Long.parseLong(props.getProperty("fileSize"));
+            session.chunkSize = Long.parseLong(props.getProperty("chunkSize"));
+            session.totalChunks = Integer.parseInt(props.getProperty("totalChunks"));
+            session.title = props.getProperty("title");
+            session.description = props.getProperty("description");
+            session.tags = props.getProperty("tags");
+            session.received = BitSet.valueOf(Base64.getDecoder().decode(props.getProperty("received", "")));
+            session.lastActiveTime = Long.parseLong(props.getProperty("lastActiveTime"));
+            return session;
+        } catch (Exception e) {
+            log.warn("读取分片上传进度失败: {} {}", uploadId, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path getChunkDir() {
+        String base = uploadPath != null && !uploadPath.isEmpty() ? uploadPath : "c:\\dev\\media-files\\";
+        return Paths.get(base, CHUNK_DIR);
+    }
+
+    private Path getPartFile(String uploadId) {
+        return getChunkDir().resolve(uploadId + ".part");
+    }
+
+    private Path getSessionFile(String uploadId) {
+        return getChunkDir().resolve(uploadId + ".properties");
+    }
+
+    /**
+     * 单个分片上传任务的状态
+     */
+    private static class UploadSession {
+        String uploadId;
+        Long userId;
+        String fileName;
+        String contentType;
+        long fileSize;
+        long chunkSize;
+        int totalChunks;
+        String title;
+        String description;
+        String tags;
+        BitSet received;
+        long lastActiveTime;
+        // 正在完成或已完成、已取消，不再接受分片写入
+        boolean closed;
+        // 进行中的分片写入数
+        int activeWrites;
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.service.ImageTransformService;
+import com.example.xiaoniangao.storage.ByteCache;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.util.ByteBufferResource;
+import com.example.xiaoniangao.util.ExifUtils;
+import com.example.xiaoniangao.util.ImageUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ImageTransformServiceImpl implements ImageTransformService, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageTransformServiceImpl.class);
+
+    // 内存缓存中尺寸图的键前缀，与存储键区分
+    private static final String MEMORY_KEY_PREFIX = "img:";
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private ByteCache byteCache;
+
+    @Autowired
+    @Qualifier("imageRenderExecutor")
+    private ExecutorService imageRenderExecutor;
+
+    @Value("${file.upload.path}")
+    private String uploadPath;
+
+    @Value("${media.transform.sizes:100,200,300,400,600,800,1200}")
+    private List<Integer> sizes;
+
+    // 缓存目录，为空时使用上传目录下的 .cache/img
+    @Value("${media.transform.cache-dir:}")
+    private String cacheDirConfig;
+
+    @Value("${media.transform.cache-max-size:2GB}")
+    private DataSize cacheMaxSize;
+
+    @Value("${media.transform.quality:0.82}")
+    private float quality;
+
+    private List<Integer> sortedSizes;
+
+    private Path cacheDir;
+
+    // 磁盘缓存的LRU索引：缓存文件名 -> 文件大小，按访问顺序排列，所有访问在同一把锁下进行
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cacheBytes;
+
+    // 正在生成的尺寸，同一尺寸的并发请求等待同一个结果
+    private final Map<String, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        sortedSizes = new ArrayList<>(sizes);
+        Collections.sort(sortedSizes);
+        sortedSizes = Collections.unmodifiableList(sortedSizes);
+        cacheDir = cacheDirConfig != null && !cacheDirConfig.trim().isEmpty()
+                ? Paths.get(cacheDirConfig.trim())
+                : Paths.get(uploadPath, ".cache", "img");
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 应用启动时按修改时间重建LRU索引，较早的文件先被淘汰
+        loadCacheIndex();
+    }
+
+    private void loadCacheIndex() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(cacheDir, 2)) {
+            List<Path> cached = files.filter(Files::isRegularFile).collect(Collectors.toList());
+            Map<Path, Long> modified = new HashMap<>();
+            for (Path file : cached) {
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            }
+            cached.sort(Comparator.comparing(modified::get));
+            synchronized (lru) {
+                for (Path file : cached) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    lru.put(name, size);
+                    cacheBytes += size;
+                }
+                trimCache();
+            }
+            log.info("图片尺寸缓存: {} 个文件, {}MB", lru.size(), cacheBytes / (1024 * 1024));
+        } catch (IOException e) {
+            log.error("加载图片尺寸缓存失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Integer> getAllowedSizes() {
+        return sortedSizes;
+    }
+
+    @Override
+    public boolean supports(MediaFile mediaFile) {
+        return ImageUtils.isDecodable(mediaFile.getFileType());
+    }
+
+    @Override
+    public CompletableFuture<Path> getVariant(MediaFile mediaFile, int width, int height, String fit) {
+        if (!sortedSizes.contains(width) || (height != 0 && !sortedSizes.contains(height))) {
+            throw new IllegalArgumentException("不支持的尺寸，可选: " + sortedSizes);
+        }
+        if (!FIT_CONTAIN.equals(fit) && !FIT_COVER.equals(fit)) {
+            throw new IllegalArgumentException("fit只能是 " + FIT_CONTAIN + " 或 " + FIT_COVER);
+        }
+        if (!supports(mediaFile)) {
+            throw new IllegalArgumentException("该文件类型不支持生成尺寸: " + mediaFile.getFileType());
+        }
+        if (FIT_COVER.equals(fit) && height == 0) {
+            // 裁剪模式未指定高度时裁成正方形
+            height = width;
+        }
+
+        String storageKey = mediaFile.getFilePath();
+        // 相同内容的媒体共用一个存储键，缓存也共用
+        String name = FilenameUtils.getBaseName(storageKey) + "_" + width + "x" + height + "_" + fit + ".jpg";
+        Path target = cachePath(name);
+        synchronized (lru) {
+            if (lru.get(name) != null && Files.exists(target)) {
+                hits.increment();
+                return CompletableFuture.completedFuture(target);
+            }
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inflight.putIfAbsent(name, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        int targetHeight = height;
+        try {
+            imageRenderExecutor.execute(() -> {
+                try {
+                    render(storageKey, width, targetHeight, fit, name, target);
+                    future.complete(target);
+                } catch (Throwable e) {
+                    log.error("生成图片尺寸失败: " + name + " " + e.getMessage(), e);
+                    future.completeExceptionally(e);
+                } finally {
+                    inflight.remove(name, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inflight.remove(name, future);
+            rejected.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    @Override
+    public Resource toResource(Path variant) {
+        try {
+            long size = Files.size(variant);
+            if (size > 0 && size <= byteCache.getMaxObjectSize()) {
+                String name = variant.getFileName().toString();
+                ByteBuffer data = byteCache.getOrLoad(MEMORY_KEY_PREFIX + name, () -> ByteCache.read(variant, (int) size));
+                return new ByteBufferResource(data, name);
+            }
+        } catch (IOException e) {
+            // 文件刚好被淘汰，交给FileSystemResource按文件不存在处理
+        }
+        return new FileSystemResource(variant);
+    }
+
+    private void render(String storageKey, int width, int height, String fit, String name, Path target) throws IOException {
+        Path source = storageBackend.localPath(storageKey);
+        Path downloaded = null;
+        if (source == null) {
+            // 存储不在本机磁盘时先取到临时文件
+            downloaded = storageBackend.createTempFile();
+            try (InputStream in = storageBackend.get(storageKey)) {
+                Files.copy(in, downloaded);
+            }
+            source = downloaded;
+        }
+        try {
+            if (!Files.isRegularFile(source)) {
+                throw new IOException("原文件不存在: " + storageKey);
+            }
+            int orientation = ExifUtils.readOrientation(source);
+            BufferedImage image = ImageUtils.readOriented(source, orientation, width, height);
+            if (image == null) {
+                throw new IOException("无法解码的图片: " + storageKey);
+            }
+            BufferedImage result = FIT_COVER.equals(fit)
+                    ? ImageUtils.scaleToCover(image, width, height)
+                    : ImageUtils.scaleToFit(image, width, height);
+
+            Files.createDirectories(target.getParent());
+            Path tmp = target.resolveSibling(name + "." + UUID.randomUUID() + ".tmp");
+            try {
+                ImageUtils.writeJpeg(result, tmp, quality);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            renders.increment();
+
+            long size = Files.size(target);
+            synchronized (lru) {
+                Long previous = lru.put(name, size);
+                cacheBytes += size - (previous != null ? previous : 0);
+                trimCache();
+            }
+        } finally {
+            if (downloaded != null) {
+                Files.deleteIfExists(downloaded);
+            }
+        }
+    }
+
+    /**
+     * 超出容量时从最久未访问的文件开始删除，需在lru锁内调用
+     */
+    private void trimCache() {
+        long limit = cacheMaxSize.toBytes();
+        Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+        while (cacheBytes > limit && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            deleteCacheFile(eldest.getKey());
+            cacheBytes -= eldest.getValue();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public void evict(String storageKey) {
+        if (storageKey == null) {
+            return;
+        }
+        String prefix = FilenameUtils.getBaseName(storageKey) + "_";
+        byteCache.invalidatePrefix(MEMORY_KEY_PREFIX + prefix);
+        synchronized (lru) {
+            Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    deleteCacheFile(entry.getKey());
+                    cacheBytes -= entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void deleteCacheFile(String name) {
+        byteCache.invalidate(MEMORY_KEY_PREFIX + name);
+        try {
+            Files.deleteIfExists(cachePath(name));
+        } catch (IOException e) {
+            log.warn("删除图片缓存失败: {}", name);
+        }
+    }
+
+    // 按文件名前两位分目录，避免单个目录下文件过多
+    private Path cachePath(String name) {
+        return cacheDir.resolve(name.substring(0, Math.min(2, name.length()))).resolve(name);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (lru) {
+            stats.put("cachedFiles", lru.size());
+            stats.put("cacheBytes", cacheBytes);
+        }
+        stats.put("cacheMaxBytes", cacheMaxSize.toBytes());
+        stats.put("hits", hits.sum());
+        stats.put("renders", renders.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("inflight", inflight.size());
+        return stats;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.service.MediaCounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 媒体计数表：总数、各状态数、各用户的媒体数，列表接口读计数表而不是每次 COUNT(*) 扫描media表。
+ * 计数在插入/删除媒体的同一事务中增减，回滚时一起回滚；总数和状态数每次上传都要更新，
+ * 分成多个槽位（slot）随机累加、读取时求和，避免所有上传争同一行锁。定时用实际COUNT校准
+ */
+@Service
+@Order(5)
+public class MediaCounterServiceImpl implements MediaCounterService, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaCounterServiceImpl.class);
+
+    // 计数范围，按字符串顺序加锁（ALL < STATUS < USER），各事务加锁顺序一致，不会互相死锁
+    private static final String SCOPE_ALL = "ALL";
+    private static final String SCOPE_STATUS = "STATUS";
+    private static final String SCOPE_USER = "USER";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 总数和状态数的槽位数
+    @Value("${media.counter.slots:16}")
+    private int slots;
+
+    // 计数表已建好，可以写入
+    private volatile boolean tableReady;
+
+    // 启动后已校准过一次，计数可以读取
+    private volatile boolean reconciled;
+
+    private volatile long lastReconcileTime;
+    private volatile long lastReconcileMillis;
+    private final AtomicLong corrections = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 应用启动时自动检查并创建media_counter表，再按实际数据校准一次（旧版本运行期间计数未维护）
+        initCounterTable();
+        if (tableReady) {
+            reconcile();
+        }
+    }
+
+    private void initCounterTable() {
+        try {
+            List<String> tables = jdbcTemplate.queryForList("SHOW TABLES LIKE 'media_counter'", String.class);
+            if (tables.isEmpty()) {
+                String createTableSql = "CREATE TABLE media_counter (" +
+                        "scope varchar(16) not null comment '计数范围 ALL总数 STATUS按状态 USER按用户'," +
+                        "scope_id bigint not null comment '状态值或用户ID，总数为0'," +
+                        "slot tinyint not null comment '槽位，读取时求和'," +
+                        "count bigint not null default 0 comment '计数'," +
+                        "primary key (scope, scope_id, slot)" +
+                        ") comment '媒体计数表';";
+                jdbcTemplate.execute(createTableSql);
+            }
+            tableReady = true;
+        } catch (Exception e) {
+            log.error("media_counter表初始化失败，列表总数继续使用COUNT查询: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void recordInserted(List<MediaFile> mediaFiles) {
+        apply(mediaFiles, 1);
+    }
+
+    @Override
+    public void recordDeleted(List<MediaFile> mediaFiles) {
+        apply(mediaFiles, -1);
+    }
+
+    private void apply(List<MediaFile> mediaFiles, int sign) {
+        if (!tableReady || mediaFiles == null || mediaFiles.isEmpty()) {
+            return;
+        }
+        // 先按范围汇总，每个计数项只更新一次，并按主键顺序加锁
+        Map<String, TreeMap<Long, Long>> deltas = new TreeMap<>();
+        for (MediaFile mediaFile : mediaFiles) {
+            add(deltas, SCOPE_ALL, 0L, sign);
+            add(deltas, SCOPE_STATUS, mediaFile.getStatus() == null ? 0L : mediaFile.getStatus(), sign);
+            add(deltas, SCOPE_USER, mediaFile.getUserId() == null ? 0L : mediaFile.getUserId(), sign);
+        }
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<Long, Long>> scope : deltas.entrySet()) {
+            // 用户数分散在不同行上，不需要分槽
+            int slot = SCOPE_USER.equals(scope.getKey()) ? 0 : ThreadLocalRandom.current().nextInt(Math.max(1, slots));
+            for (Map.Entry<Long, Long> item : scope.getValue().entrySet()) {
+                args.add(new Object[]{scope.getKey(), item.getKey(), slot, item.getValue()});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO media_counter (scope, scope_id, slot, count) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE count = count + VALUES(count)", args);
+    }
+
+    private static void add(Map<String, TreeMap<Long, Long>> deltas, String scope, Long scopeId, long delta) {
+        deltas.computeIfAbsent(scope, k -> new TreeMap<>()).merge(scopeId, delta, Long::sum);
+    }
+
+    @Override
+    public Long countAll() {
+        return read(SCOPE_ALL, 0L);
+    }
+
+    @Override
+    public Long countByUser(Long userId) {
+        return userId == null ? null : read(SCOPE_USER, userId);
+    }
+
+    @Override
+    public Long countByStatus(int status) {
+        return read(SCOPE_STATUS, (long) status);
+    }
+
+    private Long read(String scope, Long scopeId) {
+        if (!reconciled) {
+            return null;
+        }
+        try {
+            // 主键范围查询，最多读slots行
+            return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(count), 0) FROM media_counter WHERE scope = ? AND scope_id = ?",
+                    Long.class, scope, scopeId);
+        } catch (Exception e) {
+            log.error("读取媒体计数失败: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${media.counter.reconcile-interval-ms:3600000}",
+            initialDelayString = "${media.counter.reconcile-interval-ms:3600000}")
+    public void scheduledReconcile() {
+        if (tableReady) {
+            reconcile();
+        }
+    }
+
+    @Override
+    public int reconcile() {
+        long begin = System.currentTimeMillis();
+        try {
+            Integer fixed = transactionTemplate.execute(status -> {
+                // 先锁住全部计数行：进行中的上传/删除要等它们提交后才能拿到锁，之后的上传/删除要等校准提交后才能更新计数，
+                // 锁住之后再读media表（一致性读的快照从这里开始），读到的实际数与计数表对应同一时刻
+                jdbcTemplate.queryForList("SELECT scope FROM media_counter FOR UPDATE");
+                Map<String, Map<Long, Long>> current = new HashMap<>();
+                jdbcTemplate.query("SELECT scope, scope_id, SUM(count) FROM media_counter GROUP BY scope, scope_id", rs -> {
+                    current.computeIfAbsent(rs.getString(1), k -> new HashMap<>()).put(rs.getLong(2), rs.getLong(3));
+                });
+                Map<String, Map<Long, Long>> actual = new HashMap<>();
+                actual.put(SCOPE_USER, groupCount("SELECT COALESCE(user_id, 0), COUNT(*) FROM media GROUP BY COALESCE(user_id, 0)"));
+                actual.put(SCOPE_STATUS, groupCount("SELECT COALESCE(status, 0), COUNT(*) FROM media GROUP BY COALESCE(status, 0)"));
+                long total = 0;
+                for (long count : actual.get(SCOPE_USER).values()) {
+                    total += count;
+                }
+                Map<Long, Long> all = new HashMap<>();
+                all.put(0L, total);
+                actual.put(SCOPE_ALL, all);
+
+                int changed = 0;
+                for (String scope : new String[]{SCOPE_ALL, SCOPE_STATUS, SCOPE_USER}) {
+                    Map<Long, Long> expected = actual.get(scope);
+                    Map<Long, Long> counted = current.getOrDefault(scope, new HashMap<>());
+                    Set<Long> scopeIds = new HashSet<>(expected.keySet());
+                    scopeIds.addAll(counted.keySet());
+                    for (Long scopeId : scopeIds) {
+                        long value = expected.getOrDefault(scopeId, 0L);
+                        if (value == counted.getOrDefault(scopeId, 0L)) {
+                            continue;
+                        }
+                        jdbcTemplate.update("DELETE FROM media_counter WHERE scope = ? AND scope_id = ?", scope, scopeId);
+                        if (value != 0) {
+                            jdbcTemplate.update("INSERT INTO media_counter (scope, scope_id, slot, count) VALUES (?, ?, 0, ?)",
+                                    scope, scopeId, value);
+                        }
+                        changed++;
+                    }
+                }
+                return changed;
+            });
+            int changed = fixed == null ? 0 : fixed;
+            corrections.addAndGet(changed);
+            reconciled = true;
+            lastReconcileTime = System.currentTimeMillis();
+            lastReconcileMillis = lastReconcileTime - begin;
+            if (changed > 0) {
+                log.info("媒体计数已校准: 修正{}项, 耗时{}ms", changed, lastReconcileMillis);
+            }
+            return changed;
+        } catch (Exception e) {
+            log.error("媒体计数校准失败: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private Map<Long, Long> groupCount(String sql) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getLong(1), rs.getLong(2));
+        });
+        return counts;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ready", tableReady && reconciled);
+        stats.put("slots", slots);
+        stats.put("lastReconcileTime", lastReconcileTime);
+        stats.put("lastReconcileMillis", lastReconcileMillis);
+        stats.put("corrections", corrections.get());
+        if (tableReady && reconciled) {
+            stats.put("total", countAll());
+            Map<Long, Long> byStatus = new TreeMap<>();
+            jdbcTemplate.query("SELECT scope_id, SUM(count) FROM media_counter WHERE scope = ? GROUP BY scope_id", rs -> {
+                byStatus.put(rs.getLong(1), rs.getLong(2));
+            }, SCOPE_STATUS);
+            stats.put("byStatus", byStatus);
+        }
+        return stats;
+    }
+}
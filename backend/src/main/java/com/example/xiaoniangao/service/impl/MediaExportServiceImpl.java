@@ -0,0 +1,190 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.service.MediaExportService;
+import com.example.xiaoniangao.storage.StorageBackend;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+public class MediaExportServiceImpl implements MediaExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaExportServiceImpl.class);
+
+    // 每次从数据库读取的媒体数，内存中只保留一页
+    private static final int PAGE_SIZE = 200;
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_NAME_LENGTH = 100;
+
+    // 本身已压缩的格式，再压缩只浪费CPU
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "mp4", "mov", "m4v", "webm", "mkv", "avi",
+            "mp3", "m4a", "aac", "ogg", "zip", "rar", "7z", "gz"));
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    // 同时进行的导出数，每个导出占用一个请求线程和一路顺序读
+    @Value("${media.export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    // 单次选择导出的最大文件数
+    @Value("${media.export.max-selection:1000}")
+    private int maxSelection;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder exportedFiles = new LongAdder();
+    private final LongAdder exportedBytes = new LongAdder();
+
+    @Override
+    public boolean tryAcquire() {
+        while (true) {
+            int current = active.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        active.decrementAndGet();
+    }
+
+    @Override
+    public int exportZip(List<Long> mediaIds, Long userId, String keyword, OutputStream out) throws IOException {
+        if (mediaIds != null && mediaIds.size() > maxSelection) {
+            throw new IllegalArgumentException("单次最多打包 " + maxSelection + " 个文件");
+        }
+        if ((mediaIds == null || mediaIds.isEmpty()) && userId == null) {
+            throw new IllegalArgumentException("请选择要导出的媒体");
+        }
+        exports.increment();
+        int count = 0;
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        // ZipOutputStream每次只写很少的字节，加一层缓冲减少写socket的次数
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, WRITE_BUFFER_SIZE));
+        try {
+            if (mediaIds != null && !mediaIds.isEmpty()) {
+                for (int from = 0; from < mediaIds.size(); from += PAGE_SIZE) {
+                    List<Long> ids = mediaIds.subList(from, Math.min(from + PAGE_SIZE, mediaIds.size()));
+                    count += writeEntries(zip, mediaFileMapper.selectBatchIds(ids), buffer);
+                }
+            } else {
+                long afterId = 0;
+                List<MediaFile> page;
+                do {
+                    page = mediaFileMapper.findExportPage(userId, keyword, afterId, PAGE_SIZE);
+                    count += writeEntries(zip, page, buffer);
+                    if (!page.isEmpty()) {
+                        afterId = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == PAGE_SIZE);
+            }
+            zip.finish();
+            zip.flush();
+            return count;
+        } catch (IOException e) {
+            aborted.increment();
+            log.info("打包导出中断（已写入{}个文件）: {}", count, e.getMessage());
+            throw e;
+        }
+    }
+
+    private int writeEntries(ZipOutputStream zip, List<MediaFile> mediaFiles, byte[] buffer) throws IOException {
+        int count = 0;
+        for (MediaFile mediaFile : mediaFiles) {
+            String storageKey = mediaFile.getFilePath();
+            if (storageKey == null) {
+                continue;
+            }
+            InputStream in;
+            try {
+                in = storageBackend.get(storageKey);
+            } catch (NoSuchFileException e) {
+                log.warn("打包导出时文件不存在，跳过: mediaId={}, key={}", mediaFile.getId(), storageKey);
+                continue;
+            }
+            try {
+                String extension = FilenameUtils.getExtension(storageKey).toLowerCase();
+                ZipEntry entry = new ZipEntry(entryName(mediaFile, extension));
+                if (mediaFile.getCreateTime() != null) {
+                    entry.setTime(mediaFile.getCreateTime().getTime());
+                }
+                // 已压缩格式用不压缩的deflate块：不需要像STORED那样预先读一遍算CRC，仍然只顺序读一次
+                zip.setLevel(COMPRESSED_EXTENSIONS.contains(extension) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(entry);
+                long bytes = 0;
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    // 客户端断开时这里会抛出异常，后续文件不再读取
+                    zip.write(buffer, 0, len);
+                    bytes += len;
+                }
+                zip.closeEntry();
+                exportedFiles.increment();
+                exportedBytes.add(bytes);
+                count++;
+            } finally {
+                in.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * ZIP中的文件名：标题_媒体ID.扩展名，ID保证不重名，不需要记录已用过的名字
+     */
+    private String entryName(MediaFile mediaFile, String extension) {
+        String title = mediaFile.getTitle();
+        String name = title == null ? "" : title.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+        name = name.isEmpty() ? String.valueOf(mediaFile.getId()) : name + "_" + mediaFile.getId();
+        return extension.isEmpty() ? name : name + "." + extension;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("active", active.get());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("exports", exports.sum());
+        stats.put("aborted", aborted.sum());
+        stats.put("files", exportedFiles.sum());
+        stats.put("bytes", exportedBytes.sum());
+        return stats;
+    }
+}
@@ -5,118 +5,599 @@ import com.example.xiaoniangao.entity.MediaFile;
 import com.example.xiaoniangao.entity.Tag;
 import com.example.xiaoniangao.mapper.MediaFileMapper;
 import com.example.xiaoniangao.mapper.TagMapper;
+import com.example.xiaoniangao.service.ImageTransformService;
+import com.example.xiaoniangao.service.MediaCounterService;
 import com.example.xiaoniangao.service.MediaFileService;
+import com.example.xiaoniangao.service.MediaJobService;
+import com.example.xiaoniangao.service.MediaRenditionService;
+import com.example.xiaoniangao.service.MediaSearchService;
+import com.example.xiaoniangao.service.MediaSearchService.SearchResult;
+import com.example.xiaoniangao.service.MediaStreamService;
 import com.example.xiaoniangao.service.MediaTagService;
+import com.example.xiaoniangao.storage.ByteCache;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.job.FastStartJobHandler;
+import com.example.xiaoniangao.job.ProbeJobHandler;
+import com.example.xiaoniangao.util.HashUtils;
+import com.example.xiaoniangao.util.MediaProbe;
+import com.example.xiaoniangao.util.PageCursor;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Service
-public class MediaFileServiceImpl extends ServiceImpl<MediaFileMapper, MediaFile> implements MediaFileService {
-    
+@Order(10) // 回填探测任务依赖media_job表，需在MediaJobServiceImpl之后执行
+public class MediaFileServiceImpl extends ServiceImpl<MediaFileMapper, MediaFile> implements MediaFileService, ApplicationRunner {
+
     private static final Logger log = LoggerFactory.getLogger(MediaFileServiceImpl.class);
 
+    private static final int BLOB_LOCK_STRIPES = 64;
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final String INTENT_SUFFIX = ".intent";
+
     @Autowired
     private MediaFileMapper mediaFileMapper;
 
     @Autowired
     private TagMapper tagMapper;
-    
+
     @Autowired
     private MediaTagService mediaTagService;
 
-    @Value("${file.upload.path}")
-    private String uploadPath;
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    @Autowired
+    private MediaRenditionService mediaRenditionService;
+
+    @Autowired
+    private ImageTransformService imageTransformService;
+
+    @Autowired
+    private MediaStreamService mediaStreamService;
+
+    @Autowired
+    private MediaSearchService mediaSearchService;
+
+    @Autowired
+    private MediaCounterService mediaCounterService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private ByteCache byteCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.servlet.multipart.max-file-size:200MB}")
+    private DataSize maxFileSize;
+
+    // 暂存目录中超过该时间的文件视为上传中断的残留
+    @Value("${file.upload.staging.expire-hours:6}")
+    private int stagingExpireHours;
+
+    @Value("${media.job.max-attempts:5}")
+    private int jobMaxAttempts;
+
+    @Value("${file.upload.batch.max-files:50}")
+    private int maxBatchFiles;
+
+    // 搜索索引不可用时，带关键词的总数最多数到该值
+    @Value("${media.counter.keyword-count-cap:1000}")
+    private int keywordCountCap;
+
+    // 游标分页单页最多条数
+    @Value("${media.page.max-size:100}")
+    private int maxPageSize;
+
+    @Autowired
+    @Qualifier("uploadIoExecutor")
+    private ExecutorService uploadIoExecutor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 按内容哈希分段加锁，保证“判断文件是否存在/是否还有引用”和“落盘/删除文件”不会交错
+    private final Object[] blobLocks = new Object[BLOB_LOCK_STRIPES];
+
+    // 尚未提交事务、但已经决定引用某个文件的上传数，删除时据此避免误删
+    private final Map<String, AtomicInteger> pendingBlobRefs = new ConcurrentHashMap<>();
+
+    {
+        for (int i = 0; i < blobLocks.length; i++) {
+            blobLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 应用启动时自动检查并补齐media表新增的字段
+        initMediaColumns();
+        // 旧数据保存的是绝对路径，迁移为存储键
+        migrateLegacyFilePaths();
+    }
+
+    private void initMediaColumns() {
+        addColumnIfAbsent("content_hash",
+                "ALTER TABLE media ADD COLUMN content_hash char(64) NULL comment '文件内容SHA-256'",
+                "ALTER TABLE media ADD INDEX idx_media_content_hash(content_hash);");
+        // 存储文件可能被后台任务改写（如MP4前置moov），content_hash随之变化，秒传按上传时的哈希查找
+        addColumnIfAbsent("source_hash",
+                "ALTER TABLE media ADD COLUMN source_hash char(64) NULL comment '上传时的文件内容SHA-256'",
+                "UPDATE media SET source_hash = content_hash WHERE content_hash IS NOT NULL",
+                "ALTER TABLE media ADD INDEX idx_media_source_hash(source_hash);");
+        // 已有数据视为已处理完成
+        addColumnIfAbsent("process_status",
+                "ALTER TABLE media ADD COLUMN process_status tinyint NOT NULL DEFAULT 2 comment '后台处理状态 0处理中 2完成 3失败'");
+        addColumnIfAbsent("storage_tier",
+                "ALTER TABLE media ADD COLUMN storage_tier tinyint NOT NULL DEFAULT 0 comment '存储层 0热 1冷'",
+                "ALTER TABLE media ADD INDEX idx_media_storage_tier(storage_tier, file_path);");
+        addColumnIfAbsent("last_access_time",
+                "ALTER TABLE media ADD COLUMN last_access_time datetime NULL comment '最近访问时间'");
+        boolean probeColumnsAdded = addColumnIfAbsent("mime_type",
+                "ALTER TABLE media ADD COLUMN mime_type varchar(100) NULL comment '按文件头识别的MIME类型'",
+                "ALTER TABLE media ADD COLUMN width int NULL comment '显示宽度'",
+                "ALTER TABLE media ADD COLUMN height int NULL comment '显示高度'",
+                "ALTER TABLE media ADD COLUMN orientation tinyint NULL comment 'EXIF方向'",
+                "ALTER TABLE media ADD COLUMN duration_ms bigint NULL comment '视频时长（毫秒）'",
+                "ALTER TABLE media ADD COLUMN taken_at datetime NULL comment '拍摄时间'",
+                "ALTER TABLE media ADD INDEX idx_media_taken_at(taken_at);");
+        if (probeColumnsAdded) {
+            backfillJobs(ProbeJobHandler.JOB_TYPE, "file_type LIKE 'image/%' OR file_type LIKE 'video/%'");
+        }
+        // 游标分页按 (create_time, id) 倒序读取，二级索引末尾自带主键，同一时间内的顺序也由索引保证
+        addIndexIfAbsent("idx_media_create_time",
+                "ALTER TABLE media ADD INDEX idx_media_create_time(create_time, id);");
+        addIndexIfAbsent("idx_media_user_create_time",
+                "ALTER TABLE media ADD INDEX idx_media_user_create_time(user_id, create_time, id);");
+        boolean codecColumnAdded = addColumnIfAbsent("video_codec",
+                "ALTER TABLE media ADD COLUMN video_codec varchar(16) NULL comment '视频编码'");
+        if (codecColumnAdded) {
+            // 已探测过的视频补充编码信息，历史视频统一做一次moov前置
+            backfillJobs(ProbeJobHandler.JOB_TYPE, "file_type LIKE 'video/%' AND mime_type IS NOT NULL");
+            backfillJobs(FastStartJobHandler.JOB_TYPE, "file_type IN ('video/mp4', 'video/quicktime')");
+        }
+    }
+
+    /**
+     * 为满足条件的历史媒体创建后台任务
+     */
+    private void backfillJobs(String jobType, String condition) {
+        try {
+            int count = jdbcTemplate.update("INSERT INTO media_job (media_id, job_type, status, attempts, max_attempts, next_run_time) " +
+                    "SELECT id, ?, 0, 0, ?, NOW() FROM media WHERE " + condition,
+                    jobType, jobMaxAttempts);
+            log.info("已为{}个历史媒体创建{}任务", count, jobType);
+        } catch (Exception e) {
+            log.error("创建" + jobType + "任务失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把file_path/cover_path中的绝对路径改为存储键（文件名），文件移动到存储的分级目录中
+     */
+    private void migrateLegacyFilePaths() {
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, file_path, cover_path FROM media WHERE " + pathCondition("file_path") + " OR " + pathCondition("cover_path"));
+            for (Map<String, Object> row : rows) {
+                String filePath = (String) row.get("file_path");
+                String coverPath = (String) row.get("cover_path");
+                String fileKey = migrateLegacyFile(filePath);
+                String coverKey = migrateLegacyFile(coverPath);
+                // 移动失败的保留原路径，下次启动重试
+                if (!Objects.equals(fileKey, filePath) || !Objects.equals(coverKey, coverPath)) {
+                    jdbcTemplate.update("UPDATE media SET file_path = ?, cover_path = ? WHERE id = ?", fileKey, coverKey, row.get("id"));
+                }
+            }
+            // 缩略图表可能还没有创建（由MediaRenditionService初始化），此时也不会有旧数据
+            List<Map<String, Object>> renditions = jdbcTemplate.queryForList("SHOW TABLES LIKE 'media_rendition'").isEmpty()
+                    ? Collections.emptyList()
+                    : jdbcTemplate.queryForList("SELECT id, file_path FROM media_rendition WHERE " + pathCondition("file_path"));
+            for (Map<String, Object> row : renditions) {
+                String filePath = (String) row.get("file_path");
+                String key = migrateLegacyFile(filePath);
+                if (!Objects.equals(key, filePath)) {
+                    jdbcTemplate.update("UPDATE media_rendition SET file_path = ? WHERE id = ?", key, row.get("id"));
+                }
+            }
+            if (!rows.isEmpty() || !renditions.isEmpty()) {
+                log.info("旧文件路径迁移完成: 媒体{}条, 缩略图{}条", rows.size(), renditions.size());
+            }
+        } catch (Exception e) {
+            log.error("旧文件路径迁移失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 包含路径分隔符（/ 或 \）的值是旧的绝对路径
+    private static String pathCondition(String column) {
+        return "(LOCATE('/', " + column + ") > 0 OR LOCATE(CHAR(92), " + column + ") > 0)";
+    }
+
+    /**
+     * 把旧路径的文件移入存储，返回存储键；文件不存在或移动失败时返回原路径
+     */
+    private String migrateLegacyFile(String legacyPath) {
+        if (legacyPath == null || legacyPath.isEmpty()) {
+            return legacyPath;
+        }
+        String key = FilenameUtils.getName(legacyPath);
+        // 相同内容的多条记录指向同一文件，只有第一次需要移动
+        if (storageBackend.exists(key)) {
+            return key;
+        }
+        Path source = Paths.get(legacyPath);
+        if (!Files.isRegularFile(source)) {
+            log.warn("迁移文件不存在，保留原路径: " + legacyPath);
+            return legacyPath;
+        }
+        try {
+            storageBackend.put(key, source);
+            return key;
+        } catch (IOException e) {
+            log.error("迁移文件失败，保留原路径: " + legacyPath + " " + e.getMessage(), e);
+            return legacyPath;
+        }
+    }
+
+    /**
+     * 字段不存在时执行DDL，返回是否本次新建
+     */
+    private boolean addColumnIfAbsent(String column, String... ddl) {
+        try {
+            List<Map<String, Object>> columns = jdbcTemplate.queryForList("SHOW COLUMNS FROM media LIKE '" + column + "'");
+            if (columns.isEmpty()) {
+                for (String sql : ddl) {
+                    jdbcTemplate.execute(sql);
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            log.error("media表字段初始化失败: " + column + " " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    // 索引不存在时执行DDL
+    private void addIndexIfAbsent(String index, String ddl) {
+        try {
+            if (jdbcTemplate.queryForList("SHOW INDEX FROM media WHERE Key_name = ?", index).isEmpty()) {
+                jdbcTemplate.execute(ddl);
+            }
+        } catch (Exception e) {
+            log.error("media表索引初始化失败: " + index + " " + e.getMessage(), e);
+        }
+    }
 
     @Override
-    @Transactional
     public Map<String, Object> uploadFile(MultipartFile file, String fileTitle, String fileDescription, String fileTags, Long uploaderId, String uploaderName) {
         // 兼容旧接口的调用，将参数转发给新逻辑
         return uploadFileInternal(file, fileTitle, fileDescription, fileTags, uploaderId);
     }
-    
+
+    @Override
+    public Map<String, Object> saveUploadedFile(File stagedFile, String originalFilename, String contentType, String title, String description, String tags, Long userId) {
+        if (stagedFile == null || !stagedFile.isFile() || stagedFile.length() == 0) {
+            log.error("待保存的文件不存在或为空: {}", stagedFile);
+            throw new RuntimeException("上传文件不能为空");
+        }
+        try {
+            // 分片是乱序写入的，只能在合并完成后顺序读一遍计算哈希
+            String contentHash = HashUtils.sha256Hex(stagedFile.toPath());
+            long fileSize = stagedFile.length();
+            return commitStaged(stagedFile.toPath(), contentHash, fileSize, originalFilename, contentType, title, description, tags, userId);
+        } catch (IOException e) {
+            log.error("文件保存失败: " + e.getMessage(), e);
+            throw new RuntimeException("文件保存失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> instantUpload(String contentHash, long fileSize, String originalFilename, String contentType, String title, String description, String tags, Long userId) {
+        if (!HashUtils.isSha256Hex(contentHash)) {
+            throw new IllegalArgumentException("文件哈希格式不正确");
+        }
+        pinBlob(contentHash);
+        String rewrittenHash = null;
+        try {
+            String filePath;
+            synchronized (blobLock(contentHash)) {
+                filePath = findExistingBlob(contentHash, fileSize);
+            }
+            String storedHash = contentHash;
+            if (filePath == null) {
+                // 上传后被改写过的文件（如MP4前置moov）内容哈希已变化，按上传时的哈希找到改写后的文件
+                MediaFile rewritten = mediaFileMapper.findOneBySourceHash(contentHash);
+                if (rewritten != null && rewritten.getContentHash() != null && !contentHash.equals(rewritten.getContentHash())
+                        && rewritten.getFileSize() != null && rewritten.getFileSize() == fileSize) {
+                    rewrittenHash = rewritten.getContentHash();
+                    // 新记录引用的是改写后的文件，按它的哈希登记引用，再确认文件没有在此之前被删除
+                    pinBlob(rewrittenHash);
+                    synchronized (blobLock(rewrittenHash)) {
+                        if (storageBackend.exists(rewritten.getFilePath()) && mediaFileMapper.countByContentHash(rewrittenHash) > 0) {
+                            filePath = rewritten.getFilePath();
+                            storedHash = rewrittenHash;
+                        }
+                    }
+                }
+            }
+            if (filePath == null) {
+                // 服务器上没有相同内容的文件，客户端需要正常上传
+                return null;
+            }
+            log.info("秒传命中: {}", contentHash);
+            // 存储在本机磁盘时直接读文件头，否则交给后台探测任务
+            Path localPath = storageBackend.localPath(filePath);
+            MediaProbe.Result info = localPath != null ? probeQuietly(localPath) : null;
+            String blobPath = filePath;
+            String blobHash = storedHash;
+            return transactionTemplate.execute(status -> saveMediaRecord(blobPath, blobHash, contentHash, originalFilename, contentType, fileSize,
+                    info, title, description, tags, userId));
+        } finally {
+            unpinBlob(contentHash);
+            if (rewrittenHash != null) {
+                unpinBlob(rewrittenHash);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> uploadStream(InputStream in, String originalFilename, String contentType, long contentLength, String title, String description, String tags, Long userId) {
+        if (contentLength > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("文件大小超过限制: " + maxFileSize.toMegabytes() + "MB");
+        }
+        Path stagedFile = null;
+        try {
+            // 请求体只写一次：直接落到上传卷的暂存文件，同一遍里计算哈希和大小，之后只是改名
+            stagedFile = newStagingFile();
+            MessageDigest digest = HashUtils.newSha256();
+            long fileSize = copyToStaging(in, stagedFile, digest);
+            if (fileSize == 0) {
+                throw new IllegalArgumentException("文件为空");
+            }
+            if (contentLength >= 0 && fileSize != contentLength) {
+                throw new IllegalArgumentException("文件不完整，期望 " + contentLength + " 字节，实际 " + fileSize + " 字节");
+            }
+            String contentHash = HashUtils.toHex(digest.digest());
+            return commitStaged(stagedFile, contentHash, fileSize, originalFilename, contentType, title, description, tags, userId);
+        } catch (IOException e) {
+            log.error("文件保存失败: " + e.getMessage(), e);
+            throw new RuntimeException("文件保存失败: " + e.getMessage());
+        } finally {
+            deleteQuietly(stagedFile);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> batchUpload(MultipartFile[] files, String title, String description, String tags, Long userId) {
+        if (files == null || files.length == 0) {
+            throw new IllegalArgumentException("请选择要上传的文件");
+        }
+        if (files.length > maxBatchFiles) {
+            throw new IllegalArgumentException("单次最多上传 " + maxBatchFiles + " 个文件");
+        }
+
+        // 第一阶段：各文件在IO线程池中并行写入暂存文件、计算哈希并存入存储，不占用数据库连接
+        List<Future<BatchItem>> futures = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            futures.add(uploadIoExecutor.submit(() -> storeBatchItem(file)));
+        }
+        List<BatchItem> items = new ArrayList<>(files.length);
+        for (int i = 0; i < futures.size(); i++) {
+            items.add(awaitBatchItem(futures.get(i), files[i]));
+        }
+
+        List<BatchItem> stored = new ArrayList<>();
+        for (BatchItem item : items) {
+            if (item.error == null) {
+                stored.add(item);
+            }
+        }
+
+        try {
+            // 第二阶段：所有元数据、标签、后台任务在一个短事务里批量写入
+            if (!stored.isEmpty()) {
+                saveBatchRecords(stored, title, description, tags, userId);
+            }
+        } catch (Exception e) {
+            log.error("批量保存媒体信息失败: " + e.getMessage(), e);
+            for (BatchItem item : stored) {
+                item.error = "保存媒体信息失败";
+                item.mediaFile = null;
+            }
+        } finally {
+            for (BatchItem item : items) {
+                if (item.contentHash != null) {
+                    unpinBlob(item.contentHash);
+                }
+            }
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            if (item.mediaFile == null && item.filePath != null) {
+                // 元数据没有保存成功，新落盘且无人引用的文件需要清理
+                deleteBlobIfUnreferenced(item.contentHash, item.filePath);
+            }
+            deleteQuietly(item.intent);
+            Map<String, Object> result;
+            if (item.mediaFile != null) {
+                result = buildUploadResult(item.mediaFile, item.contentType);
+                result.put("success", true);
+            } else {
+                result = new HashMap<>();
+                result.put("success", false);
+                result.put("error", item.error);
+            }
+            result.put("fileName", item.originalFilename);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * 批量上传中的单个文件：写暂存文件、计算哈希并存为内容寻址文件
+     */
+    private BatchItem storeBatchItem(MultipartFile file) {
+        BatchItem item = new BatchItem();
+        item.originalFilename = file.getOriginalFilename();
+        item.contentType = file.getContentType();
+        if (file.isEmpty()) {
+            item.error = "文件为空";
+            return item;
+        }
+        Path stagedFile = null;
+        try {
+            stagedFile = newStagingFile();
+            MessageDigest digest = HashUtils.newSha256();
+            try (InputStream in = file.getInputStream()) {
+                item.fileSize = copyToStaging(in, stagedFile, digest);
+            }
+            String contentHash = HashUtils.toHex(digest.digest());
+            // 引用一直保持到元数据事务结束，由批量上传方法统一释放
+            pinBlob(contentHash);
+            item.contentHash = contentHash;
+            item.intent = writeIntent(contentHash, blobKey(contentHash, item.originalFilename));
+            item.info = probeQuietly(stagedFile);
+            item.filePath = storeBlob(stagedFile, contentHash, item.originalFilename);
+        } catch (IllegalArgumentException e) {
+            item.error = e.getMessage();
+        } catch (Exception e) {
+            log.error("文件保存失败: " + item.originalFilename + " " + e.getMessage(), e);
+            item.error = "文件保存失败";
+        } finally {
+            deleteQuietly(stagedFile);
+        }
+        return item;
+    }
+
+    private BatchItem awaitBatchItem(Future<BatchItem> future, MultipartFile file) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("文件保存失败: " + file.getOriginalFilename(), e.getCause());
+        }
+        // 任务可能仍在执行，不能确定是否已登记引用，只返回失败结果
+        BatchItem item = new BatchItem();
+        item.originalFilename = file.getOriginalFilename();
+        item.error = "文件保存失败";
+        return item;
+    }
+
+    /**
+     * 一次插入所有媒体记录，标签只解析一次，后台任务批量入队
+     */
+    private void saveBatchRecords(List<BatchItem> stored, String title, String description, String tags, Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Date now = new Date();
+            List<MediaFile> mediaFiles = new ArrayList<>(stored.size());
+            Map<MediaFile, List<String>> jobTypes = new IdentityHashMap<>();
+            for (BatchItem item : stored) {
+                String itemTitle = (title == null || title.trim().isEmpty())
+                        ? FilenameUtils.getBaseName(item.originalFilename) : title;
+                MediaFile mediaFile = buildMediaFile(item.filePath, item.contentHash, item.originalFilename, item.contentType,
+                        item.fileSize, item.info, itemTitle, description, userId);
+                List<String> types = mediaJobService.resolveJobTypes(mediaFile);
+                mediaFile.setProcessStatus(types.isEmpty() ? MediaFile.PROCESS_DONE : MediaFile.PROCESS_PENDING);
+                // 自定义批量插入不经过自动填充，时间在这里设置
+                mediaFile.setCreateTime(now);
+                mediaFile.setUpdateTime(now);
+                mediaFiles.add(mediaFile);
+                jobTypes.put(mediaFile, types);
+            }
+
+            mediaFileMapper.batchInsert(mediaFiles);
+            mediaCounterService.recordInserted(mediaFiles);
+
+            List<Long> mediaIds = new ArrayList<>(mediaFiles.size());
+            Map<Long, List<String>> jobTypesByMedia = new LinkedHashMap<>();
+            for (MediaFile mediaFile : mediaFiles) {
+                mediaIds.add(mediaFile.getId());
+                jobTypesByMedia.put(mediaFile.getId(), jobTypes.get(mediaFile));
+            }
+            mediaJobService.enqueueJobs(jobTypesByMedia);
+            if (tags != null && !tags.isEmpty()) {
+                mediaTagService.saveMediaTagsBatch(mediaIds, tags);
+            }
+
+            for (int i = 0; i < stored.size(); i++) {
+                stored.get(i).mediaFile = mediaFiles.get(i);
+                mediaSearchService.index(mediaFiles.get(i), tags);
+            }
+        });
+    }
+
+    /**
+     * 批量上传中单个文件的处理结果
+     */
+    private static class BatchItem {
+        String originalFilename;
+        String contentType;
+        long fileSize;
+        String contentHash;
+        MediaProbe.Result info;
+        Path intent;
+        String filePath;
+        MediaFile mediaFile;
+        String error;
+    }
+
     /**
      * 内部上传逻辑方法
      */
-    @Transactional
     private Map<String, Object> uploadFileInternal(MultipartFile file, String title, String description, String tags, Long userId) {
-        Map<String, Object> result = new HashMap<>();
+        Path stagedFile = null;
         try {
             // 检查文件是否为空
             if (file == null || file.isEmpty()) {
                 log.error("上传文件为空");
                 throw new RuntimeException("上传文件不能为空");
             }
-            
-            // 确保上传目录存在
-            // 首先尝试使用固定路径作为备选，确保文件能保存成功
-            String effectiveUploadPath = "c:\\dev\\media-files\\";
-            if (uploadPath != null && !uploadPath.isEmpty()) {
-                effectiveUploadPath = uploadPath;
-            }
-            
-            File directory = new File(effectiveUploadPath);
-            if (!directory.exists()) {
-                directory.mkdirs();
-            }
-
-            // 生成唯一文件名
-            String originalFilename = file.getOriginalFilename();
-            String extension = FilenameUtils.getExtension(originalFilename);
-            String newFilename = UUID.randomUUID().toString() + "." + extension;
-            String filePath = effectiveUploadPath + newFilename;
-            
-            // 保存文件
-            file.transferTo(new File(filePath));
-
-            // 保存文件信息到数据库
-            MediaFile mediaFile = new MediaFile();
-            mediaFile.setOriginalFileName(originalFilename);
-            mediaFile.setFilePath(filePath);
-            
-            // 获取文件类型并添加调试日志
-            String fileContentType = file.getContentType();
-            log.info("文件类型: {}", fileContentType);
-            
-            // 如果文件类型为null，设置默认值
-            if (fileContentType == null) {
-                log.warn("文件类型为null，使用默认值 'text/plain'");
-                fileContentType = "text/plain";
-            }
-            
-            mediaFile.setFileType(fileContentType);
-            mediaFile.setTitle(title);
-            mediaFile.setDescription(description);
-            mediaFile.setUserId(userId);
-            mediaFile.setFileSize(file.getSize());
-            mediaFile.setViewCount(0); // 默认0次浏览
-            mediaFile.setStatus(1); // 默认状态为可用
-
-            this.save(mediaFile);
-
-            // 使用MediaTagService处理标签
-            if (tags != null && !tags.isEmpty()) {
-                boolean tagSaved = mediaTagService.saveMediaTags(mediaFile.getId(), tags);
-                if (!tagSaved) {
-                    throw new RuntimeException("标签保存失败");
-                }
+
+            // 写入暂存文件的同时计算SHA-256，不需要再额外读一遍
+            stagedFile = newStagingFile();
+            MessageDigest digest = HashUtils.newSha256();
+            long fileSize;
+            try (InputStream in = file.getInputStream()) {
+                fileSize = copyToStaging(in, stagedFile, digest);
             }
+            String contentHash = HashUtils.toHex(digest.digest());
 
-            result.put("fileId", mediaFile.getId());
-            result.put("filePath", filePath);
-            result.put("fileType", file.getContentType());
-            result.put("createTime", mediaFile.getCreateTime());
-            result.put("userId", userId);
-            return result;
+            return commitStaged(stagedFile, contentHash, fileSize, file.getOriginalFilename(), file.getContentType(), title, description, tags, userId);
         } catch (IOException e) {
             // 文件保存异常
             log.error("文件保存失败: " + e.getMessage(), e);
@@ -125,56 +606,480 @@ public class MediaFileServiceImpl extends ServiceImpl<MediaFileMapper, MediaFile
             // 其他异常
             log.error("上传处理失败: " + e.getMessage(), e);
             throw new RuntimeException("上传处理失败: " + e.getMessage());
+        } finally {
+            deleteQuietly(stagedFile);
+        }
+    }
+
+    /**
+     * 第二阶段：暂存文件（已写完并算好哈希）存入存储，再用一个短事务保存元数据。
+     * 文件读写都在事务之外，数据库连接的占用时间与文件大小无关；
+     * 事务失败时立即清理新存入的文件，进程在两步之间退出时由意图记录交给清理任务补偿
+     */
+    private Map<String, Object> commitStaged(Path stagedFile, String contentHash, long fileSize, String originalFilename, String contentType,
+                                             String title, String description, String tags, Long userId) throws IOException {
+        pinBlob(contentHash);
+        Path intent = null;
+        String storageKey = null;
+        boolean committed = false;
+        try {
+            intent = writeIntent(contentHash, blobKey(contentHash, originalFilename));
+            // 暂存文件还在本机磁盘上，存入存储前读文件头
+            MediaProbe.Result info = probeQuietly(stagedFile);
+            storageKey = storeBlob(stagedFile, contentHash, originalFilename);
+            String filePath = storageKey;
+            Map<String, Object> result = transactionTemplate.execute(status -> saveMediaRecord(filePath, contentHash, contentHash, originalFilename,
+                    contentType, fileSize, info, title, description, tags, userId));
+            committed = true;
+            return result;
+        } finally {
+            unpinBlob(contentHash);
+            if (!committed && storageKey != null) {
+                deleteBlobIfUnreferenced(contentHash, storageKey);
+            }
+            deleteQuietly(intent);
+        }
+    }
+
+    // 存储文件被改写后（如MP4前置moov）存入新文件，引用旧文件的媒体切换到新文件，再清理旧文件
+    @Override
+    public String replaceContent(MediaFile mediaFile, Path rewrittenFile) throws IOException {
+        String oldKey = mediaFile.getFilePath();
+        String oldHash = mediaFile.getContentHash();
+        String newHash = HashUtils.sha256Hex(rewrittenFile);
+        pinBlob(newHash);
+        Path intent = null;
+        String newKey = null;
+        boolean committed = false;
+        try {
+            intent = writeIntent(newHash, blobKey(newHash, oldKey));
+            newKey = storeBlob(rewrittenFile, newHash, oldKey);
+            String filePath = newKey;
+            // 按存储键更新，同内容的其他媒体一起切换到新文件
+            transactionTemplate.executeWithoutResult(status -> mediaFileMapper.replaceContent(oldKey, filePath, newHash));
+            committed = true;
+            mediaStreamService.evict(null, oldKey);
+        } finally {
+            unpinBlob(newHash);
+            if (!committed && newKey != null) {
+                deleteBlobIfUnreferenced(newHash, newKey);
+            }
+            deleteQuietly(intent);
+        }
+        // 旧文件已没有媒体引用（并发秒传新建的引用除外），按正常删除流程清理
+        if (oldHash == null) {
+            deleteBlobFiles(oldKey);
+        } else {
+            deleteBlobIfUnreferenced(oldHash, oldKey);
+        }
+        return newKey;
+    }
+
+    /**
+     * 在存入文件前记录意图（内容哈希和存储键），元数据提交或补偿完成后删除。
+     * 残留的意图文件说明提交没有完成，清理任务据此删除无人引用的文件
+     */
+    private Path writeIntent(String contentHash, String storageKey) throws IOException {
+        Path intent = storageBackend.tempDirectory().resolve(UUID.randomUUID().toString() + INTENT_SUFFIX);
+        Files.write(intent, Arrays.asList(contentHash, storageKey), StandardCharsets.UTF_8);
+        return intent;
+    }
+
+    /**
+     * 定期清理暂存目录：过期的暂存文件直接删除，过期的意图记录对应的文件在无人引用时删除
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 300000)
+    public void cleanStaleStaging() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(stagingExpireHours);
+        int cleaned = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storageBackend.tempDirectory())) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() >= expireBefore) {
+                    continue;
+                }
+                if (file.getFileName().toString().endsWith(INTENT_SUFFIX)) {
+                    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                    if (lines.size() >= 2 && HashUtils.isSha256Hex(lines.get(0))) {
+                        deleteBlobIfUnreferenced(lines.get(0), lines.get(1));
+                    }
+                }
+                deleteQuietly(file);
+                cleaned++;
+            }
+        } catch (Exception e) {
+            log.error("清理暂存目录失败: " + e.getMessage(), e);
+        }
+        if (cleaned > 0) {
+            log.info("清理过期暂存文件 {} 个", cleaned);
+        }
+    }
+
+    /**
+     * 把输入流写入暂存文件，同时更新摘要并统计字节数，超过大小限制时中止
+     * @return 写入的字节数
+     */
+    private long copyToStaging(InputStream in, Path stagedFile, MessageDigest digest) throws IOException {
+        long limit = maxFileSize.toBytes();
+        long total = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (OutputStream out = Files.newOutputStream(stagedFile)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                total += len;
+                if (total > limit) {
+                    throw new IllegalArgumentException("文件大小超过限制: " + maxFileSize.toMegabytes() + "MB");
+                }
+                digest.update(buffer, 0, len);
+                out.write(buffer, 0, len);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 把暂存文件存为按内容寻址的文件，已有相同内容时直接复用并丢弃暂存文件。
+     * 调用前需先登记对该文件的引用（pinBlob），防止并发删除
+     * @return 存储键
+     */
+    private String storeBlob(Path stagedFile, String contentHash, String originalFilename) throws IOException {
+        synchronized (blobLock(contentHash)) {
+            long fileSize = Files.size(stagedFile);
+            String existing = findExistingBlob(contentHash, fileSize);
+            if (existing != null) {
+                log.info("文件内容已存在，复用: {}", existing);
+                deleteQuietly(stagedFile);
+                return existing;
+            }
+
+            String storageKey = blobKey(contentHash, originalFilename);
+            if (storageBackend.size(storageKey) == fileSize) {
+                // 之前残留的同内容文件（没有记录引用），内容一致可直接使用
+                deleteQuietly(stagedFile);
+            } else {
+                // 暂存文件和存储在同一个卷上，这里只是改名
+                storageBackend.put(storageKey, stagedFile);
+            }
+            return storageKey;
+        }
+    }
+
+    private String blobKey(String contentHash, String originalFilename) {
+        String extension = FilenameUtils.getExtension(originalFilename);
+        return contentHash + (extension.isEmpty() ? "" : "." + extension);
+    }
+
+    /**
+     * 查找已存储的同内容文件
+     */
+    private String findExistingBlob(String contentHash, long fileSize) {
+        MediaFile existing = mediaFileMapper.findOneByContentHash(contentHash);
+        if (existing != null && existing.getFilePath() != null && storageBackend.size(existing.getFilePath()) == fileSize) {
+            return existing.getFilePath();
+        }
+        return null;
+    }
+
+    private void pinBlob(String contentHash) {
+        pendingBlobRefs.computeIfAbsent(contentHash, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void unpinBlob(String contentHash) {
+        pendingBlobRefs.computeIfPresent(contentHash, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /**
+     * 媒体记录删除后调用：最后一条引用消失时才删除文件及其缩略图
+     */
+    private void releaseBlob(MediaFile mediaFile) {
+        mediaSearchService.remove(mediaFile.getId());
+        mediaRenditionService.deleteByMediaId(mediaFile.getId());
+        mediaStreamService.evict(mediaFile.getId(), mediaFile.getFilePath());
+        if (mediaFile.getFilePath() == null) {
+            return;
+        }
+        String contentHash = mediaFile.getContentHash();
+        if (contentHash == null) {
+            // 旧数据没有内容哈希，文件为该记录独占
+            deleteBlobFiles(mediaFile.getFilePath());
+            return;
+        }
+        deleteBlobIfUnreferenced(contentHash, mediaFile.getFilePath());
+    }
+
+    /**
+     * 没有进行中的上传、也没有媒体记录引用时删除文件及其缩略图
+     */
+    private void deleteBlobIfUnreferenced(String contentHash, String storageKey) {
+        synchronized (blobLock(contentHash)) {
+            if (!pendingBlobRefs.containsKey(contentHash) && mediaFileMapper.countByContentHash(contentHash) == 0) {
+                deleteBlobFiles(storageKey);
+            }
+        }
+    }
+
+    // 删除文件及其缩略图、尺寸缓存和内存缓存
+    private void deleteBlobFiles(String storageKey) {
+        storageBackend.delete(storageKey);
+        byteCache.invalidate(storageKey);
+        mediaRenditionService.deleteRenditionFiles(storageKey);
+        imageTransformService.evict(storageKey);
+    }
+
+    private Object blobLock(String contentHash) {
+        return blobLocks[(contentHash.hashCode() & 0x7fffffff) % blobLocks.length];
+    }
+
+    /**
+     * 保存媒体元数据和标签（文件已落盘）
+     */
+    private Map<String, Object> saveMediaRecord(String filePath, String contentHash, String sourceHash, String originalFilename, String fileContentType,
+                                                long fileSize, MediaProbe.Result info, String title, String description, String tags, Long userId) {
+        // 保存文件信息到数据库
+        MediaFile mediaFile = buildMediaFile(filePath, contentHash, originalFilename, fileContentType, fileSize, info, title, description, userId);
+        mediaFile.setSourceHash(sourceHash);
+
+        // 封面、元数据等派生处理放到后台任务中执行，上传请求只负责文件和元数据落库
+        List<String> jobTypes = mediaJobService.resolveJobTypes(mediaFile);
+        mediaFile.setProcessStatus(jobTypes.isEmpty() ? MediaFile.PROCESS_DONE : MediaFile.PROCESS_PENDING);
+
+        this.save(mediaFile);
+        mediaCounterService.recordInserted(Collections.singletonList(mediaFile));
+        mediaJobService.enqueueJobs(mediaFile.getId(), jobTypes);
+
+        // 使用MediaTagService处理标签
+        if (tags != null && !tags.isEmpty()) {
+            boolean tagSaved = mediaTagService.saveMediaTags(mediaFile.getId(), tags);
+            if (!tagSaved) {
+                throw new RuntimeException("标签保存失败");
+            }
+        }
+        mediaSearchService.index(mediaFile, tags);
+
+        return buildUploadResult(mediaFile, fileContentType);
+    }
+
+    private MediaFile buildMediaFile(String filePath, String contentHash, String originalFilename, String fileContentType, long fileSize,
+                                     MediaProbe.Result info, String title, String description, Long userId) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setOriginalFileName(originalFilename);
+        mediaFile.setFilePath(filePath);
+        mediaFile.setContentHash(contentHash);
+        mediaFile.setSourceHash(contentHash);
+
+        // 获取文件类型并添加调试日志
+        log.info("文件类型: {}", fileContentType);
+
+        // 优先使用按文件头识别出的类型，客户端声明的类型可能是错的
+        if (info != null) {
+            ProbeJobHandler.apply(mediaFile, info);
+            if (!info.getMimeType().equals(fileContentType)) {
+                log.info("文件类型按文件头修正: {} -> {}", fileContentType, info.getMimeType());
+            }
+            fileContentType = info.getMimeType();
+        }
+
+        // 如果文件类型为null，设置默认值
+        if (fileContentType == null) {
+            log.warn("文件类型为null，使用默认值 'text/plain'");
+            fileContentType = "text/plain";
+        }
+
+        mediaFile.setFileType(fileContentType);
+        mediaFile.setTitle(title);
+        mediaFile.setDescription(description);
+        mediaFile.setUserId(userId);
+        mediaFile.setFileSize(fileSize);
+        mediaFile.setViewCount(0); // 默认0次浏览
+        mediaFile.setStatus(1); // 默认状态为可用
+        return mediaFile;
+    }
+
+    /**
+     * 读文件头获取类型、尺寸等信息，无法识别或读取失败时返回null，不影响上传
+     */
+    private MediaProbe.Result probeQuietly(Path file) {
+        try {
+            return MediaProbe.probe(file);
+        } catch (Exception e) {
+            log.warn("文件头探测失败: {} {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Object> buildUploadResult(MediaFile mediaFile, String declaredContentType) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("fileId", mediaFile.getId());
+        result.put("filePath", mediaFile.getFilePath());
+        result.put("fileType", declaredContentType);
+        result.put("contentHash", mediaFile.getContentHash());
+        result.put("processStatus", mediaFile.getProcessStatus());
+        result.put("mimeType", mediaFile.getMimeType());
+        result.put("width", mediaFile.getWidth());
+        result.put("height", mediaFile.getHeight());
+        result.put("durationMs", mediaFile.getDurationMs());
+        result.put("takenAt", mediaFile.getTakenAt());
+        result.put("createTime", mediaFile.getCreateTime());
+        result.put("userId", mediaFile.getUserId());
+        return result;
+    }
+
+    /**
+     * 创建暂存文件，保证之后可以低成本地存入存储
+     */
+    private Path newStagingFile() throws IOException {
+        return storageBackend.createTempFile();
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}", file);
         }
     }
 
     @Override
     public List<MediaFile> getMyMedia(Long userId, String keyword, int page, int size) {
         int start = (page - 1) * size;
+        SearchResult result = searchIndex(keyword, userId, start, size);
+        if (result != null) {
+            return loadInOrder(result.getIds());
+        }
         return mediaFileMapper.findByUserId(userId, keyword, start, size);
     }
 
     @Override
     public List<MediaFile> getPublicMedia(String keyword, int page, int size) {
         int start = (page - 1) * size;
+        SearchResult result = searchIndex(keyword, null, start, size);
+        if (result != null) {
+            return loadInOrder(result.getIds());
+        }
         return mediaFileMapper.findPublicMedia(keyword, start, size);
     }
 
     @Override
-    public int getMyMediaCount(Long userId, String keyword) {
-        return mediaFileMapper.countByUserId(userId, keyword);
+    public MediaCount getMyMediaCount(Long userId, String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            Long count = mediaCounterService.countByUser(userId);
+            return new MediaCount(count != null ? count.intValue() : mediaFileMapper.countByUserId(userId, null), true);
+        }
+        SearchResult result = searchIndex(keyword, userId, 0, 0);
+        if (result != null) {
+            return new MediaCount(result.getTotal(), true);
+        }
+        return cappedCount(mediaFileMapper.countByUserIdCapped(userId, keyword, keywordCountCap + 1));
     }
 
     @Override
-    public int getPublicMediaCount(String keyword) {
-        return mediaFileMapper.countPublicMedia(keyword);
+    public MediaCount getPublicMediaCount(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            Long count = mediaCounterService.countAll();
+            return new MediaCount(count != null ? count.intValue() : mediaFileMapper.countPublicMedia(null), true);
+        }
+        SearchResult result = searchIndex(keyword, null, 0, 0);
+        if (result != null) {
+            return new MediaCount(result.getTotal(), true);
+        }
+        return cappedCount(mediaFileMapper.countPublicMediaCapped(keyword, keywordCountCap + 1));
+    }
+
+    // 多数一条判断是否超过上限
+    private MediaCount cappedCount(int count) {
+        return count > keywordCountCap ? new MediaCount(keywordCountCap, false) : new MediaCount(count, true);
+    }
+
+    // 有关键词时查全文索引（同时匹配标签，按相关度排序），索引未就绪或关键词无法分词时返回null，走数据库LIKE查询
+    private SearchResult searchIndex(String keyword, Long userId, int offset, int limit) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return null;
+        }
+        return mediaSearchService.search(keyword, userId, offset, limit);
+    }
+
+    // 按索引返回的顺序加载媒体记录
+    private List<MediaFile> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, MediaFile> byId = new HashMap<>();
+        for (MediaFile mediaFile : mediaFileMapper.selectBatchIds(ids)) {
+            byId.put(mediaFile.getId(), mediaFile);
+        }
+        List<MediaFile> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MediaFile mediaFile = byId.get(id);
+            if (mediaFile != null) {
+                ordered.add(mediaFile);
+            }
+        }
+        return ordered;
     }
 
     @Override
     public boolean deleteMedia(Long fileId, Long userId) {
         MediaFile mediaFile = this.getById(fileId);
         if (mediaFile != null && mediaFile.getUserId().equals(userId)) {
-            // 删除文件
-            File file = new File(mediaFile.getFilePath());
-            if (file.exists()) {
-                file.delete();
+            // 先删除数据库记录，再按引用计数决定是否删除文件
+            List<MediaFile> removed = removeRecords(Collections.singletonList(mediaFile));
+            for (MediaFile item : removed) {
+                releaseBlob(item);
             }
-            // 删除数据库记录
-            return this.removeById(fileId);
+            return !removed.isEmpty();
         }
         return false;
     }
 
+    @Override
+    public boolean updateTitleAndDescription(Long id, String title, String description) {
+        return mediaFileMapper.updateTitleAndDescription(id, title, description) > 0;
+    }
+
+    @Override
+    public boolean adminDeleteMedia(Long fileId) {
+        MediaFile mediaFile = this.getById(fileId);
+        if (mediaFile == null) {
+            return false;
+        }
+        List<MediaFile> removed = removeRecords(Collections.singletonList(mediaFile));
+        for (MediaFile item : removed) {
+            releaseBlob(item);
+        }
+        return !removed.isEmpty();
+    }
+
+    /**
+     * 在一个事务中删除媒体记录并扣减计数，返回实际删除的记录（并发删除时已不存在的不重复扣减）
+     */
+    private List<MediaFile> removeRecords(List<MediaFile> mediaFiles) {
+        List<MediaFile> removed = transactionTemplate.execute(status -> {
+            List<MediaFile> deleted = new ArrayList<>();
+            for (MediaFile mediaFile : mediaFiles) {
+                if (this.removeById(mediaFile.getId())) {
+                    deleted.add(mediaFile);
+                }
+            }
+            mediaCounterService.recordDeleted(deleted);
+            return deleted;
+        });
+        return removed == null ? new ArrayList<>() : removed;
+    }
+
     @Override
     public MediaFile getMediaDetail(Long fileId) {
         MediaFile mediaFile = this.getById(fileId);
         if (mediaFile != null) {
-            // 获取媒体文件的标签名称列表
-            List<String> tagNames = mediaTagService.getTagNamesByMediaId(fileId);
+            // 获取媒体文件的标签，同时返回数组和逗号分隔的字符串（兼容旧客户端）
+            mediaTagService.fillTagLists(Collections.singletonList(mediaFile));
+            List<String> tagNames = new ArrayList<>();
+            for (Tag tag : mediaFile.getTagList()) {
+                tagNames.add(tag.getTagName());
+            }
             if (!tagNames.isEmpty()) {
-                // 将标签名称列表转换为逗号分隔的字符串
-                String tags = String.join(", ", tagNames);
-                mediaFile.setTags(tags);
+                mediaFile.setTags(String.join(", ", tagNames));
             }
         }
         return mediaFile;
@@ -182,29 +1087,76 @@ public class MediaFileServiceImpl extends ServiceImpl<MediaFileMapper, MediaFile
 
     @Override
     public boolean batchDeleteMedia(List<Long> fileIds) {
-        for (Long fileId : fileIds) {
-            MediaFile mediaFile = this.getById(fileId);
-            if (mediaFile != null) {
-                // 删除文件
-                File file = new File(mediaFile.getFilePath());
-                if (file.exists()) {
-                    file.delete();
-                }
-            }
+        if (fileIds == null || fileIds.isEmpty()) {
+            return false;
         }
+        List<MediaFile> mediaFiles = this.listByIds(fileIds);
         // 批量删除数据库记录
-        return this.removeByIds(fileIds);
+        List<MediaFile> removed = removeRecords(mediaFiles);
+        // 记录删除后再释放文件，同内容的其他媒体仍在引用时保留文件
+        for (MediaFile mediaFile : removed) {
+            releaseBlob(mediaFile);
+        }
+        return !removed.isEmpty();
     }
-    
+
     @Override
     public List<MediaFile> getRecentMedia(int page, int limit) {
         // 计算偏移量
         int offset = (page - 1) * limit;
         return mediaFileMapper.findRecentMediaWithUser(offset, limit);
     }
-    
+
     @Override
     public int getRecentMediaCount() {
-        return mediaFileMapper.countRecentMedia();
+        Long count = mediaCounterService.countAll();
+        return count != null ? count.intValue() : mediaFileMapper.countRecentMedia();
+    }
+
+    @Override
+    public CursorPage getMyMediaPage(Long userId, String keyword, String cursor, int size) {
+        rejectKeyword(keyword);
+        PageCursor after = PageCursor.decode(cursor);
+        // 多取一条判断是否还有下一页
+        List<MediaFile> rows = mediaFileMapper.findByUserIdAfter(userId,
+                after != null ? after.getCreateTime() : null, after != null ? after.getId() : null, pageSize(size) + 1);
+        return toCursorPage(rows, pageSize(size));
+    }
+
+    @Override
+    public CursorPage getPublicMediaPage(String keyword, String cursor, int size) {
+        rejectKeyword(keyword);
+        PageCursor after = PageCursor.decode(cursor);
+        List<MediaFile> rows = mediaFileMapper.findPublicMediaAfter(
+                after != null ? after.getCreateTime() : null, after != null ? after.getId() : null, pageSize(size) + 1);
+        return toCursorPage(rows, pageSize(size));
+    }
+
+    @Override
+    public CursorPage getRecentMediaPage(String cursor, int limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        List<MediaFile> rows = mediaFileMapper.findRecentMediaWithUserAfter(
+                after != null ? after.getCreateTime() : null, after != null ? after.getId() : null, pageSize(limit) + 1);
+        return toCursorPage(rows, pageSize(limit));
+    }
+
+    // 游标按 (create_time, id) 定位，关键词结果按相关度排序，两者不能混用
+    private static void rejectKeyword(String keyword) {
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("关键词搜索不支持游标分页，请使用page参数");
+        }
+    }
+
+    private int pageSize(int size) {
+        return Math.min(Math.max(1, size), maxPageSize);
+    }
+
+    private CursorPage toCursorPage(List<MediaFile> rows, int size) {
+        if (rows.size() <= size) {
+            return new CursorPage(rows, null);
+        }
+        List<MediaFile> items = new ArrayList<>(rows.subList(0, size));
+        MediaFile last = items.get(items.size() - 1);
+        return new CursorPage(items, new PageCursor(last.getCreateTime(), last.getId()).encode());
     }
-}
\ No newline at end of file
+}
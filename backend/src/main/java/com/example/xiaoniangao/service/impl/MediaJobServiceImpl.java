@@ -0,0 +1,165 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaJob;
+import com.example.xiaoniangao.job.MediaJobHandler;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.mapper.MediaJobMapper;
+import com.example.xiaoniangao.service.MediaJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Order(0)
+public class MediaJobServiceImpl extends ServiceImpl<MediaJobMapper, MediaJob> implements MediaJobService, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaJobServiceImpl.class);
+
+    @Autowired
+    private MediaJobMapper mediaJobMapper;
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private List<MediaJobHandler> handlers = Collections.emptyList();
+
+    @Value("${media.job.max-attempts:5}")
+    private int maxAttempts;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 应用启动时自动检查并创建media_job表
+        initJobTable();
+    }
+
+    private void initJobTable() {
+        try {
+            List<String> tables = jdbcTemplate.queryForList("SHOW TABLES LIKE 'media_job'", String.class);
+            if (tables.isEmpty()) {
+                String createTableSql = "CREATE TABLE media_job (" +
+                        "id bigint primary key auto_increment comment '自增ID'," +
+                        "media_id bigint not null comment '媒体ID'," +
+                        "job_type varchar(32) not null comment '任务类型'," +
+                        "status tinyint not null default 0 comment '0待执行 1执行中 2成功 3失败'," +
+                        "attempts int not null default 0 comment '已执行次数'," +
+                        "max_attempts int not null default 5 comment '最大执行次数'," +
+                        "next_run_time datetime not null comment '最早可执行时间'," +
+                        "last_error varchar(500) null comment '最近一次错误'," +
+                        "create_time timestamp default current_timestamp comment '创建时间'," +
+                        "update_time timestamp default current_timestamp on update current_timestamp comment '更新时间'" +
+                        ") comment '媒体后台处理任务表';";
+                jdbcTemplate.execute(createTableSql);
+
+                // 调度器按状态和执行时间轮询
+                jdbcTemplate.execute("ALTER TABLE media_job ADD INDEX idx_media_job_status_next_run(status, next_run_time);");
+                jdbcTemplate.execute("ALTER TABLE media_job ADD INDEX idx_media_job_media_id(media_id);");
+            }
+            // 调度器按类型分别拉取到期任务，某类任务积压时不影响其他类型
+            if (jdbcTemplate.queryForList("SHOW INDEX FROM media_job WHERE Key_name = 'idx_media_job_status_type_next_run'").isEmpty()) {
+                jdbcTemplate.execute("ALTER TABLE media_job ADD INDEX idx_media_job_status_type_next_run(status, job_type, next_run_time);");
+            }
+        } catch (Exception e) {
+            log.error("media_job表初始化失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> resolveJobTypes(MediaFile mediaFile) {
+        List<String> jobTypes = new ArrayList<>();
+        if (handlers == null) {
+            return jobTypes;
+        }
+        for (MediaJobHandler handler : handlers) {
+            if (handler.supports(mediaFile)) {
+                jobTypes.add(handler.getJobType());
+            }
+        }
+        return jobTypes;
+    }
+
+    @Override
+    public void enqueueJobs(Long mediaId, List<String> jobTypes) {
+        if (mediaId == null) {
+            return;
+        }
+        enqueueJobs(Collections.singletonMap(mediaId, jobTypes));
+    }
+
+    @Override
+    public void enqueueJobs(Map<Long, List<String>> jobTypesByMedia) {
+        List<MediaJob> jobs = new ArrayList<>();
+        Date now = new Date();
+        for (Map.Entry<Long, List<String>> entry : jobTypesByMedia.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            for (String jobType : entry.getValue()) {
+                MediaJob job = new MediaJob();
+                job.setMediaId(entry.getKey());
+                job.setJobType(jobType);
+                job.setStatus(MediaJob.STATUS_PENDING);
+                job.setAttempts(0);
+                job.setMaxAttempts(maxAttempts);
+                job.setNextRunTime(now);
+                jobs.add(job);
+            }
+        }
+        if (!jobs.isEmpty()) {
+            this.saveBatch(jobs);
+        }
+    }
+
+    @Override
+    public void refreshProcessStatus(Long mediaId) {
+        if (mediaJobMapper.countUnfinishedByMediaId(mediaId) > 0) {
+            return;
+        }
+        int status = mediaJobMapper.countFailedByMediaId(mediaId) > 0
+                ? MediaFile.PROCESS_FAILED : MediaFile.PROCESS_DONE;
+        mediaFileMapper.updateProcessStatus(mediaId, status);
+    }
+
+    @Override
+    public Map<String, Object> getJobStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (Map<String, Object> row : mediaJobMapper.countGroupByTypeAndStatus()) {
+            String jobType = String.valueOf(row.get("jobType"));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> byStatus = (Map<String, Object>) stats.computeIfAbsent(jobType, k -> new HashMap<String, Object>());
+            byStatus.put(statusName(((Number) row.get("status")).intValue()), row.get("total"));
+        }
+        return stats;
+    }
+
+    private String statusName(int status) {
+        switch (status) {
+            case MediaJob.STATUS_PENDING:
+                return "pending";
+            case MediaJob.STATUS_RUNNING:
+                return "running";
+            case MediaJob.STATUS_SUCCESS:
+                return "success";
+            default:
+                return "failed";
+        }
+    }
+}
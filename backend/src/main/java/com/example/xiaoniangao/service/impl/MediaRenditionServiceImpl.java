@@ -0,0 +1,146 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.entity.MediaRendition;
+import com.example.xiaoniangao.mapper.MediaRenditionMapper;
+import com.example.xiaoniangao.service.MediaRenditionService;
+import com.example.xiaoniangao.storage.ByteCache;
+import com.example.xiaoniangao.storage.StorageBackend;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class MediaRenditionServiceImpl extends ServiceImpl<MediaRenditionMapper, MediaRendition> implements MediaRenditionService, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaRenditionServiceImpl.class);
+
+    @Autowired
+    private MediaRenditionMapper mediaRenditionMapper;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private ByteCache byteCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${media.cover.sizes:200,400,800}")
+    private List<Integer> sizes;
+
+    private List<Integer> sortedSizes;
+
+    @PostConstruct
+    public void init() {
+        sortedSizes = new ArrayList<>(sizes);
+        Collections.sort(sortedSizes);
+        sortedSizes = Collections.unmodifiableList(sortedSizes);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 应用启动时自动检查并创建media_rendition表
+        initRenditionTable();
+    }
+
+    private void initRenditionTable() {
+        try {
+            List<String> tables = jdbcTemplate.queryForList("SHOW TABLES LIKE 'media_rendition'", String.class);
+            if (tables.isEmpty()) {
+                String createTableSql = "CREATE TABLE media_rendition (" +
+                        "id bigint primary key auto_increment comment '自增ID'," +
+                        "media_id bigint not null comment '媒体ID'," +
+                        "width int not null comment '宽度'," +
+                        "height int not null comment '高度'," +
+                        "file_path varchar(500) not null comment '缩略图文件'," +
+                        "file_size bigint not null comment '文件大小'," +
+                        "create_time timestamp default current_timestamp comment '创建时间'" +
+                        ") comment '媒体缩略图表';";
+                jdbcTemplate.execute(createTableSql);
+                jdbcTemplate.execute("ALTER TABLE media_rendition ADD INDEX idx_media_rendition_media_id(media_id, width);");
+            }
+        } catch (Exception e) {
+            log.error("media_rendition表初始化失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Integer> getSizes() {
+        return sortedSizes;
+    }
+
+    @Override
+    public String renditionKey(String originalKey, int width) {
+        return FilenameUtils.removeExtension(originalKey) + "_" + width + ".jpg";
+    }
+
+    @Override
+    @Transactional
+    public void replaceRenditions(Long mediaId, List<MediaRendition> renditions) {
+        mediaRenditionMapper.deleteByMediaId(mediaId);
+        if (!renditions.isEmpty()) {
+            this.saveBatch(renditions);
+        }
+    }
+
+    @Override
+    public void deleteByMediaId(Long mediaId) {
+        mediaRenditionMapper.deleteByMediaId(mediaId);
+    }
+
+    @Override
+    public void deleteRenditionFiles(String originalKey) {
+        for (Integer width : sortedSizes) {
+            String key = renditionKey(originalKey, width);
+            storageBackend.delete(key);
+            byteCache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void fillCovers(List<MediaFile> mediaList, int thumbWidth) {
+        if (mediaList == null || mediaList.isEmpty()) {
+            return;
+        }
+        List<Long> mediaIds = new ArrayList<>();
+        for (MediaFile mediaFile : mediaList) {
+            mediaIds.add(mediaFile.getId());
+        }
+        // 一次查询整页的缩略图，按媒体分组（已按宽度升序）
+        Map<Long, List<MediaRendition>> grouped = new HashMap<>();
+        for (MediaRendition rendition : mediaRenditionMapper.findByMediaIds(mediaIds)) {
+            grouped.computeIfAbsent(rendition.getMediaId(), k -> new ArrayList<>()).add(rendition);
+        }
+        for (MediaFile mediaFile : mediaList) {
+            List<MediaRendition> renditions = grouped.get(mediaFile.getId());
+            if (renditions == null) {
+                continue;
+            }
+            MediaRendition chosen = renditions.get(renditions.size() - 1);
+            for (MediaRendition rendition : renditions) {
+                if (rendition.getWidth() >= thumbWidth) {
+                    chosen = rendition;
+                    break;
+                }
+            }
+            mediaFile.setCoverPath(chosen.getFilePath());
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.search.InvertedIndex;
+import com.example.xiaoniangao.search.PinyinText;
+import com.example.xiaoniangao.service.MediaSearchService;
+import com.example.xiaoniangao.util.SearchTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内的媒体全文索引，替代 LIKE '%关键词%' 的全表扫描。
+ * 启动时后台按ID分批从数据库读取标题、描述和标签并行分词建索引，建好之前搜索返回null由调用方走数据库；
+ * 建索引期间的新增、修改和删除先记下媒体ID，索引就绪后从数据库重新读取补上。
+ * 修改和删除只标记旧文档，倒排表中的旧记录定期整理时清除。
+ * 标题和标签同时转写拼音，关键词含拉丁字母时也按全拼和首字母匹配
+ */
+@Service
+@Order(20)
+public class MediaSearchServiceImpl implements MediaSearchService, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaSearchServiceImpl.class);
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${media.search.enabled:true}")
+    private boolean enabled;
+
+    // 启动建索引时每批读取的媒体数
+    @Value("${media.search.build-batch-size:5000}")
+    private int buildBatchSize;
+
+    // 启动建索引时分词的并行线程数，0表示CPU核数
+    @Value("${media.search.build-threads:0}")
+    private int buildThreads;
+
+    // 已删除文档数达到有效文档数的该比例时整理倒排表
+    @Value("${media.search.compact-ratio:0.1}")
+    private double compactRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 索引建好之前为null
+    private InvertedIndex index;
+
+    // 建索引期间发生变化的媒体ID，由写锁保护
+    private final Set<Long> pending = new LinkedHashSet<>();
+
+    // 删除版本号，每次删除加一。读取媒体内容前记下当前版本，写入索引时若该媒体在此之后被删除则丢弃，
+    // 避免读库和写索引之间提交的删除被旧内容覆盖回来。以下三项都由写锁保护
+    private long removeVersion;
+    // 读取中的起始版本 -> 个数
+    private final TreeMap<Long, Integer> readingVersions = new TreeMap<>();
+    // 有读取进行时被删除的媒体ID -> 删除时的版本，早于所有进行中读取的记录随时清除
+    private final Map<Long, Long> removedVersions = new HashMap<>();
+
+    private volatile long buildMillis = -1;
+    private volatile long lastCompactMillis = -1;
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        // 数据量大时建索引需要一段时间，不阻塞启动
+        Thread builder = new Thread(this::build, "media-search-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void build() {
+        long begin = System.currentTimeMillis();
+        InvertedIndex built = new InvertedIndex();
+        int threads = buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long afterId = 0;
+            while (true) {
+                List<MediaFile> rows = jdbcTemplate.query(
+                        "SELECT id, user_id, title, description, create_time FROM media WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> {
+                            MediaFile mediaFile = new MediaFile();
+                            mediaFile.setId(rs.getLong("id"));
+                            mediaFile.setUserId(rs.getLong("user_id"));
+                            mediaFile.setTitle(rs.getString("title"));
+                            mediaFile.setDescription(rs.getString("description"));
+                            mediaFile.setCreateTime(rs.getTimestamp("create_time"));
+                            return mediaFile;
+                        }, afterId, buildBatchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                long firstId = rows.get(0).getId();
+                long lastId = rows.get(rows.size() - 1).getId();
+                Map<Long, StringBuilder> tags = loadTagNames(firstId, lastId);
+                // 分词是CPU密集的，按批并行；写入索引在当前线程顺序进行
+                List<Document> documents = pool.submit(() -> rows.parallelStream()
+                        .map(mediaFile -> {
+                            StringBuilder tagNames = tags.get(mediaFile.getId());
+                            return toDocument(mediaFile, tagNames == null ? null : tagNames.toString());
+                        })
+                        .collect(Collectors.toList())).get();
+                for (Document document : documents) {
+                    document.putInto(built);
+                }
+                afterId = lastId;
+            }
+        } catch (Exception e) {
+            log.error("媒体搜索索引构建失败，关键词搜索继续使用数据库查询: " + e.getMessage(), e);
+            return;
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Long> changed;
+        lock.writeLock().lock();
+        try {
+            index = built;
+            changed = new ArrayList<>(pending);
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Long mediaId : changed) {
+            reindex(mediaId);
+        }
+        buildMillis = System.currentTimeMillis() - begin;
+        log.info("媒体搜索索引构建完成: 媒体{}条, 词项{}个, 补充变更{}条, 耗时{}ms",
+                built.docCount(), built.termCount(), changed.size(), buildMillis);
+    }
+
+    private Map<Long, StringBuilder> loadTagNames(long firstId, long lastId) {
+        Map<Long, StringBuilder> tags = new HashMap<>();
+        jdbcTemplate.query("SELECT mt.media_id, t.tag_name FROM media_tag mt INNER JOIN tag t ON t.id = mt.tag_id " +
+                        "WHERE mt.media_id BETWEEN ? AND ?",
+                rs -> {
+                    tags.computeIfAbsent(rs.getLong(1), k -> new StringBuilder()).append(rs.getString(2)).append(',');
+                }, firstId, lastId);
+        return tags;
+    }
+
+    @Override
+    public SearchResult search(String keyword, Long userId, int offset, int limit) {
+        List<String> terms = SearchTokenizer.queryTerms(keyword);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        boolean prefix = SearchTokenizer.endsWithWord(keyword);
+        // 含拉丁字母的关键词可能是拼音或首字母，同时按拼音匹配标题和标签
+        char[] pinyinQuery = PinyinText.normalizeQuery(keyword);
+        if (pinyinQuery != null && !PinyinText.hasLatin(pinyinQuery)) {
+            pinyinQuery = null;
+        }
+        long begin = System.nanoTime();
+        InvertedIndex.Result result;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return null;
+            }
+            result = index.search(terms, prefix, pinyinQuery, userId, Math.max(0, offset), Math.max(0, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - begin);
+        return new SearchResult(result.getIds(), result.getTotal());
+    }
+
+    @Override
+    public void index(MediaFile mediaFile, String tags) {
+        if (!enabled || mediaFile == null || mediaFile.getId() == null) {
+            return;
+        }
+        Document document = toDocument(mediaFile, tags);
+        long version = beginRead();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 事务回滚时记录不存在，不能进索引
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    apply(status == STATUS_COMMITTED ? document : null, version);
+                }
+            });
+        } else {
+            apply(document, version);
+        }
+    }
+
+    @Override
+    public void reindex(Long mediaId) {
+        if (!enabled || mediaId == null) {
+            return;
+        }
+        long version = beginRead();
+        Document document = null;
+        try {
+            MediaFile mediaFile = mediaFileMapper.selectById(mediaId);
+            if (mediaFile == null) {
+                remove(mediaId);
+                return;
+            }
+            List<String> tagNames = jdbcTemplate.queryForList("SELECT t.tag_name FROM media_tag mt INNER JOIN tag t ON t.id = mt.tag_id " +
+                    "WHERE mt.media_id = ?", String.class, mediaId);
+            document = toDocument(mediaFile, String.join(",", tagNames));
+        } finally {
+            apply(document, version);
+        }
+    }
+
+    @Override
+    public void remove(Long mediaId) {
+        if (!enabled || mediaId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeVersion++;
+            if (!readingVersions.isEmpty()) {
+                removedVersions.put(mediaId, removeVersion);
+            }
+            if (index == null) {
+                pending.add(mediaId);
+            } else {
+                index.remove(mediaId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 读取媒体内容前调用，返回的版本必须交给 {@link #apply} 结束
+     */
+    private long beginRead() {
+        lock.writeLock().lock();
+        try {
+            readingVersions.merge(removeVersion, 1, Integer::sum);
+            return removeVersion;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入读取到的内容并结束读取；document为null时只结束读取。媒体在读取开始后被删除时不写入
+     */
+    private void apply(Document document, long version) {
+        lock.writeLock().lock();
+        try {
+            if (readingVersions.merge(version, -1, Integer::sum) == 0) {
+                readingVersions.remove(version);
+            }
+            if (document != null) {
+                Long removedAt = removedVersions.get(document.id);
+                if (removedAt == null || removedAt <= version) {
+                    if (index == null) {
+                        pending.add(document.id);
+                    } else {
+                        document.putInto(index);
+                    }
+                }
+            }
+            if (readingVersions.isEmpty()) {
+                removedVersions.clear();
+            } else if (!removedVersions.isEmpty()) {
+                long oldest = readingVersions.firstKey();
+                removedVersions.values().removeIf(removedAt -> removedAt <= oldest);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 定期整理倒排表，去掉修改和删除留下的旧记录。整理期间持有写锁，耗时与倒排表总大小成正比
+     */
+    @Scheduled(fixedDelayString = "${media.search.compact-interval-ms:60000}", initialDelayString = "${media.search.compact-interval-ms:60000}")
+    public void compact() {
+        lock.readLock().lock();
+        try {
+            if (index == null || index.deletedCount() == 0 || index.deletedCount() < index.docCount() * compactRatio) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long begin = System.currentTimeMillis();
+        int deleted;
+        lock.writeLock().lock();
+        try {
+            deleted = index.deletedCount();
+            index.compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastCompactMillis = System.currentTimeMillis() - begin;
+        log.info("媒体搜索索引整理完成: 清除旧文档{}个, 耗时{}ms", deleted, lastCompactMillis);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("enabled", enabled);
+            stats.put("ready", index != null);
+            if (index != null) {
+                stats.put("documents", index.docCount());
+                stats.put("terms", index.termCount());
+                stats.put("postingBytes", index.postingBytes());
+                stats.put("deletedDocuments", index.deletedCount());
+            } else {
+                stats.put("pending", pending.size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = queries.get();
+        stats.put("buildMillis", buildMillis);
+        stats.put("lastCompactMillis", lastCompactMillis);
+        stats.put("queries", count);
+        stats.put("avgQueryMillis", count == 0 ? 0 : queryNanos.get() / count / 1e6);
+        return stats;
+    }
+
+    private static Document toDocument(MediaFile mediaFile, String tags) {
+        Set<String> body = SearchTokenizer.indexTerms(mediaFile.getDescription());
+        body.addAll(SearchTokenizer.indexTerms(tags));
+        return new Document(mediaFile.getId(), mediaFile.getUserId() == null ? 0 : mediaFile.getUserId(),
+                mediaFile.getCreateTime() == null ? 0 : mediaFile.getCreateTime().getTime(),
+                SearchTokenizer.indexTerms(mediaFile.getTitle()), body,
+                PinyinText.of(mediaFile.getTitle()), PinyinText.ofTags(tags));
+    }
+
+    /**
+     * 一个媒体分好词的索引内容
+     */
+    private static class Document {
+        final long id;
+        final long userId;
+        final long createTime;
+        final Set<String> titleTerms;
+        final Set<String> bodyTerms;
+        final PinyinText titlePinyin;
+        final PinyinText tagPinyin;
+
+        Document(long id, long userId, long createTime, Set<String> titleTerms, Set<String> bodyTerms,
+                 PinyinText titlePinyin, PinyinText tagPinyin) {
+            this.id = id;
+            this.userId = userId;
+            this.createTime = createTime;
+            this.titleTerms = titleTerms;
+            this.bodyTerms = bodyTerms;
+            this.titlePinyin = titlePinyin;
+            this.tagPinyin = tagPinyin;
+        }
+
+        void putInto(InvertedIndex target) {
+            target.put(id, userId, createTime, titleTerms, bodyTerms, titlePinyin, tagPinyin);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.service.MediaStreamService;
+import com.example.xiaoniangao.storage.ByteCache;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.util.HashUtils;
+import com.example.xiaoniangao.util.AsyncBodyWriter;
+import com.example.xiaoniangao.util.AsyncBodyWriter.Part;
+import com.example.xiaoniangao.util.AsyncBodyWriter.RangeReader;
+import com.example.xiaoniangao.util.HttpRange;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class MediaStreamServiceImpl implements MediaStreamService {
+
+    // Tomcat的sendfile请求属性（NIO连接器默认开启），设置后由容器直接把文件发到socket
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    // 异步输出时每个连接的缓冲区大小，连接数多时总占用 = 该值 × 异步输出数
+    private static final int ASYNC_BUFFER_SIZE = 64 * 1024;
+    // 从内存缓存输出时每次复制到堆内的块大小
+    private static final int MEMORY_CHUNK_SIZE = 64 * 1024;
+
+    // 按内容寻址的URL内容永远不变，浏览器和代理缓存一年且不再验证
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    // 按ID访问的内容可能被改写（如视频前置moov），每次用ETag验证，未变化时只返回304
+    private static final String CACHE_REVALIDATE = "public, no-cache";
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private ByteCache byteCache;
+
+    // 单个请求最多的区间数，超过时忽略Range头
+    @Value("${media.stream.max-ranges:16}")
+    private int maxRanges;
+
+    // 不小于该大小的区间交给容器sendfile发送，更小的直接写更省事
+    @Value("${media.stream.sendfile-min-size:48KB}")
+    private DataSize sendfileMinSize;
+
+    // 不小于该大小且不能sendfile的响应体异步输出
+    @Value("${media.stream.async-min-size:64KB}")
+    private DataSize asyncMinSize;
+
+    // 同时进行的异步输出数上限，与Tomcat请求线程数无关
+    @Value("${media.stream.max-async-streams:1000}")
+    private int maxAsyncStreams;
+
+    // 单个异步输出的最长时间，超时后断开
+    @Value("${media.stream.async-timeout:2h}")
+    private Duration asyncTimeout;
+
+    @Value("${media.stream.metadata-cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    // 缓存有效期，媒体类型等被后台任务更新后最迟在这个时间后生效
+    @Value("${media.stream.metadata-cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    // 元数据缓存：媒体ID/存储键 -> 元数据，按访问顺序淘汰，所有访问在同一把锁下进行
+    private final Object cacheLock = new Object();
+    private LinkedHashMap<Long, StreamTarget> byId;
+    private LinkedHashMap<String, StreamTarget> byKey;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final LongAdder asyncStreams = new LongAdder();
+    private final LongAdder rejectedStreams = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        byId = newLruMap();
+        byKey = newLruMap();
+    }
+
+    private <K> LinkedHashMap<K, StreamTarget> newLruMap() {
+        return new LinkedHashMap<K, StreamTarget>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, StreamTarget> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    @Override
+    public StreamTarget findById(Long mediaId) {
+        synchronized (cacheLock) {
+            StreamTarget cached = fresh(byId.get(mediaId));
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        cacheMisses.increment();
+        MediaFile mediaFile = mediaFileMapper.selectById(mediaId);
+        if (mediaFile == null || mediaFile.getFilePath() == null) {
+            return null;
+        }
+        StreamTarget target = new StreamTarget(mediaFile.getId(), mediaFile.getFilePath(), mediaFile.getContentHash(),
+                mediaFile.getFileType(), mediaFile.getTitle());
+        synchronized (cacheLock) {
+            byId.put(mediaId, target);
+        }
+        return target;
+    }
+
+    @Override
+    public StreamTarget findByKey(String storageKey) {
+        synchronized (cacheLock) {
+            StreamTarget cached = fresh(byKey.get(storageKey));
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        cacheMisses.increment();
+        if (!storageBackend.exists(storageKey)) {
+            return null;
+        }
+        // 原文件的存储键以内容哈希开头，按哈希索引找到引用它的媒体记录
+        StreamTarget target = null;
+        String baseName = FilenameUtils.getBaseName(storageKey);
+        if (HashUtils.isSha256Hex(baseName)) {
+            MediaFile mediaFile = mediaFileMapper.findOneByContentHash(baseName);
+            if (mediaFile != null && storageKey.equals(mediaFile.getFilePath())) {
+                target = new StreamTarget(mediaFile.getId(), storageKey, baseName, mediaFile.getFileType(), mediaFile.getTitle());
+            }
+        }
+        if (target == null) {
+            // 缩略图或旧数据，按扩展名判断类型
+            target = new StreamTarget(null, storageKey, null, contentTypeOf(storageKey), null);
+        }
+        synchronized (cacheLock) {
+            byKey.put(storageKey, target);
+        }
+        return target;
+    }
+
+    @Override
+    public StreamTarget describeKey(String storageKey) {
+        String baseName = FilenameUtils.getBaseName(storageKey);
+        return new StreamTarget(null, storageKey, HashUtils.isSha256Hex(baseName) ? baseName : null,
+                contentTypeOf(storageKey), null);
+    }
+
+    private String contentTypeOf(String storageKey) {
+        return MediaTypeFactory.getMediaType(storageKey).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    @Override
+    public void evict(Long mediaId, String storageKey) {
+        synchronized (cacheLock) {
+            if (mediaId != null) {
+                byId.remove(mediaId);
+            }
+            if (storageKey != null) {
+                byKey.remove(storageKey);
+                // 文件被替换时引用它的所有媒体都要失效
+                byId.values().removeIf(target -> storageKey.equals(target.getStorageKey()));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (cacheLock) {
+            stats.put("cachedMedia", byId.size());
+            stats.put("cachedKeys", byKey.size());
+        }
+        stats.put("maxEntries", cacheMaxEntries);
+        stats.put("hits", cacheHits.sum());
+        stats.put("misses", cacheMisses.sum());
+        stats.put("activeAsyncStreams", activeStreams.get());
+        stats.put("maxAsyncStreams", maxAsyncStreams);
+        stats.put("asyncStreams", asyncStreams.sum());
+        stats.put("rejectedStreams", rejectedStreams.sum());
+        return stats;
+    }
+
+    private StreamTarget fresh(StreamTarget target) {
+        if (target == null || System.currentTimeMillis() - target.getLoadTime() > cacheTtlSeconds * 1000) {
+            return null;
+        }
+        return target;
+    }
+
+    @Override
+    public void serve(String storageKey, String contentHash, String contentType, String contentDisposition, boolean immutable,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = storageBackend.size(storageKey);
+        if (size < 0) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String etag = buildEtag(storageKey, contentHash, size);
+        long lastModified = storageBackend.lastModified(storageKey);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        // 设置ETag/Last-Modified，条件请求命中时已设置304状态
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 按存储的类型输出，不允许浏览器再猜测（避免上传的HTML等被当作页面执行）
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+        boolean head = "HEAD".equals(request.getMethod());
+
+        // If-Range不匹配说明客户端手里的部分内容已过期，返回完整内容
+        String rangeHeader = ifRangeMatches(request, etag, lastModified) ? request.getHeader(HttpHeaders.RANGE) : null;
+        List<HttpRange> ranges = HttpRange.parse(rangeHeader, size, maxRanges);
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setContentLength(0);
+            return;
+        }
+        // 小文件从内存缓存输出，没有缓存时为null
+        ByteBuffer cached = head ? null : cachedContent(storageKey, size);
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(size);
+            if (!head && size > 0) {
+                writeBody(storageKey, cached, Collections.singletonList(new Part(null, 0, size)), null, request, response);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+            response.setContentLengthLong(range.getLength());
+            if (!head) {
+                writeBody(storageKey, cached, Collections.singletonList(new Part(null, range.getStart(), range.getLength())),
+                        null, request, response);
+            }
+            return;
+        }
+
+        // 多区间：multipart/byteranges，先算出总长度，客户端可以据此判断是否完整
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<Part> parts = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (HttpRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            parts.add(new Part(partHeader, range.getStart(), range.getLength()));
+            contentLength += partHeader.length + range.getLength();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (!head) {
+            writeBody(storageKey, cached, parts, end, request, response);
+        }
+    }
+
+    /**
+     * 强ETag：有内容哈希时直接使用，旧数据用存储键和大小
+     */
+    private String buildEtag(String storageKey, String contentHash, long size) {
+        if (contentHash != null) {
+            return "\"" + contentHash + "\"";
+        }
+        return "\"" + storageKey.replace("\"", "") + "-" + size + "\"";
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range要求强比较，弱ETag永远不匹配
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date >= 0 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 不超过内存缓存单个文件上限的文件整个读入缓存，之后的请求不再读磁盘。
+     * 文件刚好在迁移或已被删除时返回null，按原方式读取
+     */
+    private ByteBuffer cachedContent(String storageKey, long size) {
+        if (size <= 0 || size > byteCache.getMaxObjectSize()) {
+            return null;
+        }
+        try {
+            ByteBuffer data = byteCache.getOrLoad(storageKey, () -> loadContent(storageKey, (int) size));
+            return data != null && data.remaining() == size ? data : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private ByteBuffer loadContent(String storageKey, int size) throws IOException {
+        Path local = storageBackend.localPath(storageKey);
+        if (local != null) {
+            try {
+                return ByteCache.read(local, size);
+            } catch (NoSuchFileException e) {
+                // 文件刚好在冷热存储间迁移，改用存储接口读取
+            }
+        }
+        try (InputStream in = storageBackend.get(storageKey)) {
+            return ByteCache.read(in, size);
+        }
+    }
+
+    /**
+     * 输出响应体：单个区间且足够大的本地文件交给容器sendfile（零拷贝）；
+     * 较大的响应用非阻塞IO异步输出，只在socket可写时占用线程；其余直接在请求线程中写出
+     */
+    private void writeBody(String storageKey, ByteBuffer cached, List<Part> parts, byte[] trailer,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path local = storageBackend.localPath(storageKey);
+        long bodyLength = trailer != null ? trailer.length : 0;
+        for (Part part : parts) {
+            bodyLength += part.getLength() + (part.getPrefix() != null ? part.getPrefix().length : 0);
+        }
+        if (cached == null && local != null && parts.size() == 1 && bodyLength >= sendfileMinSize.toBytes()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            Part part = parts.get(0);
+            request.setAttribute(SENDFILE_FILENAME_ATTR, local.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, part.getStart());
+            request.setAttribute(SENDFILE_END_ATTR, part.getStart() + part.getLength());
+            return;
+        }
+        if (bodyLength >= asyncMinSize.toBytes() && request.isAsyncSupported()) {
+            RangeReader reader = openReader(cached, local);
+            if (reader != null) {
+                writeAsync(reader, parts, trailer, request, response);
+                return;
+            }
+        }
+        OutputStream out = response.getOutputStream();
+        for (Part part : parts) {
+            if (part.getPrefix() != null) {
+                out.write(part.getPrefix());
+            }
+            if (cached != null) {
+                writeBuffer(cached, part.getStart(), part.getLength(), out);
+            } else {
+                copyRange(storageKey, local, part.getStart(), part.getLength(), out);
+            }
+        }
+        if (trailer != null) {
+            out.write(trailer);
+        }
+        out.flush();
+    }
+
+    /**
+     * 异步输出，同时进行的异步输出数达到上限时返回503，避免打开过多文件和缓冲区
+     */
+    private void writeAsync(RangeReader reader, List<Part> parts, byte[] trailer,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (activeStreams.incrementAndGet() > maxAsyncStreams) {
+            activeStreams.decrementAndGet();
+            rejectedStreams.increment();
+            reader.close();
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            return;
+        }
+        asyncStreams.increment();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                activeStreams.decrementAndGet();
+            }
+        };
+        try {
+            AsyncBodyWriter.start(request, response, reader, parts, trailer, asyncTimeout.toMillis(),
+                    ASYNC_BUFFER_SIZE, release);
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 按位置读取内容的来源：内存缓存或本地文件；文件刚好在迁移中时返回null，改为同步读取
+     */
+    private RangeReader openReader(ByteBuffer cached, Path local) throws IOException {
+        if (cached != null) {
+            return new RangeReader() {
+                @Override
+                public int read(long position, byte[] buffer, int length) {
+                    if (position >= cached.limit()) {
+                        return -1;
+                    }
+                    ByteBuffer view = cached.duplicate();
+                    view.position((int) position);
+                    int n = Math.min(length, view.remaining());
+                    view.get(buffer, 0, n);
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+        if (local == null) {
+            return null;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(local, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return new RangeReader() {
+            @Override
+            public int read(long position, byte[] buffer, int length) throws IOException {
+                return channel.read(ByteBuffer.wrap(buffer, 0, length), position);
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private void writeBuffer(ByteBuffer data, long start, long length, OutputStream out) throws IOException {
+        ByteBuffer range = data.duplicate();
+        range.position((int) start);
+        range.limit((int) (start + length));
+        // Servlet输出流只接受byte[]，分块从堆外复制
+        byte[] chunk = new byte[(int) Math.min(MEMORY_CHUNK_SIZE, length)];
+        while (range.hasRemaining()) {
+            int n = Math.min(chunk.length, range.remaining());
+            range.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    private void copyRange(String storageKey, Path local, long start, long length, OutputStream out) throws IOException {
+        if (local != null) {
+            try (FileChannel channel = FileChannel.open(local, StandardOpenOption.READ)) {
+                copyRange(channel, start, length, out);
+                return;
+            } catch (NoSuchFileException e) {
+                // 文件刚好在冷热存储间迁移，改用存储接口读取
+            }
+        }
+        try (InputStream in = storageBackend.getRange(storageKey, start, length)) {
+            IOUtils.copyLarge(in, out, new byte[COPY_BUFFER_SIZE]);
+        }
+    }
+
+    private void copyRange(FileChannel channel, long start, long length, OutputStream out) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, length)];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+            wrapped.clear();
+            wrapped.limit((int) Math.min(buffer.length, remaining));
+            int n = channel.read(wrapped, position);
+            if (n < 0) {
+                throw new IOException("文件长度不足: 期望读到 " + (start + length) + " 字节");
+            }
+            out.write(buffer, 0, n);
+            position += n;
+            remaining -= n;
+        }
+    }
+}
@@ -1,24 +1,32 @@
 package com.example.xiaoniangao.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.xiaoniangao.entity.MediaFile;
 import com.example.xiaoniangao.entity.MediaTag;
 import com.example.xiaoniangao.entity.Tag;
 import com.example.xiaoniangao.mapper.MediaTagMapper;
 import com.example.xiaoniangao.mapper.TagMapper;
 import com.example.xiaoniangao.service.MediaTagService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Service
-public class MediaTagServiceImpl extends ServiceImpl<MediaTagMapper, MediaTag> implements MediaTagService {
+public class MediaTagServiceImpl extends ServiceImpl<MediaTagMapper, MediaTag> implements MediaTagService, ApplicationRunner {
     
     private static final Logger log = LoggerFactory.getLogger(MediaTagServiceImpl.class);
 
@@ -28,6 +36,21 @@ public class MediaTagServiceImpl extends ServiceImpl<MediaTagMapper, MediaTag> i
     @Autowired
     private TagMapper tagMapper;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 详情和列表按媒体ID查标签，确保media_id上有索引
+        try {
+            if (jdbcTemplate.queryForList("SHOW INDEX FROM media_tag WHERE Column_name = 'media_id' AND Seq_in_index = 1").isEmpty()) {
+                jdbcTemplate.execute("ALTER TABLE media_tag ADD INDEX idx_media_tag_media_id(media_id, tag_id);");
+            }
+        } catch (Exception e) {
+            log.error("media_tag表索引初始化失败: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     @Transactional
     public boolean saveMediaTags(Long mediaId, String tagsStr) {
@@ -77,6 +100,51 @@ public class MediaTagServiceImpl extends ServiceImpl<MediaTagMapper, MediaTag> i
         return true;
     }
 
+    @Override
+    @Transactional
+    public boolean saveMediaTagsBatch(List<Long> mediaIds, String tagsStr) {
+        if (mediaIds == null || mediaIds.isEmpty() || tagsStr == null || tagsStr.isEmpty()) {
+            return false;
+        }
+        
+        // 去重后逐个解析标签，使用次数一次性加上本批媒体数
+        Set<String> tagNames = new LinkedHashSet<>();
+        for (String tagName : tagsStr.split(",")) {
+            tagName = tagName.trim();
+            if (!tagName.isEmpty()) {
+                tagNames.add(tagName);
+            }
+        }
+        
+        List<MediaTag> mediaTagList = new ArrayList<>();
+        Date now = new Date();
+        for (String tagName : tagNames) {
+            Tag tag = tagMapper.findByTagName(tagName);
+            if (tag == null) {
+                tag = new Tag();
+                tag.setTagName(tagName);
+                tag.setCount(mediaIds.size());
+                tagMapper.insert(tag);
+            } else {
+                tag.setCount(tag.getCount() + mediaIds.size());
+                tagMapper.updateById(tag);
+            }
+            
+            for (Long mediaId : mediaIds) {
+                MediaTag mediaTag = new MediaTag();
+                mediaTag.setMediaId(mediaId);
+                mediaTag.setTagId(tag.getId());
+                mediaTag.setCreateTime(now);
+                mediaTagList.add(mediaTag);
+            }
+        }
+        
+        if (!mediaTagList.isEmpty()) {
+            return mediaTagMapper.batchInsert(mediaTagList) > 0;
+        }
+        return true;
+    }
+
     @Override
     public List<Map<String, Object>> getTagsByMediaId(Long mediaId) {
         if (mediaId == null) {
@@ -125,4 +193,37 @@ public class MediaTagServiceImpl extends ServiceImpl<MediaTagMapper, MediaTag> i
         
         return tagNames;
     }
+
+    @Override
+    public Map<Long, List<Tag>> getTagsByMediaIds(Collection<Long> mediaIds) {
+        Map<Long, List<Tag>> tagsByMedia = new HashMap<>();
+        if (mediaIds == null || mediaIds.isEmpty()) {
+            return tagsByMedia;
+        }
+        for (Map<String, Object> row : mediaTagMapper.findTagsByMediaIds(new LinkedHashSet<>(mediaIds))) {
+            Tag tag = new Tag();
+            tag.setId(((Number) row.get("tag_id")).longValue());
+            tag.setTagName((String) row.get("tag_name"));
+            tagsByMedia.computeIfAbsent(((Number) row.get("media_id")).longValue(), k -> new ArrayList<>()).add(tag);
+        }
+        return tagsByMedia;
+    }
+
+    @Override
+    public void fillTagLists(List<MediaFile> mediaList) {
+        if (mediaList == null || mediaList.isEmpty()) {
+            return;
+        }
+        List<Long> mediaIds = new ArrayList<>(mediaList.size());
+        for (MediaFile mediaFile : mediaList) {
+            if (mediaFile.getId() != null) {
+                mediaIds.add(mediaFile.getId());
+            }
+        }
+        Map<Long, List<Tag>> tagsByMedia = getTagsByMediaIds(mediaIds);
+        for (MediaFile mediaFile : mediaList) {
+            List<Tag> tags = tagsByMedia.get(mediaFile.getId());
+            mediaFile.setTagList(tags != null ? tags : new ArrayList<>());
+        }
+    }
 }
\ No newline at end of file
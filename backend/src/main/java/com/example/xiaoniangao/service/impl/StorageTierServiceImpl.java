@@ -0,0 +1,201 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.entity.MediaFile;
+import com.example.xiaoniangao.mapper.MediaFileMapper;
+import com.example.xiaoniangao.service.StorageTierService;
+import com.example.xiaoniangao.storage.StorageBackend;
+import com.example.xiaoniangao.storage.TieredStorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class StorageTierServiceImpl implements StorageTierService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageTierServiceImpl.class);
+
+    @Autowired
+    private MediaFileMapper mediaFileMapper;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    @Qualifier("storageTierExecutor")
+    private ExecutorService storageTierExecutor;
+
+    // 超过该天数没有访问的文件移到冷存储
+    @Value("${file.storage.tier.cold-after-days:30}")
+    private int coldAfterDays;
+
+    // 浏览次数达到该值的文件一直留在热存储
+    @Value("${file.storage.tier.hot-view-count:100}")
+    private int hotViewCount;
+
+    // 每轮最多迁移的文件数
+    @Value("${file.storage.tier.batch-size:500}")
+    private int batchSize;
+
+    // 尚未写库的访问次数，按媒体ID累计，定期批量写入，避免每次查看都更新数据库。
+    // 累加（merge）和取出（remove）在同一个键上是原子的，取出之后的访问会重新累计，不会丢失
+    private final Map<Long, Integer> pendingAccess = new ConcurrentHashMap<>();
+
+    // 按存储键访问（签名URL等不查库的路径）的文件，只更新最近访问时间
+    private final Set<String> pendingKeyAccess = ConcurrentHashMap.newKeySet();
+
+    // 正在移回热存储的文件，避免同一文件重复提交
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder promoted = new LongAdder();
+    private final LongAdder demoted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Override
+    public void recordAccess(MediaFile mediaFile) {
+        if (mediaFile == null || mediaFile.getId() == null) {
+            return;
+        }
+        pendingAccess.merge(mediaFile.getId(), 1, Integer::sum);
+        promoteIfCold(mediaFile.getFilePath());
+    }
+
+    @Override
+    public void recordKeyAccess(String storageKey) {
+        if (storageKey == null) {
+            return;
+        }
+        pendingKeyAccess.add(storageKey);
+        promoteIfCold(storageKey);
+    }
+
+    private void promoteIfCold(String storageKey) {
+        TieredStorageBackend tiered = tieredBackend();
+        // 以文件实际所在位置为准（同内容的新上传会复用已在冷存储中的文件）
+        if (tiered == null || storageKey == null || !tiered.isCold(storageKey) || !promoting.add(storageKey)) {
+            return;
+        }
+        try {
+            // 本次请求直接从冷存储读取，移回热存储在后台进行
+            storageTierExecutor.execute(() -> {
+                try {
+                    tiered.moveToHot(storageKey);
+                    mediaFileMapper.updateStorageTier(storageKey, MediaFile.TIER_HOT);
+                    promoted.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    log.error("文件移回热存储失败: " + storageKey + " " + e.getMessage(), e);
+                } finally {
+                    promoting.remove(storageKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 迁移队列已满，下次访问时再尝试
+            promoting.remove(storageKey);
+        }
+    }
+
+    /**
+     * 把累计的访问次数和访问时间写入数据库
+     */
+    @Scheduled(fixedDelay = 10000, initialDelay = 10000)
+    public void flushAccess() {
+        if (pendingAccess.isEmpty() && pendingKeyAccess.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        for (Long mediaId : pendingAccess.keySet()) {
+            Integer views = pendingAccess.remove(mediaId);
+            if (views == null) {
+                continue;
+            }
+            try {
+                mediaFileMapper.addAccess(mediaId, views, now);
+            } catch (Exception e) {
+                // 放回去下次再写
+                pendingAccess.merge(mediaId, views, Integer::sum);
+                log.error("访问记录写入失败: mediaId=" + mediaId + " " + e.getMessage(), e);
+            }
+        }
+        for (String storageKey : pendingKeyAccess) {
+            if (!pendingKeyAccess.remove(storageKey)) {
+                continue;
+            }
+            try {
+                mediaFileMapper.touchAccessByFilePath(storageKey, now);
+            } catch (Exception e) {
+                pendingKeyAccess.add(storageKey);
+                log.error("访问记录写入失败: key=" + storageKey + " " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.storage.tier.migrate-interval-ms:3600000}", initialDelay = 600000)
+    public void scheduledMigrate() {
+        if (tieredBackend() != null) {
+            migrateColdFiles();
+        }
+    }
+
+    @Override
+    public int migrateColdFiles() {
+        TieredStorageBackend tiered = tieredBackend();
+        if (tiered == null) {
+            return 0;
+        }
+        // 先写入最近的访问，避免刚被访问的文件被迁走
+        flushAccess();
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(coldAfterDays));
+        List<String> candidates = mediaFileMapper.findColdCandidates(before, hotViewCount, batchSize);
+        int moved = 0;
+        for (String storageKey : candidates) {
+            if (promoting.contains(storageKey)) {
+                continue;
+            }
+            try {
+                // 文件先完整落到冷存储再删除热存储中的文件，之后一次更新所有引用该文件的媒体记录
+                tiered.moveToCold(storageKey);
+                mediaFileMapper.updateStorageTier(storageKey, MediaFile.TIER_COLD);
+                demoted.increment();
+                moved++;
+            } catch (Exception e) {
+                failed.increment();
+                log.error("文件移到冷存储失败: " + storageKey + " " + e.getMessage(), e);
+            }
+        }
+        if (moved > 0) {
+            log.info("冷存储迁移完成: {} 个文件", moved);
+        }
+        return moved;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tieringEnabled", tieredBackend() != null);
+        stats.put("promoted", promoted.sum());
+        stats.put("demoted", demoted.sum());
+        stats.put("failed", failed.sum());
+        stats.put("promoting", promoting.size());
+        stats.put("pendingAccess", pendingAccess.size() + pendingKeyAccess.size());
+        return stats;
+    }
+
+    private TieredStorageBackend tieredBackend() {
+        return storageBackend instanceof TieredStorageBackend ? (TieredStorageBackend) storageBackend : null;
+    }
+}
@@ -3,6 +3,9 @@ package com.example.xiaoniangao.service.impl;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.xiaoniangao.entity.Tag;
 import com.example.xiaoniangao.mapper.TagMapper;
+import com.example.xiaoniangao.search.PinyinIndex;
+import com.example.xiaoniangao.search.PinyinText;
+import com.example.xiaoniangao.service.MediaSearchService;
 import com.example.xiaoniangao.service.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +15,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @Service
@@ -23,9 +28,38 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private MediaSearchService mediaSearchService;
+
     @Value("${spring.datasource.url}")
     private String dbUrl;
 
+    // 标签拼音索引的刷新间隔（秒），上传时新建的标签和使用次数在刷新后生效
+    @Value("${media.search.tag-refresh-seconds:60}")
+    private long tagRefreshSeconds;
+
+    private volatile TagIndex tagIndex;
+
+    /**
+     * 全部标签、预先转写的拼音及按下标建的拼音倒排表，构建后只读
+     */
+    private static class TagIndex {
+        final List<Tag> tags;
+        final PinyinText[] pinyins;
+        final PinyinIndex postings = new PinyinIndex();
+        final long loadedAt;
+
+        TagIndex(List<Tag> tags) {
+            this.tags = tags;
+            this.pinyins = new PinyinText[tags.size()];
+            for (int i = 0; i < tags.size(); i++) {
+                pinyins[i] = PinyinText.of(tags.get(i).getTagName());
+                postings.add(i, pinyins[i]);
+            }
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+
     @Override
     public void run(ApplicationArguments args) {
         // 应用启动时自动检查并创建tag表
@@ -72,18 +106,62 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
             tag = new Tag();
             tag.setTagName(tagName);
             tag.setCount(0);
-            return this.save(tag);
+            boolean saved = this.save(tag);
+            tagIndex = null;
+            return saved;
         }
         return false;
     }
 
     @Override
     public boolean deleteTag(Long tagId) {
-        return this.removeById(tagId);
+        List<Long> mediaIds = jdbcTemplate.queryForList("SELECT media_id FROM media_tag WHERE tag_id = ?", Long.class, tagId);
+        boolean removed = this.removeById(tagId);
+        if (removed) {
+            tagIndex = null;
+            // 标签名已进入这些媒体的搜索索引，删除后重新索引
+            for (Long mediaId : mediaIds) {
+                mediaSearchService.reindex(mediaId);
+            }
+        }
+        return removed;
     }
 
     @Override
     public Tag findByTagName(String tagName) {
         return tagMapper.findByTagName(tagName);
     }
+
+    @Override
+    public List<Tag> searchTags(String keyword, int limit) {
+        List<Tag> matched = new ArrayList<>();
+        char[] query = PinyinText.normalizeQuery(keyword);
+        if (query == null || limit <= 0) {
+            return matched;
+        }
+        TagIndex index = currentTagIndex();
+        // 倒排表给出候选，逐个确认
+        for (int i : index.postings.candidates(query)) {
+            if (index.pinyins[i].matches(query)) {
+                matched.add(index.tags.get(i));
+            }
+        }
+        matched.sort(Comparator.comparing((Tag tag) -> tag.getCount() == null ? 0 : tag.getCount()).reversed()
+                .thenComparing(Tag::getTagName));
+        return matched.size() > limit ? new ArrayList<>(matched.subList(0, limit)) : matched;
+    }
+
+    private TagIndex currentTagIndex() {
+        TagIndex index = tagIndex;
+        if (index == null || System.currentTimeMillis() - index.loadedAt > tagRefreshSeconds * 1000) {
+            synchronized (this) {
+                index = tagIndex;
+                if (index == null || System.currentTimeMillis() - index.loadedAt > tagRefreshSeconds * 1000) {
+                    index = new TagIndex(this.list());
+                    tagIndex = index;
+                }
+            }
+        }
+        return index;
+    }
 }
\ No newline at end of file
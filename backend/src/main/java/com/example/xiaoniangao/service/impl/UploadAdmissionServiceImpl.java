@@ -0,0 +1,153 @@
+package com.example.xiaoniangao.service.impl;
+
+import com.example.xiaoniangao.service.UploadAdmissionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class UploadAdmissionServiceImpl implements UploadAdmissionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadAdmissionServiceImpl.class);
+
+    // 磁盘剩余空间的检查间隔，避免每个请求都查询文件系统
+    private static final long DISK_CHECK_INTERVAL_MS = 1000;
+
+    @Value("${file.upload.path}")
+    private String uploadPath;
+
+    @Value("${file.upload.admission.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${file.upload.admission.max-per-user:4}")
+    private int maxPerUser;
+
+    @Value("${file.upload.admission.disk-low-watermark:2GB}")
+    private DataSize diskLowWatermark;
+
+    @Value("${file.upload.admission.disk-high-watermark:4GB}")
+    private DataSize diskHighWatermark;
+
+    @Value("${file.upload.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${file.upload.admission.disk-retry-after-seconds:60}")
+    private long diskRetryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 按用户的进行中上传数，增减和归零移除都在compute中原子完成
+    private final Map<String, Integer> inFlightByUser = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedGlobal = new LongAdder();
+    private final LongAdder rejectedUser = new LongAdder();
+    private final LongAdder rejectedDisk = new LongAdder();
+
+    // 剩余空间低于低水位后进入拒绝状态，直到恢复到高水位以上才重新接受上传，避免在临界值附近反复切换
+    private volatile boolean diskLow;
+    private volatile long usableSpace = -1;
+    private volatile long lastDiskCheck;
+
+    @Override
+    public Rejection tryAcquire(String userKey) {
+        if (isDiskLow()) {
+            rejectedDisk.increment();
+            return new Rejection(503, diskRetryAfterSeconds, "服务器存储空间不足，请稍后再试");
+        }
+
+        if (inFlight.incrementAndGet() > maxConcurrent) {
+            inFlight.decrementAndGet();
+            rejectedGlobal.increment();
+            return new Rejection(503, retryAfterSeconds, "服务器上传繁忙，请稍后再试");
+        }
+
+        boolean[] userAdmitted = new boolean[1];
+        inFlightByUser.compute(userKey, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerUser) {
+                return count;
+            }
+            userAdmitted[0] = true;
+            return current + 1;
+        });
+        if (!userAdmitted[0]) {
+            inFlight.decrementAndGet();
+            rejectedUser.increment();
+            return new Rejection(429, retryAfterSeconds, "同时上传的文件过多，请等待当前上传完成");
+        }
+
+        admitted.increment();
+        return null;
+    }
+
+    @Override
+    public void release(String userKey) {
+        decrementUser(userKey);
+        inFlight.decrementAndGet();
+    }
+
+    private void decrementUser(String userKey) {
+        // 计数归零时移除，避免按用户的计数表无限增长
+        inFlightByUser.computeIfPresent(userKey, (k, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private boolean isDiskLow() {
+        long now = System.currentTimeMillis();
+        if (now - lastDiskCheck >= DISK_CHECK_INTERVAL_MS) {
+            synchronized (this) {
+                if (now - lastDiskCheck >= DISK_CHECK_INTERVAL_MS) {
+                    refreshDiskState();
+                    lastDiskCheck = now;
+                }
+            }
+        }
+        return diskLow;
+    }
+
+    private void refreshDiskState() {
+        File dir = new File(uploadPath);
+        long space = dir.getUsableSpace();
+        if (space == 0 && !dir.exists()) {
+            // 上传目录尚未创建时无法判断，不做限制
+            usableSpace = -1;
+            diskLow = false;
+            return;
+        }
+        usableSpace = space;
+        if (!diskLow && space < diskLowWatermark.toBytes()) {
+            diskLow = true;
+            log.warn("上传目录剩余空间低于低水位({}MB)，暂停接受上传", diskLowWatermark.toMegabytes());
+        } else if (diskLow && space >= diskHighWatermark.toBytes()) {
+            diskLow = false;
+            log.info("上传目录剩余空间已恢复到高水位({}MB)以上，恢复接受上传", diskHighWatermark.toMegabytes());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        isDiskLow();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inFlight", inFlight.get());
+        stats.put("inFlightUsers", inFlightByUser.size());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxPerUser", maxPerUser);
+        stats.put("admitted", admitted.sum());
+        stats.put("rejectedGlobal", rejectedGlobal.sum());
+        stats.put("rejectedUser", rejectedUser.sum());
+        stats.put("rejectedDisk", rejectedDisk.sum());
+        stats.put("diskLow", diskLow);
+        stats.put("usableSpace", usableSpace);
+        stats.put("diskLowWatermark", diskLowWatermark.toBytes());
+        stats.put("diskHighWatermark", diskHighWatermark.toBytes());
+        return stats;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.xiaoniangao.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 小文件内存缓存：缩略图等不超过 maxObjectSize 的文件内容放在堆外（direct ByteBuffer），
+ * 不占Java堆，也不会因为大量小数组增加GC压力。
+ * 淘汰策略参考W-TinyLFU：新内容先进入约占1%容量的窗口区（LRU），被挤出窗口时与主区最久未访问的内容
+ * 比较近期访问频率（Count-Min Sketch估算），频率更高才能进入主区；主区分为试用区和保护区（SLRU），
+ * 试用区再次命中的内容升入保护区。一次性翻页浏览带来的大量冷文件不会冲掉反复访问的热点缩略图。
+ * 缓存的内容按存储键索引，按内容寻址的文件内容不变，文件删除时调用 invalidate 释放内存。
+ */
+public class ByteCache {
+
+    // 窗口区占总容量的比例
+    private static final double WINDOW_RATIO = 0.01;
+    // 保护区占主区的比例
+    private static final double PROTECTED_RATIO = 0.8;
+    // 按平均每个文件的大小估算条目数，决定频率统计表的大小
+    private static final int AVERAGE_OBJECT_SIZE = 16 * 1024;
+
+    /**
+     * 缓存未命中时加载内容，返回的缓冲区position为0、limit为内容长度
+     */
+    public interface Loader {
+        ByteBuffer load() throws IOException;
+    }
+
+    private final long maxBytes;
+    private final int maxObjectSize;
+    private final long windowMax;
+    private final long protectedMax;
+    private final FrequencySketch sketch;
+
+    // 三个区都按访问顺序排列，最久未访问的在最前面，所有访问在同一把锁下进行
+    private final LinkedHashMap<String, ByteBuffer> window = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> probation = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> protectedArea = new LinkedHashMap<>(256, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxBytes      缓存内容的总字节上限，0表示不缓存
+     * @param maxObjectSize 单个文件超过该大小时不缓存
+     */
+    public ByteCache(long maxBytes, int maxObjectSize) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxObjectSize = maxBytes > 0 ? Math.max(0, maxObjectSize) : 0;
+        // 窗口区至少能放下一个最大的文件
+        this.windowMax = Math.min(this.maxBytes, Math.max((long) (this.maxBytes * WINDOW_RATIO), this.maxObjectSize));
+        this.protectedMax = (long) ((this.maxBytes - windowMax) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(1024, this.maxBytes / AVERAGE_OBJECT_SIZE)));
+    }
+
+    public int getMaxObjectSize() {
+        return maxObjectSize;
+    }
+
+    /**
+     * 查找缓存内容，返回独立position的只读视图，未命中时返回null
+     */
+    public ByteBuffer get(String key) {
+        if (maxObjectSize <= 0) {
+            return null;
+        }
+        ByteBuffer data;
+        synchronized (this) {
+            sketch.increment(key);
+            data = window.get(key);
+            if (data == null) {
+                data = probation.remove(key);
+                if (data != null) {
+                    probationBytes -= data.capacity();
+                    protect(key, data);
+                } else {
+                    data = protectedArea.get(key);
+                }
+            }
+        }
+        if (data == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return data.duplicate();
+    }
+
+    /**
+     * 查找缓存内容，未命中时用loader加载并尝试放入缓存。
+     * 同一个键并发未命中时可能各自加载一次，结果相同，只保留先放入的
+     */
+    public ByteBuffer getOrLoad(String key, Loader loader) throws IOException {
+        ByteBuffer data = get(key);
+        if (data != null) {
+            return data;
+        }
+        data = loader.load();
+        loads.increment();
+        if (data == null) {
+            return null;
+        }
+        ByteBuffer readOnly = data.asReadOnlyBuffer();
+        put(key, readOnly);
+        return readOnly.duplicate();
+    }
+
+    /**
+     * 放入缓存，内容超过单个文件上限时忽略
+     */
+    public void put(String key, ByteBuffer data) {
+        int size = data.remaining();
+        if (maxBytes <= 0 || size > maxObjectSize) {
+            return;
+        }
+        ByteBuffer content = data.slice().asReadOnlyBuffer();
+        synchronized (this) {
+            if (window.containsKey(key) || probation.containsKey(key) || protectedArea.containsKey(key)) {
+                return;
+            }
+            window.put(key, content);
+            windowBytes += size;
+            Iterator<Map.Entry<String, ByteBuffer>> it = window.entrySet().iterator();
+            while (windowBytes > windowMax && it.hasNext()) {
+                Map.Entry<String, ByteBuffer> candidate = it.next();
+                it.remove();
+                windowBytes -= candidate.getValue().capacity();
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    /**
+     * 文件被删除或替换时移除缓存内容
+     */
+    public void invalidate(String key) {
+        synchronized (this) {
+            ByteBuffer data;
+            if ((data = window.remove(key)) != null) {
+                windowBytes -= data.capacity();
+            } else if ((data = probation.remove(key)) != null) {
+                probationBytes -= data.capacity();
+            } else if ((data = protectedArea.remove(key)) != null) {
+                protectedBytes -= data.capacity();
+            }
+            if (data != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 移除所有以prefix开头的键，用于原文件删除时一起清理其缩略图
+     */
+    public void invalidatePrefix(String prefix) {
+        synchronized (this) {
+            windowBytes -= removePrefix(window, prefix);
+            probationBytes -= removePrefix(probation, prefix);
+            protectedBytes -= removePrefix(protectedArea, prefix);
+        }
+    }
+
+    private long removePrefix(LinkedHashMap<String, ByteBuffer> area, String prefix) {
+        long removed = 0;
+        Iterator<Map.Entry<String, ByteBuffer>> it = area.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ByteBuffer> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                removed += entry.getValue().capacity();
+                it.remove();
+                invalidations.increment();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 被挤出窗口区的内容与主区最久未访问的内容比较频率，需在锁内调用。
+     * 被淘汰的缓冲区只是去掉引用，正在输出它的请求仍持有视图，由GC回收堆外内存，不存在读到已释放内存的问题
+     */
+    private void admit(String key, ByteBuffer data) {
+        long mainMax = maxBytes - windowMax;
+        int size = data.capacity();
+        int candidateFrequency = sketch.frequency(key);
+        while (probationBytes + protectedBytes + size > mainMax) {
+            LinkedHashMap<String, ByteBuffer> area = !probation.isEmpty() ? probation : protectedArea;
+            Iterator<Map.Entry<String, ByteBuffer>> it = area.entrySet().iterator();
+            if (!it.hasNext()) {
+                rejections.increment();
+                return;
+            }
+            Map.Entry<String, ByteBuffer> victim = it.next();
+            if (candidateFrequency <= sketch.frequency(victim.getKey())) {
+                rejections.increment();
+                return;
+            }
+            it.remove();
+            if (area == probation) {
+                probationBytes -= victim.getValue().capacity();
+            } else {
+                protectedBytes -= victim.getValue().capacity();
+            }
+            evictions.increment();
+        }
+        probation.put(key, data);
+        probationBytes += size;
+    }
+
+    /**
+     * 试用区命中的内容升入保护区，保护区超出上限时把最久未访问的降回试用区，需在锁内调用
+     */
+    private void protect(String key, ByteBuffer data) {
+        protectedArea.put(key, data);
+        protectedBytes += data.capacity();
+        Iterator<Map.Entry<String, ByteBuffer>> it = protectedArea.entrySet().iterator();
+        while (protectedBytes > protectedMax && it.hasNext()) {
+            Map.Entry<String, ByteBuffer> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                break;
+            }
+            it.remove();
+            protectedBytes -= eldest.getValue().capacity();
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationBytes += eldest.getValue().capacity();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("entries", window.size() + probation.size() + protectedArea.size());
+            stats.put("bytes", windowBytes + probationBytes + protectedBytes);
+            stats.put("windowBytes", windowBytes);
+            stats.put("probationBytes", probationBytes);
+            stats.put("protectedBytes", protectedBytes);
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxObjectSize", maxObjectSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("loads", loads.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 把文件整个读入堆外缓冲区
+     */
+    public static ByteBuffer read(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readFully(channel, size);
+        }
+    }
+
+    /**
+     * 把输入流读入堆外缓冲区，长度必须正好是size
+     */
+    public static ByteBuffer read(InputStream in, int size) throws IOException {
+        return readFully(Channels.newChannel(in), size);
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("文件长度不足: 期望 " + size + " 字节，实际 " + buffer.position() + " 字节");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 4位计数器的Count-Min Sketch，估算键的近期访问次数。
+     * 累计增加次数达到表大小的10倍时所有计数减半，旧的热点会逐渐冷却
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0x6b2f1bb3, 0x3c6ef372, 0xa54ff53a};
+
+        private final byte[] table;
+        private final int mask;
+        private final int resetSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1)) << 1;
+            this.table = new byte[width * DEPTH];
+            this.mask = width - 1;
+            this.resetSize = width * 10;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = index(hash, i);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (byte) (table[i] >>> 1);
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[index(hash, i)]);
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x85ebca6b;
+            return h ^ (h >>> 13);
+        }
+    }
+}
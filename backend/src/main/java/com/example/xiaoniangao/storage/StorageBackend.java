@@ -0,0 +1,61 @@
+package com.example.xiaoniangao.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 媒体文件存储。数据库中只保存存储键（如 "<sha256>.jpg"），不保存操作系统路径，
+ * 文件放在哪里、怎样分目录由具体实现决定，便于更换存储或在节点间迁移数据。
+ * 存储键只能是单段文件名，不能包含路径分隔符。
+ */
+public interface StorageBackend {
+
+    /**
+     * 把本地文件存入存储（会移走源文件），已存在同名键时覆盖
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * 读取完整内容
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * 读取从offset开始的length个字节
+     */
+    InputStream getRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * 删除文件，不存在时返回false
+     */
+    boolean delete(String key);
+
+    boolean exists(String key);
+
+    /**
+     * 文件大小，不存在时返回-1
+     */
+    long size(String key);
+
+    /**
+     * 最后修改时间（毫秒），不存在时返回0
+     */
+    long lastModified(String key);
+
+    /**
+     * 文件在本机磁盘上的位置，供需要随机访问文件的处理（解码图片、零拷贝发送）使用；
+     * 不在本机磁盘上的实现返回null，调用方应退回到 get/getRange
+     */
+    Path localPath(String key);
+
+    /**
+     * 创建一个临时文件，之后可以用 put 低成本地存入（本地实现中与存储目录在同一卷，只需改名）
+     */
+    Path createTempFile() throws IOException;
+
+    /**
+     * 临时文件所在目录，供清理任务扫描残留文件
+     */
+    Path tempDirectory() throws IOException;
+}
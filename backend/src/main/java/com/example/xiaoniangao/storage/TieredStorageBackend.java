@@ -0,0 +1,157 @@
+package com.example.xiaoniangao.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 冷热分层存储：新文件写入热存储，长期不访问的文件由迁移任务移到冷存储，被访问时再移回。
+ * 同一个存储键在两层中使用相同的键名，读取时先查热存储再查冷存储，
+ * 因此迁移过程中的任何时刻都至少有一份完整文件可读。
+ */
+public class TieredStorageBackend implements StorageBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredStorageBackend.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final LocalStorageBackend hot;
+    private final LocalStorageBackend cold;
+
+    // 同一个键的写入、删除和迁移互斥，避免迁移把刚删除的文件又复制回来
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public TieredStorageBackend(LocalStorageBackend hot, LocalStorageBackend cold) {
+        this.hot = hot;
+        this.cold = cold;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        synchronized (lock(key)) {
+            hot.put(key, source);
+            cold.delete(key);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        if (hot.exists(key)) {
+            try {
+                return hot.get(key);
+            } catch (NoSuchFileException e) {
+                // 刚好被迁移到冷存储
+            }
+        }
+        return cold.get(key);
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        if (hot.exists(key)) {
+            try {
+                return hot.getRange(key, offset, length);
+            } catch (NoSuchFileException e) {
+                // 刚好被迁移到冷存储
+            }
+        }
+        return cold.getRange(key, offset, length);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        synchronized (lock(key)) {
+            boolean deleted = hot.delete(key);
+            return cold.delete(key) || deleted;
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return hot.exists(key) || cold.exists(key);
+    }
+
+    @Override
+    public long size(String key) {
+        long size = hot.size(key);
+        return size >= 0 ? size : cold.size(key);
+    }
+
+    @Override
+    public long lastModified(String key) {
+        long lastModified = hot.lastModified(key);
+        return lastModified > 0 ? lastModified : cold.lastModified(key);
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return hot.exists(key) || !cold.exists(key) ? hot.localPath(key) : cold.localPath(key);
+    }
+
+    @Override
+    public Path createTempFile() throws IOException {
+        return hot.createTempFile();
+    }
+
+    @Override
+    public Path tempDirectory() throws IOException {
+        return hot.tempDirectory();
+    }
+
+    /**
+     * 文件当前是否只在冷存储中
+     */
+    public boolean isCold(String key) {
+        return !hot.exists(key) && cold.exists(key);
+    }
+
+    /**
+     * 把文件从热存储移到冷存储
+     * @return 是否发生了迁移
+     */
+    public boolean moveToCold(String key) throws IOException {
+        return move(key, hot, cold);
+    }
+
+    /**
+     * 把文件从冷存储移回热存储
+     * @return 是否发生了迁移
+     */
+    public boolean moveToHot(String key) throws IOException {
+        return move(key, cold, hot);
+    }
+
+    private boolean move(String key, LocalStorageBackend from, LocalStorageBackend to) throws IOException {
+        synchronized (lock(key)) {
+            if (!from.exists(key)) {
+                return false;
+            }
+            // 两层通常在不同的盘上：先完整复制到目标层的临时文件，再原子改名，最后删除源文件。
+            // 保留修改时间，迁移不影响Last-Modified
+            Path tmp = to.createTempFile();
+            try {
+                Files.copy(from.localPath(key), tmp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                to.put(key, tmp);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            if (!from.delete(key)) {
+                log.warn("迁移后删除源文件失败: {}", key);
+            }
+            return true;
+        }
+    }
+
+    private Object lock(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % locks.length];
+    }
+}
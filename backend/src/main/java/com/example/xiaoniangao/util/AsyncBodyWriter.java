@@ -0,0 +1,182 @@
+package com.example.xiaoniangao.util;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于Servlet 3.1非阻塞IO输出响应体：请求线程启动异步后立即返回，
+ * 只在socket可写时由容器回调 onWritePossible 写出一块数据，慢速客户端不再占住请求线程。
+ * 响应体由若干区间组成，每个区间前可带一段固定字节（multipart/byteranges的分段头），最后可带结尾字节
+ */
+public class AsyncBodyWriter implements WriteListener, AsyncListener {
+
+    /**
+     * 按绝对位置读取内容
+     */
+    public interface RangeReader extends Closeable {
+        // 从position读取最多length字节到buffer开头，返回读到的字节数，已到末尾返回-1
+        int read(long position, byte[] buffer, int length) throws IOException;
+    }
+
+    /**
+     * 响应体中的一段：可选的前缀字节和内容区间
+     */
+    public static class Part {
+        private final byte[] prefix;
+        private final long start;
+        private final long length;
+
+        public Part(byte[] prefix, long start, long length) {
+            this.prefix = prefix;
+            this.start = start;
+            this.length = length;
+        }
+
+        public byte[] getPrefix() {
+            return prefix;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private final AsyncContext context;
+    private final ServletOutputStream out;
+    private final RangeReader reader;
+    private final List<Part> parts;
+    private byte[] trailer;
+    private final byte[] buffer;
+    private final Runnable onFinish;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private int partIndex = -1;
+    private boolean prefixPending;
+    private long position;
+    private long remaining;
+
+    private AsyncBodyWriter(AsyncContext context, ServletOutputStream out, RangeReader reader, List<Part> parts,
+                            byte[] trailer, int bufferSize, Runnable onFinish) {
+        this.context = context;
+        this.out = out;
+        this.reader = reader;
+        this.parts = parts;
+        this.trailer = trailer;
+        this.buffer = new byte[bufferSize];
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * 启动异步输出，响应头需已设置好。输出结束（完成、出错、超时或客户端断开）后关闭reader并调用onFinish。
+     * 启动失败时抛出异常，onFinish可能已被调用，调用方释放资源时需保证只释放一次
+     */
+    public static void start(HttpServletRequest request, HttpServletResponse response, RangeReader reader,
+                             List<Part> parts, byte[] trailer, long timeoutMs, int bufferSize,
+                             Runnable onFinish) throws IOException {
+        AsyncContext context = request.startAsync(request, response);
+        context.setTimeout(timeoutMs);
+        AsyncBodyWriter writer = new AsyncBodyWriter(context, response.getOutputStream(), reader, parts, trailer,
+                bufferSize, onFinish);
+        context.addListener(writer);
+        writer.nextPart();
+        try {
+            writer.out.setWriteListener(writer);
+        } catch (RuntimeException e) {
+            writer.finish();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        // isReady返回false时容器会在socket再次可写时回调，期间不占用线程
+        while (out.isReady()) {
+            if (prefixPending) {
+                prefixPending = false;
+                out.write(parts.get(partIndex).getPrefix());
+            } else if (remaining > 0) {
+                int n = reader.read(position, buffer, (int) Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    throw new EOFException("文件长度不足: 期望读到 " + (position + remaining) + " 字节");
+                }
+                out.write(buffer, 0, n);
+                position += n;
+                remaining -= n;
+            } else if (partIndex < parts.size() - 1) {
+                nextPart();
+            } else if (trailer != null) {
+                byte[] end = trailer;
+                trailer = null;
+                out.write(end);
+            } else {
+                finish();
+                return;
+            }
+        }
+    }
+
+    private void nextPart() {
+        partIndex++;
+        if (partIndex < parts.size()) {
+            Part part = parts.get(partIndex);
+            prefixPending = part.getPrefix() != null;
+            position = part.getStart();
+            remaining = part.getLength();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // 客户端断开或读文件失败，响应已无法继续
+        finish();
+    }
+
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            closeQuietly();
+            context.complete();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // 只读文件，关闭失败不影响结果
+        }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        closeQuietly();
+        onFinish.run();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.xiaoniangao.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * JPEG EXIF 读取工具，只解析文件头部的 APP1 段，不解码图像数据
+ */
+public final class ExifUtils {
+
+    public static final int ORIENTATION_NORMAL = 1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int MAX_SEGMENT_SCAN = 16;
+
+    private ExifUtils() {
+    }
+
+    /**
+     * 读取JPEG的EXIF方向（1-8），没有EXIF或不是JPEG时返回1
+     */
+    public static int readOrientation(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] tiff = readExifSegment(in);
+            return tiff == null ? ORIENTATION_NORMAL : parseOrientation(tiff);
+        } catch (Exception e) {
+            return ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * 按JPEG段结构查找 APP1 Exif 段，返回其中的TIFF数据；遇到图像数据(SOS)即停止
+     */
+    static byte[] readExifSegment(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readUnsignedShort() != 0xFFD8) {
+            return null;
+        }
+        for (int i = 0; i < MAX_SEGMENT_SCAN; i++) {
+            int marker = in.readUnsignedShort();
+            if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                return null;
+            }
+            int length = in.readUnsignedShort() - 2;
+            if (length < 0) {
+                return null;
+            }
+            if (marker == 0xFFE1 && length > 6) {
+                byte[] header = new byte[6];
+                in.readFully(header);
+                if (header[0] == 'E' && header[1] == 'x' && header[2] == 'i' && header[3] == 'f' && header[4] == 0 && header[5] == 0) {
+                    byte[] tiff = new byte[length - 6];
+                    in.readFully(tiff);
+                    return tiff;
+                }
+                skipFully(in, length - 6);
+            } else {
+                skipFully(in, length);
+            }
+        }
+        return null;
+    }
+
+    static int parseOrientation(byte[] tiff) {
+        ByteBuffer buffer = tiffBuffer(tiff);
+        if (buffer == null) {
+            return ORIENTATION_NORMAL;
+        }
+        int ifdOffset = buffer.getInt(4);
+        Integer value = findShortTag(buffer, ifdOffset, TAG_ORIENTATION);
+        return value != null && value >= 1 && value <= 8 ? value : ORIENTATION_NORMAL;
+    }
+
+    /**
+     * 拍摄时间：优先取Exif子IFD中的DateTimeOriginal，没有时取IFD0的DateTime。
+     * EXIF时间不带时区，按服务器时区解析
+     */
+    static Date parseDateTaken(byte[] tiff) {
+        ByteBuffer buffer = tiffBuffer(tiff);
+        if (buffer == null) {
+            return null;
+        }
+        int ifdOffset = buffer.getInt(4);
+        String value = null;
+        Integer exifOffset = findShortTag(buffer, ifdOffset, TAG_EXIF_IFD);
+        if (exifOffset != null) {
+            value = findAsciiTag(buffer, exifOffset, TAG_DATE_TIME_ORIGINAL);
+        }
+        if (value == null) {
+            value = findAsciiTag(buffer, ifdOffset, TAG_DATE_TIME);
+        }
+        if (value == null || value.length() < 19 || value.startsWith("0000")) {
+            return null;
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
+            format.setLenient(false);
+            return format.parse(value.substring(0, 19));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 根据TIFF头的字节序标识创建缓冲区，格式不对返回null
+     */
+    static ByteBuffer tiffBuffer(byte[] tiff) {
+        if (tiff.length < 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(tiff);
+        if (tiff[0] == 'I' && tiff[1] == 'I') {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff[0] == 'M' && tiff[1] == 'M') {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return null;
+        }
+        return buffer.getShort(2) == 42 ? buffer : null;
+    }
+
+    /**
+     * 在IFD中查找SHORT/LONG类型标签的值
+     */
+    static Integer findShortTag(ByteBuffer buffer, int ifdOffset, int tag) {
+        if (ifdOffset < 8 || ifdOffset + 2 > buffer.limit()) {
+            return null;
+        }
+        int count = buffer.getShort(ifdOffset) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifdOffset + 2 + i * 12;
+            if (entry + 12 > buffer.limit()) {
+                return null;
+            }
+            if ((buffer.getShort(entry) & 0xFFFF) == tag) {
+                int type = buffer.getShort(entry + 2) & 0xFFFF;
+                // 3 = SHORT, 4 = LONG，值都在entry的最后4个字节内
+                return type == 3 ? buffer.getShort(entry + 8) & 0xFFFF : buffer.getInt(entry + 8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在IFD中查找ASCII类型标签的值（trim去掉结尾的0）
+     */
+    static String findAsciiTag(ByteBuffer buffer, int ifdOffset, int tag) {
+        if (ifdOffset < 8 || ifdOffset + 2 > buffer.limit()) {
+            return null;
+        }
+        int count = buffer.getShort(ifdOffset) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifdOffset + 2 + i * 12;
+            if (entry + 12 > buffer.limit()) {
+                return null;
+            }
+            if ((buffer.getShort(entry) & 0xFFFF) == tag) {
+                // 2 = ASCII，不超过4个字节时直接存放在entry中，否则存放偏移
+                if ((buffer.getShort(entry + 2) & 0xFFFF) != 2) {
+                    return null;
+                }
+                int length = buffer.getInt(entry + 4);
+                int offset = length <= 4 ? entry + 8 : buffer.getInt(entry + 8);
+                if (length <= 0 || offset < 0 || offset + length > buffer.limit()) {
+                    return null;
+                }
+                byte[] bytes = new byte[length];
+                for (int j = 0; j < length; j++) {
+                    bytes[j] = buffer.get(offset + j);
+                }
+                return new String(bytes, StandardCharsets.US_ASCII).trim();
+            }
+        }
+        return null;
+    }
+
+    private static void skipFully(DataInputStream in, int n) throws IOException {
+        int remaining = n;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.xiaoniangao.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * 基于ImageIO的图片缩放工具（纯Java，不依赖外部程序）
+ */
+public final class ImageUtils {
+
+    // ImageIO默认能解码的格式
+    private static final Set<String> DECODABLE_TYPES = new HashSet<>(Arrays.asList(
+            "image/jpeg", "image/jpg", "image/pjpeg", "image/png", "image/gif", "image/bmp"));
+
+    private ImageUtils() {
+    }
+
+    /**
+     * 该MIME类型是否能用ImageIO解码
+     */
+    public static boolean isDecodable(String contentType) {
+        return contentType != null && DECODABLE_TYPES.contains(contentType.toLowerCase());
+    }
+
+    /**
+     * 读取图片并按EXIF方向摆正。
+     * 原图远大于需要的尺寸时在解码阶段就隔行采样，避免把几千万像素的原图完整解码到内存。
+     * @param minWidth 摆正后至少需要的宽度
+     * @return 无法识别的格式返回null
+     */
+    public static BufferedImage readOriented(Path file, int orientation, int minWidth) throws IOException {
+        return readOriented(file, orientation, minWidth, 0);
+    }
+
+    /**
+     * 同上，同时保证摆正后的高度不小于minHeight（0表示不限制高度）
+     */
+    public static BufferedImage readOriented(Path file, int orientation, int minWidth, int minHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // 方向5-8需要转90度，摆正后的宽度对应原图的高度
+                int displayWidth = orientation >= 5 ? reader.getHeight(0) : reader.getWidth(0);
+                int displayHeight = orientation >= 5 ? reader.getWidth(0) : reader.getHeight(0);
+                int subsampling = Math.max(1, displayWidth / (minWidth * 2));
+                if (minHeight > 0) {
+                    subsampling = Math.max(1, Math.min(subsampling, displayHeight / (minHeight * 2)));
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return applyOrientation(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按EXIF方向(1-8)旋转/翻转图片
+     */
+    public static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2: // 水平翻转
+                transform.scale(-1, 1);
+                transform.translate(-w, 0);
+                break;
+            case 3: // 旋转180度
+                transform.translate(w, h);
+                transform.rotate(Math.PI);
+                break;
+            case 4: // 垂直翻转
+                transform.scale(1, -1);
+                transform.translate(0, -h);
+                break;
+            case 5: // 沿左上-右下对角线翻转
+                transform.rotate(Math.PI / 2);
+                transform.scale(1, -1);
+                break;
+            case 6: // 顺时针旋转90度
+                transform.translate(h, 0);
+                transform.rotate(Math.PI / 2);
+                break;
+            case 7: // 沿右上-左下对角线翻转
+                transform.scale(-1, 1);
+                transform.translate(-h, 0);
+                transform.translate(0, w);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            case 8: // 逆时针旋转90度
+                transform.translate(0, w);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                return image;
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage result = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * 等比缩放到指定宽度。缩小倍数较大时逐级减半，比一次性双线性缩放更清晰
+     */
+    public static BufferedImage scaleToWidth(BufferedImage source, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        return scale(source, targetWidth, targetHeight);
+    }
+
+    /**
+     * 等比缩小到不超过 maxWidth x maxHeight（maxHeight为0时只限制宽度），不放大
+     */
+    public static BufferedImage scaleToFit(BufferedImage source, int maxWidth, int maxHeight) {
+        double ratio = (double) maxWidth / source.getWidth();
+        if (maxHeight > 0) {
+            ratio = Math.min(ratio, (double) maxHeight / source.getHeight());
+        }
+        if (ratio >= 1) {
+            // 不放大，但仍统一转换为不透明的RGB图，便于写出JPEG
+            return scale(source, source.getWidth(), source.getHeight());
+        }
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        return scale(source, width, height);
+    }
+
+    /**
+     * 等比缩放到刚好铺满 width x height，再居中裁掉多余部分
+     */
+    public static BufferedImage scaleToCover(BufferedImage source, int width, int height) {
+        double ratio = Math.max((double) width / source.getWidth(), (double) height / source.getHeight());
+        int scaledWidth = Math.max(width, (int) Math.round(source.getWidth() * ratio));
+        int scaledHeight = Math.max(height, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage scaled = scale(source, scaledWidth, scaledHeight);
+        if (scaledWidth == width && scaledHeight == height) {
+            return scaled;
+        }
+        int x = (scaledWidth - width) / 2;
+        int y = (scaledHeight - height) / 2;
+        BufferedImage cropped = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = cropped.createGraphics();
+        try {
+            g.drawImage(scaled, -x, -y, null);
+        } finally {
+            g.dispose();
+        }
+        return cropped;
+    }
+
+    /**
+     * 缩放到指定宽高（不保持比例，由调用方计算）
+     */
+    public static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = w / 2 >= targetWidth ? w / 2 : targetWidth;
+            h = h / 2 >= targetHeight ? h / 2 : targetHeight;
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                // 透明背景（PNG/GIF）填充白色，JPEG不支持透明
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    /**
+     * 以指定质量写出JPEG
+     */
+    public static void writeJpeg(BufferedImage image, Path target, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("没有可用的JPEG编码器");
+        }
+        ImageWriter writer = writers.next();
+        try (OutputStream out = Files.newOutputStream(target);
+             ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.xiaoniangao.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * 媒体文件头探测：只读取文件头部（JPEG读到SOF段，MP4只读box头和moov中需要的box），
+ * 识别真实的MIME类型、尺寸、方向、时长和拍摄时间，不解码图像/视频数据。
+ * 支持 JPEG（含EXIF）、PNG、GIF、WebP、MP4/MOV
+ */
+public final class MediaProbe {
+
+    // JPEG最多扫描的段数，EXIF和SOF通常在最前面几个段
+    private static final int MAX_JPEG_SEGMENTS = 64;
+    // MP4最多遍历的box数，防止异常文件导致长时间扫描
+    private static final int MAX_BOXES = 1024;
+    // MP4时间从1904-01-01开始计秒
+    private static final long MP4_EPOCH_OFFSET = 2082844800L;
+
+    private MediaProbe() {
+    }
+
+    /**
+     * 探测结果，无法识别的字段为null
+     */
+    public static class Result {
+        private String mimeType;
+        private Integer width;
+        private Integer height;
+        private Integer orientation;
+        private Long durationMs;
+        private Date takenAt;
+        private String videoCodec;
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        // 显示宽度（已按方向旋转）
+        public Integer getWidth() {
+            return width;
+        }
+
+        // 显示高度（已按方向旋转）
+        public Integer getHeight() {
+            return height;
+        }
+
+        // EXIF方向(1-8)，视频按旋转矩阵换算
+        public Integer getOrientation() {
+            return orientation;
+        }
+
+        public Long getDurationMs() {
+            return durationMs;
+        }
+
+        public Date getTakenAt() {
+            return takenAt;
+        }
+
+        // 视频轨道的编码（stsd中的样本格式，如avc1、hvc1）
+        public String getVideoCodec() {
+            return videoCodec;
+        }
+    }
+
+    /**
+     * 探测文件，无法识别的格式返回null
+     */
+    public static Result probe(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = read(channel, 0, 32);
+            if (head.remaining() < 12) {
+                return null;
+            }
+            int b0 = head.get(0) & 0xFF;
+            int b1 = head.get(1) & 0xFF;
+            if (b0 == 0xFF && b1 == 0xD8) {
+                return probeJpeg(channel);
+            }
+            if (b0 == 0x89 && b1 == 'P' && head.get(2) == 'N' && head.get(3) == 'G') {
+                return probePng(head);
+            }
+            if (b0 == 'G' && b1 == 'I' && head.get(2) == 'F' && head.get(3) == '8') {
+                return probeGif(head);
+            }
+            if (fourcc(head, 0).equals("RIFF") && fourcc(head, 8).equals("WEBP")) {
+                return probeWebp(head);
+            }
+            if (fourcc(head, 4).equals("ftyp")) {
+                return probeMp4(channel, fourcc(head, 8));
+            }
+            return null;
+        }
+    }
+
+    private static Result probeJpeg(FileChannel channel) throws IOException {
+        Result result = new Result();
+        result.mimeType = "image/jpeg";
+        result.orientation = ExifUtils.ORIENTATION_NORMAL;
+        long pos = 2;
+        for (int i = 0; i < MAX_JPEG_SEGMENTS; i++) {
+            ByteBuffer header = read(channel, pos, 4);
+            if (header.remaining() < 4 || (header.get(0) & 0xFF) != 0xFF) {
+                break;
+            }
+            int marker = header.get(1) & 0xFF;
+            if (marker == 0xFF) {
+                // 填充字节
+                pos++;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                break;
+            }
+            int length = header.getShort(2) & 0xFFFF;
+            if (length < 2) {
+                break;
+            }
+            if (marker == 0xE1 && length > 8) {
+                ByteBuffer segment = read(channel, pos + 4, length - 2);
+                byte[] data = new byte[segment.remaining()];
+                segment.get(data);
+                if (data.length > 6 && data[0] == 'E' && data[1] == 'x' && data[2] == 'i' && data[3] == 'f' && data[4] == 0 && data[5] == 0) {
+                    byte[] tiff = new byte[data.length - 6];
+                    System.arraycopy(data, 6, tiff, 0, tiff.length);
+                    result.orientation = ExifUtils.parseOrientation(tiff);
+                    result.takenAt = ExifUtils.parseDateTaken(tiff);
+                }
+            } else if (isStartOfFrame(marker)) {
+                ByteBuffer frame = read(channel, pos + 4, 5);
+                if (frame.remaining() == 5) {
+                    int height = frame.getShort(1) & 0xFFFF;
+                    int width = frame.getShort(3) & 0xFFFF;
+                    // 方向5-8需要转90度显示
+                    boolean rotated = result.orientation >= 5;
+                    result.width = rotated ? height : width;
+                    result.height = rotated ? width : height;
+                }
+                // EXIF段总在SOF之前，后面不需要再读
+                break;
+            }
+            pos += 2 + length;
+        }
+        return result;
+    }
+
+    // SOF0-SOF15，排除DHT(C4)、JPG(C8)、DAC(CC)
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static Result probePng(ByteBuffer head) {
+        Result result = new Result();
+        result.mimeType = "image/png";
+        if (head.remaining() >= 24 && fourcc(head, 12).equals("IHDR")) {
+            result.width = head.getInt(16);
+            result.height = head.getInt(20);
+        }
+        return result;
+    }
+
+    private static Result probeGif(ByteBuffer head) {
+        Result result = new Result();
+        result.mimeType = "image/gif";
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        result.width = head.getShort(6) & 0xFFFF;
+        result.height = head.getShort(8) & 0xFFFF;
+        return result;
+    }
+
+    private static Result probeWebp(ByteBuffer head) {
+        Result result = new Result();
+        result.mimeType = "image/webp";
+        if (head.remaining() < 30) {
+            return result;
+        }
+        String chunk = fourcc(head, 12);
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        if (chunk.equals("VP8X")) {
+            // 扩展格式：画布宽高-1，各24位
+            result.width = ((head.get(24) & 0xFF) | (head.get(25) & 0xFF) << 8 | (head.get(26) & 0xFF) << 16) + 1;
+            result.height = ((head.get(27) & 0xFF) | (head.get(28) & 0xFF) << 8 | (head.get(29) & 0xFF) << 16) + 1;
+        } else if (chunk.equals("VP8L")) {
+            // 无损格式：签名0x2f之后是14位宽-1、14位高-1
+            int b1 = head.get(21) & 0xFF;
+            int b2 = head.get(22) & 0xFF;
+            int b3 = head.get(23) & 0xFF;
+            int b4 = head.get(24) & 0xFF;
+            result.width = (b1 | (b2 & 0x3F) << 8) + 1;
+            result.height = ((b2 >> 6) | b3 << 2 | (b4 & 0x0F) << 10) + 1;
+        } else if (chunk.equals("VP8 ")) {
+            // 有损格式：关键帧头之后各14位宽高
+            result.width = head.getShort(26) & 0x3FFF;
+            result.height = head.getShort(28) & 0x3FFF;
+        }
+        return result;
+    }
+
+    private static Result probeMp4(FileChannel channel, String majorBrand) throws IOException {
+        Result result = new Result();
+        result.mimeType = majorBrand.equals("qt  ") ? "video/quicktime" : "video/mp4";
+        long size = channel.size();
+        long pos = 0;
+        // 顶层box中只关心moov，mdat等直接跳过（moov可能在文件末尾）
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= size; i++) {
+            long[] box = readBoxHeader(channel, pos, size);
+            if (box == null) {
+                break;
+            }
+            if (box[1] == type("moov")) {
+                parseMoov(channel, pos + box[2], pos + box[0], result);
+                break;
+            }
+            pos += box[0];
+        }
+        return result;
+    }
+
+    private static void parseMoov(FileChannel channel, long start, long end, Result result) throws IOException {
+        long pos = start;
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= end; i++) {
+            long[] box = readBoxHeader(channel, pos, end);
+            if (box == null) {
+                return;
+            }
+            if (box[1] == type("mvhd")) {
+                parseMvhd(read(channel, pos + box[2], 32), result);
+            } else if (box[1] == type("trak") && result.width == null) {
+                parseTrak(channel, pos + box[2], pos + box[0], result);
+            }
+            pos += box[0];
+        }
+    }
+
+    private static void parseMvhd(ByteBuffer data, Result result) {
+        if (data.remaining() < 20) {
+            return;
+        }
+        int version = data.get(0) & 0xFF;
+        long creation;
+        long timescale;
+        long duration;
+        if (version == 1) {
+            if (data.remaining() < 32) {
+                return;
+            }
+            creation = data.getLong(4);
+            timescale = data.getInt(20) & 0xFFFFFFFFL;
+            duration = data.getLong(24);
+        } else {
+            creation = data.getInt(4) & 0xFFFFFFFFL;
+            timescale = data.getInt(12) & 0xFFFFFFFFL;
+            duration = data.getInt(16) & 0xFFFFFFFFL;
+        }
+        if (timescale > 0 && duration > 0 && duration != 0xFFFFFFFFL) {
+            result.durationMs = duration * 1000 / timescale;
+        }
+        if (creation > MP4_EPOCH_OFFSET) {
+            result.takenAt = new Date((creation - MP4_EPOCH_OFFSET) * 1000);
+        }
+    }
+
+    private static void parseTrak(FileChannel channel, long start, long end, Result result) throws IOException {
+        long pos = start;
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= end; i++) {
+            long[] box = readBoxHeader(channel, pos, end);
+            if (box == null) {
+                return;
+            }
+            if (box[1] == type("tkhd")) {
+                parseTkhd(read(channel, pos + box[2], 96), result);
+                if (result.width == null) {
+                    // 不是视频轨道
+                    return;
+                }
+            } else if (box[1] == type("mdia")) {
+                result.videoCodec = findSampleFormat(channel, pos + box[2], pos + box[0]);
+                return;
+            }
+            pos += box[0];
+        }
+    }
+
+    private static void parseTkhd(ByteBuffer data, Result result) {
+        int version = data.remaining() > 0 ? data.get(0) & 0xFF : 0;
+        // version 0/1 的时间字段长度不同，矩阵和宽高在其后
+        int matrixOffset = version == 1 ? 52 : 40;
+        if (data.remaining() < matrixOffset + 44) {
+            return;
+        }
+        int a = data.getInt(matrixOffset);
+        int b = data.getInt(matrixOffset + 4);
+        int c = data.getInt(matrixOffset + 12);
+        int d = data.getInt(matrixOffset + 16);
+        int width = data.getInt(matrixOffset + 36) >>> 16;
+        int height = data.getInt(matrixOffset + 40) >>> 16;
+        if (width == 0 || height == 0) {
+            // 音频轨道没有宽高
+            return;
+        }
+        // 旋转矩阵(16.16定点数)换算为EXIF方向
+        int one = 0x10000;
+        int orientation = ExifUtils.ORIENTATION_NORMAL;
+        if (a == 0 && b == one && c == -one && d == 0) {
+            orientation = 6;
+        } else if (a == -one && b == 0 && c == 0 && d == -one) {
+            orientation = 3;
+        } else if (a == 0 && b == -one && c == one && d == 0) {
+            orientation = 8;
+        }
+        boolean rotated = orientation >= 5;
+        result.orientation = orientation;
+        result.width = rotated ? height : width;
+        result.height = rotated ? width : height;
+    }
+
+    /**
+     * 按 mdia/minf/stbl/stsd 路径找到第一个样本描述的格式
+     */
+    private static String findSampleFormat(FileChannel channel, long start, long end) throws IOException {
+        long[] range = {start, end};
+        for (String path : new String[]{"minf", "stbl", "stsd"}) {
+            range = findChild(channel, range[0], range[1], type(path));
+            if (range == null) {
+                return null;
+            }
+        }
+        // stsd: version/flags(4) + entry_count(4)，之后是第一个样本描述的box头
+        ByteBuffer stsd = read(channel, range[0], 16);
+        String format = fourcc(stsd, 12).trim();
+        return format.isEmpty() ? null : format;
+    }
+
+    /**
+     * 在[start, end)中查找指定类型的子box，返回其内容范围 {起始, 结束}
+     */
+    private static long[] findChild(FileChannel channel, long start, long end, long boxType) throws IOException {
+        long pos = start;
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= end; i++) {
+            long[] box = readBoxHeader(channel, pos, end);
+            if (box == null) {
+                return null;
+            }
+            if (box[1] == boxType) {
+                return new long[]{pos + box[2], pos + box[0]};
+            }
+            pos += box[0];
+        }
+        return null;
+    }
+
+    /**
+     * 读取box头，返回 {box总大小, 类型, 头长度}，越界或格式错误返回null
+     */
+    private static long[] readBoxHeader(FileChannel channel, long pos, long end) throws IOException {
+        ByteBuffer header = read(channel, pos, 16);
+        if (header.remaining() < 8) {
+            return null;
+        }
+        long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+        long boxType = header.getInt(4) & 0xFFFFFFFFL;
+        long headerSize = 8;
+        if (boxSize == 1) {
+            if (header.remaining() < 16) {
+                return null;
+            }
+            boxSize = header.getLong(8);
+            headerSize = 16;
+        } else if (boxSize == 0) {
+            boxSize = end - pos;
+        }
+        if (boxSize < headerSize || pos + boxSize > end) {
+            return null;
+        }
+        return new long[]{boxSize, boxType, headerSize};
+    }
+
+    private static long type(String fourcc) {
+        return ((long) fourcc.charAt(0) << 24) | (fourcc.charAt(1) << 16) | (fourcc.charAt(2) << 8) | fourcc.charAt(3);
+    }
+
+    private static String fourcc(ByteBuffer buffer, int offset) {
+        if (offset + 4 > buffer.limit()) {
+            return "";
+        }
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 从指定位置读取最多length个字节，返回的缓冲区为大端序，limit为实际读到的字节数
+     */
+    private static ByteBuffer read(FileChannel channel, long pos, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, pos + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.xiaoniangao.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MP4/MOV “快速启动”改写：把文件末尾的moov box移到第一个mdat之前，
+ * 并修正stco/co64中的分块偏移，浏览器不必先取文件尾部就能开始播放。
+ * 只搬移box，不解码也不重新封装，输出文件大小与原文件相同
+ */
+public final class Mp4FastStart {
+
+    // moov需要整个读入内存修改偏移，超过该大小的不处理
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_BOXES = 1024;
+
+    private static final int MOOV = type("moov");
+    private static final int MDAT = type("mdat");
+    private static final int MVEX = type("mvex");
+    private static final int STCO = type("stco");
+    private static final int CO64 = type("co64");
+    // 偏移表所在的容器box，按 moov/trak/mdia/minf/stbl 逐层进入
+    private static final int[] CONTAINERS = {type("trak"), type("mdia"), type("minf"), type("stbl")};
+
+    private Mp4FastStart() {
+    }
+
+    /**
+     * 是否需要改写：moov位于第一个mdat之后
+     */
+    public static boolean needsFastStart(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Layout layout = scan(channel);
+            return layout != null && layout.moovPos > layout.firstMdatPos;
+        }
+    }
+
+    /**
+     * 把source改写为moov前置的target。
+     * 已经是快速启动布局、不是可识别的MP4、分片MP4或偏移会溢出32位时返回false，不写target
+     */
+    public static boolean rewrite(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            Layout layout = scan(in);
+            if (layout == null || layout.moovPos < layout.firstMdatPos || layout.moovSize > MAX_MOOV_SIZE) {
+                return false;
+            }
+            ByteBuffer moov = ByteBuffer.allocate((int) layout.moovSize);
+            readFully(in, moov, layout.moovPos);
+            // moov插到第一个mdat之前，原来位于[firstMdatPos, moovPos)的数据整体后移moovSize
+            int moovHeader = moov.getInt(0) == 1 ? 16 : 8;
+            if (!patchOffsets(moov, moovHeader, moov.capacity(), layout.firstMdatPos, layout.moovPos, layout.moovSize)) {
+                return false;
+            }
+            moov.rewind();
+
+            long size = in.size();
+            long moovEnd = layout.moovPos + layout.moovSize;
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                transferFully(in, 0, layout.firstMdatPos, out);
+                while (moov.hasRemaining()) {
+                    out.write(moov);
+                }
+                transferFully(in, layout.firstMdatPos, layout.moovPos - layout.firstMdatPos, out);
+                transferFully(in, moovEnd, size - moovEnd, out);
+                out.force(false);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 扫描顶层box，找到moov和第一个mdat的位置，结构不完整时返回null
+     */
+    private static Layout scan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        Layout layout = new Layout();
+        layout.moovPos = -1;
+        layout.firstMdatPos = -1;
+        ByteBuffer header = ByteBuffer.allocate(16);
+        for (int i = 0; i < MAX_BOXES && pos < size; i++) {
+            header.clear();
+            readFully(channel, header, pos, Math.min(16, size - pos));
+            if (header.position() < 8) {
+                return null;
+            }
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            int boxType = header.getInt(4);
+            if (boxSize == 1) {
+                if (header.position() < 16) {
+                    return null;
+                }
+                boxSize = header.getLong(8);
+            } else if (boxSize == 0) {
+                boxSize = size - pos;
+            }
+            if (boxSize < 8 || pos + boxSize > size) {
+                return null;
+            }
+            if (boxType == MOOV && layout.moovPos < 0) {
+                layout.moovPos = pos;
+                layout.moovSize = boxSize;
+            } else if (boxType == MDAT && layout.firstMdatPos < 0) {
+                layout.firstMdatPos = pos;
+            }
+            pos += boxSize;
+        }
+        if (pos != size || layout.moovPos < 0 || layout.firstMdatPos < 0) {
+            return null;
+        }
+        return layout;
+    }
+
+    /**
+     * 递归修正[start, end)范围内所有stco/co64中落在[from, to)的偏移，加上shift。
+     * 遇到分片MP4（mvex）、结构错误或32位偏移溢出时返回false
+     */
+    private static boolean patchOffsets(ByteBuffer moov, int start, int end, long from, long to, long shift) {
+        int pos = start;
+        for (int i = 0; i < MAX_BOXES && pos + 8 <= end; i++) {
+            long boxSize = moov.getInt(pos) & 0xFFFFFFFFL;
+            int boxType = moov.getInt(pos + 4);
+            int headerSize = 8;
+            if (boxSize == 1) {
+                if (pos + 16 > end) {
+                    return false;
+                }
+                boxSize = moov.getLong(pos + 8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - pos;
+            }
+            if (boxSize < headerSize || pos + boxSize > end) {
+                return false;
+            }
+            int boxEnd = (int) (pos + boxSize);
+            int body = pos + headerSize;
+            if (boxType == MVEX) {
+                // 分片MP4的数据偏移在moof中，不在这里处理
+                return false;
+            } else if (boxType == STCO || boxType == CO64) {
+                if (!patchChunkOffsets(moov, body, boxEnd, boxType == CO64, from, to, shift)) {
+                    return false;
+                }
+            } else if (isContainer(boxType)) {
+                if (!patchOffsets(moov, body, boxEnd, from, to, shift)) {
+                    return false;
+                }
+            }
+            pos = boxEnd;
+        }
+        return true;
+    }
+
+    private static boolean patchChunkOffsets(ByteBuffer moov, int body, int end, boolean wide, long from, long to, long shift) {
+        if (body + 8 > end) {
+            return false;
+        }
+        long count = moov.getInt(body + 4) & 0xFFFFFFFFL;
+        int entrySize = wide ? 8 : 4;
+        if (body + 8 + count * entrySize > end) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int p = body + 8 + i * entrySize;
+            long offset = wide ? moov.getLong(p) : moov.getInt(p) & 0xFFFFFFFFL;
+            if (offset < from || offset >= to) {
+                continue;
+            }
+            offset += shift;
+            if (wide) {
+                moov.putLong(p, offset);
+            } else if (offset > 0xFFFFFFFFL) {
+                // stco放不下新偏移，需要改成co64，moov大小随之变化，这种情况不处理
+                return false;
+            } else {
+                moov.putInt(p, (int) offset);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isContainer(int boxType) {
+        for (int container : CONTAINERS) {
+            if (container == boxType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+        readFully(channel, buffer, pos, buffer.remaining());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long pos, long length) throws IOException {
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + (int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.limit(limit);
+    }
+
+    private static void transferFully(FileChannel in, long pos, long count, FileChannel out) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long n = in.transferTo(pos + done, count - done, out);
+            if (n <= 0) {
+                throw new IOException("文件读取不完整");
+            }
+            done += n;
+        }
+    }
+
+    private static int type(String fourcc) {
+        return (fourcc.charAt(0) << 24) | (fourcc.charAt(1) << 16) | (fourcc.charAt(2) << 8) | fourcc.charAt(3);
+    }
+
+    private static class Layout {
+        long moovPos;
+        long moovSize;
+        long firstMdatPos;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.xiaoniangao.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 按 (create_time, id) 倒序翻页的游标：上一页最后一条记录的创建时间和ID。
+ * 对客户端不透明（Base64URL编码），下一页从该位置之后继续，不需要跳过前面的行
+ */
+public final class PageCursor {
+
+    private final Date createTime;
+    private final long id;
+
+    public PageCursor(Date createTime, long id) {
+        this.createTime = createTime;
+        this.id = id;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = createTime.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析游标，为空时返回null（第一页），格式不正确时抛出IllegalArgumentException
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            return new PageCursor(new Date(Long.parseLong(raw.substring(0, colon))), Long.parseLong(raw.substring(colon + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+}
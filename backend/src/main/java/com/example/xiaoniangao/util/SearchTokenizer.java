@@ -0,0 +1,128 @@
+package com.example.xiaoniangao.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词：中日韩文字按单字和相邻两字（bigram）切分，拉丁字母和数字按连续的词切分，统一转小写。
+ * 不依赖词典，“小年糕相册”会切成 小/年/糕/相/册 和 小年/年糕/糕相/相册，任意两字以上的子串都能命中
+ */
+public final class SearchTokenizer {
+
+    // 过长的词截断，避免超长字符串（如哈希、URL）撑大词典
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 建索引用的词项：中日韩文字的单字和bigram，拉丁词，去重
+     */
+    public static Set<String> indexTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        for (Run run : split(text)) {
+            if (run.cjk) {
+                String s = run.text;
+                for (int i = 0; i < s.length(); i++) {
+                    terms.add(s.substring(i, i + 1));
+                    if (i + 1 < s.length()) {
+                        terms.add(s.substring(i, i + 2));
+                    }
+                }
+            } else {
+                terms.add(run.text);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 查询用的词项，所有词项都要命中。中日韩文字只有一个字时用单字，否则用bigram；
+     * 最后一个拉丁词可能还没输完，由调用方按前缀匹配
+     */
+    public static List<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            for (Run run : split(query)) {
+                String s = run.text;
+                if (run.cjk && s.length() > 1) {
+                    for (int i = 0; i + 1 < s.length(); i++) {
+                        terms.add(s.substring(i, i + 2));
+                    }
+                } else {
+                    terms.add(s);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 查询中最后一个词是否是拉丁词（用于前缀匹配）
+     */
+    public static boolean endsWithWord(String query) {
+        if (query == null) {
+            return false;
+        }
+        String trimmed = query.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        int last = trimmed.codePointBefore(trimmed.length());
+        return Character.isLetterOrDigit(last) && !isCjk(last);
+    }
+
+    private static List<Run> split(String text) {
+        List<Run> runs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); ) {
+            int cp = lower.codePointAt(i);
+            i += Character.charCount(cp);
+            boolean cjk = isCjk(cp);
+            if (!cjk && !Character.isLetterOrDigit(cp)) {
+                flush(runs, current, currentCjk);
+                continue;
+            }
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(runs, current, currentCjk);
+            }
+            currentCjk = cjk;
+            if (cjk || current.length() < MAX_WORD_LENGTH) {
+                current.appendCodePoint(cp);
+            }
+        }
+        flush(runs, current, currentCjk);
+        return runs;
+    }
+
+    private static void flush(List<Run> runs, StringBuilder current, boolean cjk) {
+        if (current.length() > 0) {
+            runs.add(new Run(current.toString(), cjk));
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static class Run {
+        final String text;
+        final boolean cjk;
+
+        Run(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.xiaoniangao.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaUrlSignerTest {
+
+    private static final String KEY = "0123abcd.jpg";
+
+    @Test
+    void signedUrlVerifies() {
+        MediaUrlSigner signer = signer("url-secret", "jwt-secret");
+        SignedUrl url = SignedUrl.parse(signer.sign(KEY));
+        assertEquals("/api" + MediaUrlSigner.PATH + KEY, url.path);
+        assertTrue(signer.verify(KEY, url.expires, url.signature));
+    }
+
+    @Test
+    void expiryIsRoundedUpToBucket() {
+        MediaUrlSigner signer = signer("url-secret", "jwt-secret");
+        long now = System.currentTimeMillis() / 1000;
+        SignedUrl url = SignedUrl.parse(signer.sign(KEY));
+        assertEquals(0, url.expires % 3600);
+        assertTrue(url.expires > now + 21600);
+        assertTrue(url.expires <= now + 21600 + 3600);
+        // 同一时段内签出的URL相同，浏览器缓存可以命中
+        assertEquals(signer.sign(KEY), signer.sign(KEY));
+    }
+
+    @Test
+    void rejectsTamperedOrExpiredSignatures() {
+        MediaUrlSigner signer = signer("url-secret", "jwt-secret");
+        SignedUrl url = SignedUrl.parse(signer.sign(KEY));
+        char[] tampered = url.signature.toCharArray();
+        tampered[0] = tampered[0] == 'A' ? 'B' : 'A';
+        assertFalse(signer.verify(KEY, url.expires, new String(tampered)));
+        assertFalse(signer.verify(KEY, url.expires, url.signature.substring(1)));
+        assertFalse(signer.verify(KEY, url.expires, ""));
+        assertFalse(signer.verify(KEY, url.expires, null));
+        // 改键或改过期时间都会使签名失效
+        assertFalse(signer.verify("other.jpg", url.expires, url.signature));
+        assertFalse(signer.verify(KEY, url.expires + 3600, url.signature));
+        assertFalse(signer.verify(null, url.expires, url.signature));
+        // 已过期的签名即使正确也不通过
+        long past = System.currentTimeMillis() / 1000 - 1;
+        assertFalse(signer.verify(KEY, past, hmac("url-secret".getBytes(StandardCharsets.UTF_8), KEY + "\n" + past)));
+        // 其他密钥签出的URL不通过
+        SignedUrl foreign = SignedUrl.parse(signer("another-secret", "jwt-secret").sign(KEY));
+        assertFalse(signer.verify(KEY, foreign.expires, foreign.signature));
+    }
+
+    @Test
+    void fallbackKeyIsDerivedAndNotTheJwtSecret() {
+        MediaUrlSigner signer = signer("", "jwt-secret");
+        SignedUrl url = SignedUrl.parse(signer.sign(KEY));
+        assertTrue(signer.verify(KEY, url.expires, url.signature));
+        String payload = KEY + "\n" + url.expires;
+        assertNotEquals(hmac("jwt-secret".getBytes(StandardCharsets.UTF_8), payload), url.signature);
+        byte[] derived = Base64.getUrlDecoder().decode(hmac("jwt-secret".getBytes(StandardCharsets.UTF_8), "media-url"));
+        assertEquals(hmac(derived, payload), url.signature);
+    }
+
+    @Test
+    void encodesKeyInPathAndSignsDecodedKey() {
+        MediaUrlSigner signer = signer("url-secret", "jwt-secret");
+        String key = "a b#c.jpg";
+        SignedUrl url = SignedUrl.parse(signer.sign(key));
+        assertEquals("/api" + MediaUrlSigner.PATH + "a%20b%23c.jpg", url.path);
+        assertTrue(signer.verify(key, url.expires, url.signature));
+        assertNull(signer.sign(null));
+        assertNull(signer.sign(""));
+    }
+
+    private static MediaUrlSigner signer(String secret, String jwtSecret) {
+        MediaUrlSigner signer = new MediaUrlSigner();
+        ReflectionTestUtils.setField(signer, "contextPath", "/api");
+        ReflectionTestUtils.setField(signer, "secret", secret);
+        ReflectionTestUtils.setField(signer, "jwtSecret", jwtSecret);
+        ReflectionTestUtils.setField(signer, "expireSeconds", 21600L);
+        ReflectionTestUtils.setField(signer, "bucketSeconds", 3600L);
+        signer.init();
+        return signer;
+    }
+
+    private static String hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class SignedUrl {
+        String path;
+        long expires;
+        String signature;
+
+        static SignedUrl parse(String url) {
+            SignedUrl parsed = new SignedUrl();
+            int question = url.indexOf('?');
+            parsed.path = url.substring(0, question);
+            for (String param : url.substring(question + 1).split("&")) {
+                if (param.startsWith("e=")) {
+                    parsed.expires = Long.parseLong(param.substring(2));
+                } else if (param.startsWith("s=")) {
+                    parsed.signature = param.substring(2);
+                }
+            }
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.xiaoniangao.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PinyinTextTest {
+
+    @Test
+    void dictionaryHasPolyphonicReadings() {
+        assertEquals(new HashSet<>(Arrays.asList("chang", "zhang")), readings('长'));
+        assertEquals(new HashSet<>(Arrays.asList("chong", "zhong")), readings('重'));
+        assertEquals(new HashSet<>(Arrays.asList("lv")), readings('绿'));
+        assertEquals(-1, PinyinDictionary.readingId('a'));
+        assertEquals(-1, PinyinDictionary.readingId('，'));
+    }
+
+    @Test
+    void matchesFullPinyinInitialsAndMixedQueries() {
+        PinyinText text = PinyinText.of("美丽的风景");
+        assertTrue(matches(text, "fengjing"));
+        assertTrue(matches(text, "fj"));
+        assertTrue(matches(text, "fengj"));
+        assertTrue(matches(text, "fjing"));
+        assertTrue(matches(text, "feng景"));
+        assertTrue(matches(text, "风jing"));
+        assertTrue(matches(text, "风景"));
+        assertTrue(matches(text, "mldfj"));
+        // 查询可以从任意位置开始，但必须连续
+        assertTrue(matches(text, "defj"));
+        assertFalse(matches(text, "mlfj"));
+        assertFalse(matches(text, "fjx"));
+        assertFalse(matches(text, "fengjingx"));
+    }
+
+    @Test
+    void matchesAnyReadingOfPolyphonicCharacters() {
+        assertTrue(matches(PinyinText.of("长城"), "cc"));
+        assertTrue(matches(PinyinText.of("长城"), "changcheng"));
+        assertTrue(matches(PinyinText.of("长大"), "zd"));
+        assertTrue(matches(PinyinText.of("重庆"), "cq"));
+        assertTrue(matches(PinyinText.of("重庆"), "chongqing"));
+        assertTrue(matches(PinyinText.of("绿色"), "lvse"));
+        assertTrue(matches(PinyinText.of("绿色"), "ls"));
+        assertFalse(matches(PinyinText.of("绿色"), "luse"));
+    }
+
+    @Test
+    void matchesLatinAndDigitsLiterallyIgnoringCaseAndPunctuation() {
+        PinyinText text = PinyinText.of("Vlog-2023 北京");
+        assertTrue(matches(text, "vlog"));
+        assertTrue(matches(text, "VLOG 2023"));
+        assertTrue(matches(text, "3bj"));
+        assertTrue(matches(text, "2023beijing"));
+        assertFalse(matches(text, "vlog2024"));
+    }
+
+    @Test
+    void tagsMatchSeparately() {
+        PinyinText tags = PinyinText.ofTags("旅行,风景");
+        assertTrue(matches(tags, "lx"));
+        assertTrue(matches(tags, "fj"));
+        // 不跨越两个标签
+        assertFalse(matches(tags, "xf"));
+        assertFalse(matches(tags, "xingfeng"));
+        assertFalse(matches(PinyinText.ofTags(""), "a"));
+        assertFalse(matches(PinyinText.of(null), "a"));
+    }
+
+    @Test
+    void normalizesQueries() {
+        assertArrayEquals("fj".toCharArray(), PinyinText.normalizeQuery(" F-J "));
+        assertNull(PinyinText.normalizeQuery(null));
+        assertNull(PinyinText.normalizeQuery(" ，。"));
+        char[] longest = new char[63];
+        Arrays.fill(longest, 'a');
+        assertEquals(63, PinyinText.normalizeQuery(new String(longest)).length);
+        assertNull(PinyinText.normalizeQuery(new String(longest) + "a"));
+        assertTrue(PinyinText.hasLatin(PinyinText.normalizeQuery("风j")));
+        assertFalse(PinyinText.hasLatin(PinyinText.normalizeQuery("风景2023")));
+    }
+
+    @Test
+    void indexCandidatesCoverEveryMatch() {
+        String[] titles = {"美丽的风景", "长城", "重庆火锅", "绿色", "Vlog 2023", "风铃", "方便", "旅行,风景"};
+        PinyinText[] texts = new PinyinText[titles.length];
+        PinyinIndex index = new PinyinIndex();
+        for (int i = 0; i < titles.length; i++) {
+            texts[i] = i == titles.length - 1 ? PinyinText.ofTags(titles[i]) : PinyinText.of(titles[i]);
+            index.add(i, texts[i]);
+        }
+        for (String query : new String[]{"fj", "fengjing", "feng景", "风j", "f", "fe", "cc", "cq", "lvse", "ls", "vlog", "3",
+                "2023", "风", "xf", "mldfj", "fb", "zz"}) {
+            char[] q = PinyinText.normalizeQuery(query);
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < texts.length; i++) {
+                if (texts[i].matches(q)) {
+                    expected.add(i);
+                }
+            }
+            Set<Integer> candidates = new HashSet<>();
+            int[] ordinals = index.candidates(q);
+            for (int i = 0; i < ordinals.length; i++) {
+                assertTrue(i == 0 || ordinals[i] > ordinals[i - 1], query);
+                candidates.add(ordinals[i]);
+            }
+            assertTrue(candidates.containsAll(expected), query);
+        }
+        // 首字母对过滤掉只有前缀相同的文本
+        assertEquals(new HashSet<>(Arrays.asList(0, 7)), toSet(index.candidates("fj".toCharArray())));
+        assertEquals(0, index.candidates("zz".toCharArray()).length);
+    }
+
+    private static boolean matches(PinyinText text, String query) {
+        return text.matches(PinyinText.normalizeQuery(query));
+    }
+
+    private static Set<String> readings(char c) {
+        return new HashSet<>(Arrays.asList(PinyinDictionary.readings(PinyinDictionary.readingId(c))));
+    }
+
+    private static Set<Integer> toSet(int[] ordinals) {
+        Set<Integer> set = new HashSet<>();
+        for (int ordinal : ordinals) {
+            set.add(ordinal);
+        }
+        return set;
+    }
+}
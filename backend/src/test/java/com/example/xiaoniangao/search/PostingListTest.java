@@ -0,0 +1,90 @@
+package com.example.xiaoniangao.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostingListTest {
+
+    @Test
+    void roundTripsVarintBoundaries() {
+        // 差值落在1~5字节varint的边界两侧
+        int[] ordinals = {0, 127, 128, 255, 16383, 16384, 16511, 2097151, 2097152, 2097279,
+                268435455, 268435456, 268435583, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+        PostingList list = new PostingList();
+        for (int ordinal : ordinals) {
+            list.add(ordinal);
+        }
+        assertEquals(ordinals.length, list.size());
+        assertArrayEquals(ordinals, list.toArray());
+
+        PostingList single = new PostingList();
+        single.add(Integer.MAX_VALUE);
+        assertArrayEquals(new int[]{Integer.MAX_VALUE}, single.toArray());
+    }
+
+    @Test
+    void encodesDeltasInSevenBitGroups() {
+        assertEquals(1000, encodedBytes(1000, 1));
+        assertEquals(1000, encodedBytes(1000, 127));
+        assertEquals(2000, encodedBytes(1000, 128));
+        assertEquals(2000, encodedBytes(1000, 16383));
+        assertEquals(3000, encodedBytes(1000, 16384));
+    }
+
+    @Test
+    void ignoresDuplicatesAndRejectsDecreasingOrdinals() {
+        PostingList list = new PostingList();
+        list.add(5);
+        list.add(5);
+        list.add(9);
+        list.add(9);
+        assertArrayEquals(new int[]{5, 9}, list.toArray());
+        assertThrows(IllegalArgumentException.class, () -> list.add(8));
+        assertArrayEquals(new int[]{5, 9}, list.toArray());
+        assertArrayEquals(new int[0], new PostingList().toArray());
+    }
+
+    @Test
+    void remapDropsDeletedOrdinals() {
+        PostingList list = new PostingList();
+        for (int ordinal : new int[]{0, 2, 3, 5, 200}) {
+            list.add(ordinal);
+        }
+        int[] mapping = new int[201];
+        Arrays.fill(mapping, -1);
+        mapping[0] = 0;
+        mapping[3] = 1;
+        mapping[200] = 2;
+        list.remap(mapping);
+        assertEquals(3, list.size());
+        assertArrayEquals(new int[]{0, 1, 2}, list.toArray());
+        // 整理后仍可继续追加
+        list.add(3);
+        assertArrayEquals(new int[]{0, 1, 2, 3}, list.toArray());
+
+        list.remap(new int[]{-1, -1, -1, -1});
+        assertEquals(0, list.size());
+        assertArrayEquals(new int[0], list.toArray());
+    }
+
+    /**
+     * 按固定差值写入count个序号后的编码字节数（整理会去掉预留空间）
+     */
+    private static int encodedBytes(int count, int delta) {
+        PostingList list = new PostingList();
+        int[] identity = new int[count * delta + 1];
+        for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+        }
+        for (int i = 1; i <= count; i++) {
+            list.add(i * delta);
+        }
+        list.remap(identity);
+        return list.capacity();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.xiaoniangao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpRangeTest {
+
+    private static final long TOTAL = 1000;
+
+    @Test
+    void parsesSingleAndOpenEndedRanges() {
+        assertRanges("bytes=0-99", "0-99");
+        assertRanges("bytes=500-", "500-999");
+        // 结束位置超出文件大小时截到最后一个字节
+        assertRanges("bytes=900-5000", "900-999");
+        assertRanges("bytes= 10 - 19 ", "10-19");
+        assertEquals("bytes 0-99/1000", HttpRange.parse("bytes=0-99", TOTAL, 16).get(0).toContentRange(TOTAL));
+        assertEquals(100, HttpRange.parse("bytes=0-99", TOTAL, 16).get(0).getLength());
+    }
+
+    @Test
+    void parsesSuffixRanges() {
+        assertRanges("bytes=-100", "900-999");
+        // 后缀长度超过文件大小时返回整个文件
+        assertRanges("bytes=-5000", "0-999");
+        // 长度为0的后缀不可满足
+        assertTrue(HttpRange.parse("bytes=-0", TOTAL, 16).isEmpty());
+        assertTrue(HttpRange.parse("bytes=-10", 0, 16).isEmpty());
+    }
+
+    @Test
+    void mergesOverlappingAndAdjacentRanges() {
+        assertRanges("bytes=0-99,50-149", "0-149");
+        assertRanges("bytes=100-199,0-99", "0-199");
+        assertRanges("bytes=0-9,20-29,10-19", "0-29");
+        assertRanges("bytes=0-9,-10", "0-9", "990-999");
+        assertRanges("bytes=500-,-100", "500-999");
+        assertRanges("bytes=0-0,2-2", "0-0", "2-2");
+    }
+
+    @Test
+    void returnsEmptyWhenNoRangeIsSatisfiable() {
+        assertTrue(HttpRange.parse("bytes=1000-", TOTAL, 16).isEmpty());
+        assertTrue(HttpRange.parse("bytes=2000-3000", TOTAL, 16).isEmpty());
+        // 可满足的区间保留，不可满足的丢弃
+        assertRanges("bytes=2000-3000,0-9", "0-9");
+    }
+
+    @Test
+    void ignoresMalformedHeaders() {
+        assertNull(HttpRange.parse(null, TOTAL, 16));
+        assertNull(HttpRange.parse("items=0-9", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=abc", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=-", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=a-b", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=9-0", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=--5", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=0-9,x", TOTAL, 16));
+        assertNull(HttpRange.parse("bytes=99999999999999999999-", TOTAL, 16));
+        // 区间数超过上限时忽略，返回完整内容
+        assertNull(HttpRange.parse("bytes=0-0,2-2,4-4", TOTAL, 2));
+    }
+
+    private static void assertRanges(String header, String... expected) {
+        List<HttpRange> ranges = HttpRange.parse(header, TOTAL, 16);
+        assertEquals(expected.length, ranges.size(), header);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], ranges.get(i).getStart() + "-" + ranges.get(i).getEnd(), header);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.xiaoniangao.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Mp4FastStartTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void movesMoovBeforeMdatAndShiftsStcoAndCo64Offsets() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), new byte[4]);
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31 + 7);
+        }
+        byte[] mdat = box("mdat", payload);
+        long mdatBody = ftyp.length + 8;
+        // 视频轨用stco，音频轨用co64；ftyp内的偏移不在mdat范围内，不应被修改
+        long[] videoOffsets = {mdatBody, mdatBody + 100, mdatBody + 999, 4};
+        long[] audioOffsets = {mdatBody + 50, mdatBody + 500};
+        byte[] moov = box("moov", box("mvhd", new byte[100]), track(stco(videoOffsets)), track(co64(audioOffsets)));
+        Path source = write("source.mp4", ftyp, mdat, moov);
+        Path target = dir.resolve("target.mp4");
+
+        assertTrue(Mp4FastStart.needsFastStart(source));
+        assertTrue(Mp4FastStart.rewrite(source, target));
+
+        byte[] original = Files.readAllBytes(source);
+        byte[] rewritten = Files.readAllBytes(target);
+        assertEquals(original.length, rewritten.length);
+        assertFalse(Mp4FastStart.needsFastStart(target));
+        // 顶层box顺序：ftyp、moov、mdat
+        assertEquals("ftyp", typeAt(rewritten, 0));
+        assertEquals("moov", typeAt(rewritten, ftyp.length));
+        assertEquals("mdat", typeAt(rewritten, ftyp.length + moov.length));
+
+        long[] newVideoOffsets = readOffsets(rewritten, "stco");
+        long[] newAudioOffsets = readOffsets(rewritten, "co64");
+        assertArrayEquals(new long[]{mdatBody + moov.length, mdatBody + moov.length + 100, mdatBody + moov.length + 999, 4},
+                newVideoOffsets);
+        assertArrayEquals(new long[]{mdatBody + moov.length + 50, mdatBody + moov.length + 500}, newAudioOffsets);
+        // 修正后的偏移指向与原文件相同的数据
+        for (int i = 0; i < 3; i++) {
+            assertEquals(original[(int) videoOffsets[i]], rewritten[(int) newVideoOffsets[i]]);
+        }
+        for (int i = 0; i < audioOffsets.length; i++) {
+            assertEquals(original[(int) audioOffsets[i]], rewritten[(int) newAudioOffsets[i]]);
+        }
+    }
+
+    @Test
+    void keepsMdatAfterMoovUntouched() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), new byte[4]);
+        byte[] mdat = box("mdat", new byte[64]);
+        byte[] moov = box("moov", track(stco(new long[]{ftyp.length + 8})));
+        // 第一个mdat之后、moov之前还有一个mdat，两者都整体后移
+        byte[] second = box("mdat", new byte[32]);
+        Path source = write("source.mp4", ftyp, mdat, second, moov);
+        Path target = dir.resolve("target.mp4");
+
+        assertTrue(Mp4FastStart.rewrite(source, target));
+        byte[] rewritten = Files.readAllBytes(target);
+        assertEquals("moov", typeAt(rewritten, ftyp.length));
+        assertEquals("mdat", typeAt(rewritten, ftyp.length + moov.length));
+        assertEquals("mdat", typeAt(rewritten, ftyp.length + moov.length + mdat.length));
+        assertArrayEquals(new long[]{ftyp.length + moov.length + 8}, readOffsets(rewritten, "stco"));
+    }
+
+    @Test
+    void skipsFastStartAndFragmentedFiles() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), new byte[4]);
+        byte[] mdat = box("mdat", new byte[16]);
+        Path target = dir.resolve("target.mp4");
+
+        Path fastStart = write("faststart.mp4", ftyp, box("moov", track(stco(new long[]{0}))), mdat);
+        assertFalse(Mp4FastStart.needsFastStart(fastStart));
+        assertFalse(Mp4FastStart.rewrite(fastStart, target));
+
+        Path fragmented = write("fragmented.mp4", ftyp, mdat, box("moov", box("mvex", new byte[8])));
+        assertTrue(Mp4FastStart.needsFastStart(fragmented));
+        assertFalse(Mp4FastStart.rewrite(fragmented, target));
+
+        Path truncated = write("truncated.mp4", ftyp, mdat, copyOf(box("moov", track(stco(new long[]{0}))), 20));
+        assertFalse(Mp4FastStart.needsFastStart(truncated));
+        assertFalse(Mp4FastStart.rewrite(truncated, target));
+    }
+
+    private Path write(String name, byte[]... parts) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, concat(parts));
+        return file;
+    }
+
+    private static byte[] track(byte[] chunkOffsets) {
+        return box("trak", box("mdia", box("minf", box("stbl", box("stsd", new byte[8]), chunkOffsets))));
+    }
+
+    private static byte[] stco(long[] offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 4);
+        body.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            body.putInt((int) offset);
+        }
+        return box("stco", body.array());
+    }
+
+    private static byte[] co64(long[] offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 8);
+        body.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            body.putLong(offset);
+        }
+        return box("co64", body.array());
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        ByteBuffer box = ByteBuffer.allocate(8 + body.length);
+        box.putInt(8 + body.length).put(type.getBytes(StandardCharsets.US_ASCII)).put(body);
+        return box.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] copyOf(byte[] data, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static String typeAt(byte[] data, int pos) {
+        return new String(data, pos + 4, 4, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 读取文件中第一个指定类型（stco/co64）偏移表的全部偏移
+     */
+    private static long[] readOffsets(byte[] data, String type) {
+        byte[] pattern = type.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 4; i + 4 <= data.length; i++) {
+            if (data[i] == pattern[0] && data[i + 1] == pattern[1] && data[i + 2] == pattern[2] && data[i + 3] == pattern[3]) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                int count = buffer.getInt(i + 8);
+                long[] offsets = new long[count];
+                for (int k = 0; k < count; k++) {
+                    offsets[k] = "co64".equals(type) ? buffer.getLong(i + 12 + k * 8) : buffer.getInt(i + 12 + k * 4) & 0xFFFFFFFFL;
+                }
+                return offsets;
+            }
+        }
+        throw new AssertionError("没有找到" + type);
+    }
+}
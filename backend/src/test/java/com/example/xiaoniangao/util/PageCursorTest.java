@@ -0,0 +1,65 @@
+package com.example.xiaoniangao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageCursorTest {
+
+    @Test
+    void roundTrips() {
+        Date time = new Date(1700000000123L);
+        PageCursor decoded = PageCursor.decode(new PageCursor(time, 42L).encode());
+        assertEquals(time, decoded.getCreateTime());
+        assertEquals(42L, decoded.getId());
+
+        decoded = PageCursor.decode(new PageCursor(new Date(0), Long.MAX_VALUE).encode());
+        assertEquals(0L, decoded.getCreateTime().getTime());
+        assertEquals(Long.MAX_VALUE, decoded.getId());
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        String cursor = new PageCursor(new Date(1700000000123L), 7L).encode();
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        // 前后空白不影响解析
+        assertEquals(7L, PageCursor.decode(" " + cursor + " ").getId());
+    }
+
+    @Test
+    void emptyCursorMeansFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+        assertNull(PageCursor.decode("   "));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertInvalid("not base64!");
+        assertInvalid(encode("1700000000123"));
+        assertInvalid(encode("abc:42"));
+        assertInvalid(encode("1700000000123:"));
+        assertInvalid(encode(":42"));
+        assertInvalid(encode("1700000000123:4x"));
+        assertInvalid(encode("99999999999999999999:1"));
+        // 合法游标被截断或改动后不能解析成另一个位置
+        String cursor = new PageCursor(new Date(1700000000123L), 42L).encode();
+        assertInvalid(cursor.substring(0, cursor.length() - 1) + "*");
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void assertInvalid(String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor), cursor);
+        assertEquals("无效的分页游标", e.getMessage());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.xiaoniangao.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTokenizerTest {
+
+    @Test
+    void indexesCjkUnigramsAndBigrams() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("小", "小年", "年", "年糕", "糕", "糕相", "相", "相册", "册")),
+                SearchTokenizer.indexTerms("小年糕相册"));
+        // 标点和空白断开，不跨越生成bigram
+        assertEquals(new LinkedHashSet<>(Arrays.asList("春", "春天", "天", "花", "花开", "开")),
+                SearchTokenizer.indexTerms("春天，花开"));
+        assertTrue(SearchTokenizer.indexTerms(null).isEmpty());
+        assertTrue(SearchTokenizer.indexTerms("").isEmpty());
+    }
+
+    @Test
+    void splitsLatinWordsAndLowercases() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("trip", "2023", "北", "北京", "京", "vlog")),
+                SearchTokenizer.indexTerms("Trip-2023 北京VLOG"));
+        // 超长的词截断到32个字符
+        String longWord = new String(new char[40]).replace('\0', 'a');
+        assertEquals(Collections.singleton(longWord.substring(0, 32)), SearchTokenizer.indexTerms(longWord));
+    }
+
+    @Test
+    void queryUsesBigramsExceptForSingleCharacters() {
+        assertEquals(Arrays.asList("年糕", "糕相"), SearchTokenizer.queryTerms("年糕相"));
+        assertEquals(Collections.singletonList("猫"), SearchTokenizer.queryTerms("猫"));
+        assertEquals(Arrays.asList("北京", "trip"), SearchTokenizer.queryTerms("北京 Trip 北京"));
+        assertTrue(SearchTokenizer.queryTerms("  ，。 ").isEmpty());
+        assertTrue(SearchTokenizer.queryTerms(null).isEmpty());
+        // 查询词项都是索引词项的子集
+        assertTrue(SearchTokenizer.indexTerms("小年糕相册").containsAll(SearchTokenizer.queryTerms("年糕相册")));
+    }
+
+    @Test
+    void detectsTrailingLatinWordForPrefixMatch() {
+        assertTrue(SearchTokenizer.endsWithWord("北京 tri"));
+        assertTrue(SearchTokenizer.endsWithWord("trip2023 "));
+        assertFalse(SearchTokenizer.endsWithWord("trip 北京"));
+        assertFalse(SearchTokenizer.endsWithWord("trip!"));
+        assertFalse(SearchTokenizer.endsWithWord("   "));
+        assertFalse(SearchTokenizer.endsWithWord(null));
+    }
+}
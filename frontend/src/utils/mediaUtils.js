@@ -30,10 +30,22 @@ export const processMediaData = (media, userInfo = null) => {
     // 文件路径相关字段
     filename: media.fileName || media.filename || '',
     filePath: media.filePath || '',
+    coverPath: media.coverPath || '',
+    // 后端签名的访问URL（有效期内不查库、不校验登录）
+    signedUrl: media.signedUrl || '',
+    signedCoverUrl: media.signedCoverUrl || '',
+    
+    // 文件头探测结果，用于在加载前预留布局（历史数据可能为空）
+    width: media.width || null,
+    height: media.height || null,
+    durationMs: media.durationMs || null,
+    takenAt: media.takenAt || null,
     
     // 标签字段
     tags: media.tags || media.fileTag || '',
     fileTag: media.tags || media.fileTag || '',
+    // 列表接口按页批量返回的标签数组 [{id, tagName}]
+    tagList: media.tagList || [],
     
     // 上传者相关字段
     uploaderName: getUploaderName(media, userInfo)
@@ -83,6 +95,7 @@ export const extractFilename = (filePath) => {
  */
 export const getMediaUrl = (media) => {
   if (!media) return '';
+  if (media.signedUrl) return media.signedUrl;
   
   // 优先从filePath中提取文件名
   const fileName = extractFilename(media.filePath);
@@ -90,8 +103,39 @@ export const getMediaUrl = (media) => {
   // 如果filePath中没有文件名，尝试使用filename字段
   const finalFileName = fileName || media.filename || '';
   
-  // 使用统一的相对路径格式访问媒体文件
-  return finalFileName ? `/media-files/${finalFileName}` : '';
+  // 通过后端按存储键访问媒体文件（支持Range，内容不变可长期缓存）
+  return finalFileName ? `/api/media/file/${encodeURIComponent(finalFileName)}` : '';
+};
+
+/**
+ * 构建缩略图URL，没有缩略图时回退到原文件
+ * @param {Object} media - 媒体数据对象
+ * @returns {string} 缩略图URL
+ */
+export const getCoverUrl = (media) => {
+  if (!media) return '';
+  if (media.signedCoverUrl) return media.signedCoverUrl;
+  const coverName = extractFilename(media.coverPath);
+  return coverName ? `/api/media/file/${encodeURIComponent(coverName)}` : getMediaUrl(media);
+};
+
+/**
+ * 获取按需生成的指定尺寸图片URL（宽高需在后端 media.transform.sizes 中）
+ * GIF保留原图以免丢失动画
+ * @param {Object} media - 媒体数据对象
+ * @param {number} width - 宽度
+ * @param {number} height - 高度，0表示按宽度等比缩放
+ * @param {string} fit - contain等比缩小，cover铺满后居中裁剪
+ * @returns {string} 图片URL
+ */
+export const getImageUrl = (media, width, height = 0, fit = 'contain') => {
+  if (!media) return '';
+  const mediaType = media.fileType || media.type || '';
+  if (!media.id || mediaType.includes('gif')) {
+    return getMediaUrl(media);
+  }
+  const heightParam = height ? `&h=${height}` : '';
+  return `/api/media/${media.id}/img?w=${width}${heightParam}&fit=${fit}`;
 };
 
 /**
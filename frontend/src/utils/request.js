@@ -159,14 +159,26 @@ const upload = (url, file, data = {}, config = {}) => {
   });
 };
 
+// 流式上传：请求体直接是文件内容，其他数据放在查询参数中，后端只写一次磁盘
+const uploadStream = (url, file, data = {}, config = {}) => {
+  return request.post(url, file, {
+    params: { fileName: file.name, ...data },
+    headers: {
+      'Content-Type': file.type || 'application/octet-stream'
+    },
+    ...config
+  });
+};
+
 // 导出所有方法
 export default {
   get,
   post,
   put,
   delete: del,
-  upload
+  upload,
+  uploadStream
 };
 
 // 同时支持按需导入
-export { get, post, put, del as delete, upload };
\ No newline at end of file
+export { get, post, put, del as delete, upload, uploadStream };
\ No newline at end of file
@@ -1,11 +1,10 @@
 import { defineConfig } from 'vite'
 import vue from '@vitejs/plugin-vue'
 import path from 'path'
-import mediaFileMiddleware from './src/middleware/mediaFileMiddleware.js'
 
 // https://vitejs.dev/config/
 export default defineConfig({
-  plugins: [vue(), mediaFileMiddleware()],
+  plugins: [vue()],
   server: {
     proxy: {
       '/api': {